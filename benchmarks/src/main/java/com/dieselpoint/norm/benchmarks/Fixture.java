@@ -0,0 +1,110 @@
+package com.dieselpoint.norm.benchmarks;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.dieselpoint.norm.Database;
+
+/**
+ * Pojos and an in-memory H2 database shared by the benchmarks. Each benchmark
+ * class gets its own named database so they can't interfere.
+ */
+public class Fixture {
+
+	public static final String NARROW_COLUMNS = "id,name,amount";
+
+	public static final String WIDE_COLUMNS = "id,s1,s2,s3,s4,s5,s6,s7,s8,s9,n1,n2,n3,n4,n5,n6,n7,n8,n9,n10";
+
+	public static Database database(String name) {
+		Database db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:" + name + ";database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.setUser("sa");
+		db.setPassword("");
+		// latency alerts are off by default, metrics are on, as in production
+		return db;
+	}
+
+	public static void createTables(Database db) {
+		db.sql("drop table if exists narrow").execute();
+		db.sql("drop table if exists wide").execute();
+		db.sql("create table narrow (id bigint primary key, name varchar(50), amount double)").execute();
+		db.sql("create table wide (id bigint primary key, s1 varchar(50), s2 varchar(50), s3 varchar(50), "
+				+ "s4 varchar(50), s5 varchar(50), s6 varchar(50), s7 varchar(50), s8 varchar(50), s9 varchar(50), "
+				+ "n1 bigint, n2 bigint, n3 bigint, n4 bigint, n5 bigint, n6 bigint, n7 bigint, n8 bigint, "
+				+ "n9 bigint, n10 bigint)").execute();
+	}
+
+	public static void fill(Database db, int rows) {
+		for (long i = 0; i < rows; i++) {
+			db.insert(narrow(i));
+			db.insert(wide(i));
+		}
+	}
+
+	public static Narrow narrow(long id) {
+		Narrow row = new Narrow();
+		row.id = id;
+		row.name = "name" + id;
+		row.amount = id * 1.5;
+		return row;
+	}
+
+	public static Wide wide(long id) {
+		Wide row = new Wide();
+		row.id = id;
+		row.s1 = "s1-" + id;
+		row.s2 = "s2-" + id;
+		row.s3 = "s3-" + id;
+		row.s4 = "s4-" + id;
+		row.s5 = "s5-" + id;
+		row.s6 = "s6-" + id;
+		row.s7 = "s7-" + id;
+		row.s8 = "s8-" + id;
+		row.s9 = "s9-" + id;
+		row.n1 = id + 1;
+		row.n2 = id + 2;
+		row.n3 = id + 3;
+		row.n4 = id + 4;
+		row.n5 = id + 5;
+		row.n6 = id + 6;
+		row.n7 = id + 7;
+		row.n8 = id + 8;
+		row.n9 = id + 9;
+		row.n10 = id + 10;
+		return row;
+	}
+
+	@Table(name = "narrow")
+	public static class Narrow {
+		@Id
+		public long id;
+		public String name;
+		public double amount;
+	}
+
+	@Table(name = "wide")
+	public static class Wide {
+		@Id
+		public long id;
+		public String s1;
+		public String s2;
+		public String s3;
+		public String s4;
+		public String s5;
+		public String s6;
+		public String s7;
+		public String s8;
+		public String s9;
+		public long n1;
+		public long n2;
+		public long n3;
+		public long n4;
+		public long n5;
+		public long n6;
+		public long n7;
+		public long n8;
+		public long n9;
+		public long n10;
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.latency.Phase;
+import com.dieselpoint.norm.metrics.HistogramSnapshot;
+import com.dieselpoint.norm.metrics.LatencyHistogram;
+import com.dieselpoint.norm.metrics.MetricsSnapshot;
+
+/**
+ * Multi-threaded load test. Fills a database with synthetic rows, then runs a
+ * mixed read/write workload at each thread count in turn, against a pool of
+ * fixed size, and prints throughput, latency percentiles and the time spent
+ * waiting for a connection. Use it to size the pool and to catch contention:
+ * if throughput stops growing well before the thread count reaches the pool
+ * size, something other than the database is serializing the threads.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.dieselpoint.norm.benchmarks.LoadTest \
+ *     --rows=1000000 --threads=1,2,4,8,16,32,64 --pool=10 --seconds=10 \
+ *     --mix=point:60,range:20,update:15,insert:5
+ * </pre>
+ *
+ * The default url is an in-memory H2 database. Pass --url for anything else
+ * whose driver is on the classpath; a file-based H2 database is a fairer test
+ * of writes.
+ */
+public class LoadTest {
+
+	private enum Op {
+		point, range, update, insert
+	}
+
+	private final Map<String, String> options = new LinkedHashMap<>();
+
+	private Database db;
+	private SyntheticData<LoadRow> data;
+	private long rows;
+	private int rangeSize;
+	private final AtomicLong nextId = new AtomicLong();
+	private Op[] mix;
+
+	public static void main(String[] args) throws Exception {
+		new LoadTest(args).run();
+	}
+
+	LoadTest(String[] args) {
+		options.put("url", "jdbc:h2:mem:loadtest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		options.put("user", "sa");
+		options.put("password", "");
+		options.put("rows", "1000000");
+		options.put("threads", "1,2,4,8,16,32,64");
+		options.put("pool", "10");
+		options.put("seconds", "10");
+		options.put("warmup", "2");
+		options.put("range", "20");
+		options.put("mix", "point:60,range:20,update:15,insert:5");
+		options.put("fill", "true");
+
+		for (String arg : args) {
+			if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+				throw new IllegalArgumentException("Expected --name=value, got " + arg + ". Options: " + options);
+			}
+			String name = arg.substring(2, arg.indexOf('='));
+			if (!options.containsKey(name)) {
+				throw new IllegalArgumentException("Unknown option " + name + ". Options: " + options);
+			}
+			options.put(name, arg.substring(arg.indexOf('=') + 1));
+		}
+	}
+
+	void run() throws InterruptedException {
+		db = new Database();
+		db.setJdbcUrl(options.get("url"));
+		db.setUser(options.get("user"));
+		db.setPassword(options.get("password"));
+		db.setMaxPoolSize(Integer.parseInt(options.get("pool")));
+
+		rows = Long.parseLong(options.get("rows"));
+		rangeSize = Integer.parseInt(options.get("range"));
+		mix = parseMix(options.get("mix"));
+		data = new SyntheticData<>(db, LoadRow.class);
+
+		System.out.println("Options: " + options);
+		if (Boolean.parseBoolean(options.get("fill"))) {
+			long start = System.nanoTime();
+			db.sql("drop table if exists load_row").execute();
+			db.createTable(LoadRow.class);
+			data.fill(rows, 42);
+			db.sql("create index load_row_customer on load_row (customer)").execute();
+			System.out.printf(Locale.ROOT, "Filled %d rows in %.1fs%n", rows, (System.nanoTime() - start) / 1e9);
+		}
+		nextId.set(rows);
+
+		System.out.println();
+		System.out.println(
+				"threads      ops/s    p50(us)    p99(us)   p999(us)   max(us)  connwait mean(us)  connwait p99(us)  errors");
+
+		int seconds = Integer.parseInt(options.get("seconds"));
+		int warmup = Integer.parseInt(options.get("warmup"));
+		for (String t : options.get("threads").split(",")) {
+			int threads = Integer.parseInt(t.trim());
+			if (warmup > 0) {
+				step(threads, warmup);
+			}
+			db.getMetrics().reset();
+			Result result = step(threads, seconds);
+			print(threads, seconds, result, db.getMetrics().snapshot());
+		}
+
+		db.close();
+	}
+
+	private static Op[] parseMix(String spec) {
+		// one slot per unit of weight, so picking an op is one array lookup
+		List<Op> table = new ArrayList<>();
+		for (String part : spec.split(",")) {
+			String[] nameWeight = part.trim().split(":");
+			Op op = Op.valueOf(nameWeight[0]);
+			int weight = Integer.parseInt(nameWeight[1]);
+			for (int i = 0; i < weight; i++) {
+				table.add(op);
+			}
+		}
+		if (table.isEmpty()) {
+			throw new IllegalArgumentException("Empty mix: " + spec);
+		}
+		return table.toArray(new Op[0]);
+	}
+
+	private static class Result {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+	}
+
+	private Result step(int threads, int seconds) throws InterruptedException {
+		Result result = new Result();
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(() -> work(result, deadline), "load-" + i);
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return result;
+	}
+
+	private void work(Result result, long deadline) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Random rowRandom = new Random(random.nextLong());
+		String idName = data.getIdName();
+
+		while (true) {
+			long start = System.nanoTime();
+			if (start >= deadline) {
+				return;
+			}
+			Op op = mix[random.nextInt(mix.length)];
+			try {
+				switch (op) {
+				case point:
+					db.where(idName + "=?", random.nextLong(rows)).first(LoadRow.class);
+					break;
+				case range:
+					long from = random.nextLong(Math.max(1, rows - rangeSize));
+					db.where(idName + ">=? and " + idName + "<?", from, from + rangeSize).results(LoadRow.class);
+					break;
+				case update:
+					db.update(data.newRow(random.nextLong(rows), rowRandom));
+					break;
+				case insert:
+					db.insert(data.newRow(nextId.getAndIncrement(), rowRandom));
+					break;
+				}
+			} catch (RuntimeException e) {
+				result.errors.increment();
+			}
+			result.latency.record(System.nanoTime() - start);
+		}
+	}
+
+	private static void print(int threads, int seconds, Result result, MetricsSnapshot metrics) {
+		HistogramSnapshot latency = result.latency.snapshot();
+		HistogramSnapshot connWait = metrics.getPhase(Phase.CONNECT);
+		System.out.printf(Locale.ROOT, "%7d %10.0f %10.1f %10.1f %10.1f %9.1f %18.1f %17.1f %7d%n", threads,
+				latency.getCount() / (double) seconds, latency.getP50() / 1e3, latency.getP99() / 1e3,
+				latency.getP999() / 1e3, latency.getMax() / 1e3, connWait.getMean() / 1e3, connWait.getP99() / 1e3,
+				result.errors.sum());
+	}
+
+	/**
+	 * A typical mid-width table row, limited to the types createTable() knows.
+	 */
+	@Table(name = "load_row")
+	public static class LoadRow {
+		@Id
+		public long id;
+		public String customer;
+		public String status;
+		public int quantity;
+		public double amount;
+		public int flags;
+		public Date created;
+		public String note;
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.benchmarks.Fixture.Narrow;
+import com.dieselpoint.norm.benchmarks.Fixture.Wide;
+
+/**
+ * The same operations as SelectBenchmark and WriteBenchmark, but against the
+ * synthetic driver from norm's test jar, which returns rows from memory and
+ * makes every update a no-op. With no database in the way, the score is norm's
+ * own cost per statement and per row: SqlMaker, StandardPojoInfo, the latency
+ * timer and metrics, and the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverheadBenchmark {
+
+	@Param({ "1", "1000" })
+	public int rows;
+
+	private Database narrowDb;
+	private Database wideDb;
+	private Narrow narrow = Fixture.narrow(1);
+	private Wide wide = Fixture.wide(1);
+
+	@Setup
+	public void setUp() {
+		narrowDb = new Database();
+		narrowDb.setJdbcUrl("jdbc:synthetic:rows=" + rows + ";columns=id:bigint,name:varchar,amount:double");
+
+		wideDb = new Database();
+		wideDb.setJdbcUrl("jdbc:synthetic:rows=" + rows + ";columns=id:bigint,s1:varchar,s2:varchar,s3:varchar,"
+				+ "s4:varchar,s5:varchar,s6:varchar,s7:varchar,s8:varchar,s9:varchar,n1:bigint,n2:bigint,n3:bigint,"
+				+ "n4:bigint,n5:bigint,n6:bigint,n7:bigint,n8:bigint,n9:bigint,n10:bigint");
+	}
+
+	@TearDown
+	public void tearDown() {
+		narrowDb.close();
+		wideDb.close();
+	}
+
+	@Benchmark
+	public List<Narrow> resultsNarrow() {
+		return narrowDb.where("id < ?", rows).results(Narrow.class);
+	}
+
+	@Benchmark
+	public List<Wide> resultsWide() {
+		return wideDb.where("id < ?", rows).results(Wide.class);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Benchmark
+	public List<HashMap> resultsMap() {
+		return narrowDb.sql("select " + Fixture.NARROW_COLUMNS + " from narrow where id < ?", rows)
+				.results(HashMap.class);
+	}
+
+	@Benchmark
+	public Narrow insertNarrow() {
+		narrowDb.insert(narrow);
+		return narrow;
+	}
+
+	@Benchmark
+	public Wide insertWide() {
+		wideDb.insert(wide);
+		return wide;
+	}
+
+	@Benchmark
+	public Narrow updateNarrow() {
+		narrowDb.update(narrow);
+		return narrow;
+	}
+
+}
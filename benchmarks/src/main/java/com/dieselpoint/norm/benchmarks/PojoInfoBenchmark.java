@@ -0,0 +1,94 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dieselpoint.norm.benchmarks.Fixture.Narrow;
+import com.dieselpoint.norm.benchmarks.Fixture.Wide;
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+/**
+ * StandardPojoInfo.getValue() and putValue() in isolation, no database, against
+ * plain field access. This is the per-column cost paid on every row mapped and
+ * every row written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PojoInfoBenchmark {
+
+	private static final String[] WIDE_NAMES = Fixture.WIDE_COLUMNS.split(",");
+
+	private PojoInfo narrowInfo;
+	private PojoInfo wideInfo;
+	private Narrow narrow;
+	private Wide wide;
+	private Object[] wideValues;
+
+	@Setup
+	public void setUp() {
+		StandardSqlMaker sqlMaker = new StandardSqlMaker();
+		narrowInfo = sqlMaker.getPojoInfo(Narrow.class);
+		wideInfo = sqlMaker.getPojoInfo(Wide.class);
+		narrow = Fixture.narrow(1);
+		wide = Fixture.wide(1);
+
+		wideValues = new Object[WIDE_NAMES.length];
+		for (int i = 0; i < WIDE_NAMES.length; i++) {
+			wideValues[i] = wideInfo.getValue(wide, WIDE_NAMES[i]);
+		}
+	}
+
+	@Benchmark
+	public Object getValue() {
+		return narrowInfo.getValue(narrow, "name");
+	}
+
+	@Benchmark
+	public Object getValueField() {
+		return narrow.name;
+	}
+
+	@Benchmark
+	public Narrow putValue() {
+		narrowInfo.putValue(narrow, "name", "bob", true);
+		return narrow;
+	}
+
+	@Benchmark
+	public Narrow putValueField() {
+		narrow.name = "bob";
+		return narrow;
+	}
+
+	@Benchmark
+	public void getValueWide(Blackhole bh) {
+		for (String name : WIDE_NAMES) {
+			bh.consume(wideInfo.getValue(wide, name));
+		}
+	}
+
+	@Benchmark
+	public Wide putValueWide() {
+		for (int i = 0; i < WIDE_NAMES.length; i++) {
+			wideInfo.putValue(wide, WIDE_NAMES[i], wideValues[i], true);
+		}
+		return wide;
+	}
+
+}
@@ -0,0 +1,197 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.benchmarks.Fixture.Narrow;
+import com.dieselpoint.norm.benchmarks.Fixture.Wide;
+
+/**
+ * Reads: results() into narrow and wide pojos and into Maps, first() and
+ * count(). Each has a raw JDBC baseline that gets its connection from the same
+ * pool and maps the rows by hand, so the difference is what norm costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectBenchmark {
+
+	@Param({ "1", "100", "1000" })
+	public int rows;
+
+	private Database db;
+
+	@Setup
+	public void setUp() {
+		db = Fixture.database("select");
+		Fixture.createTables(db);
+		Fixture.fill(db, 1000);
+	}
+
+	@TearDown
+	public void tearDown() {
+		db.close();
+	}
+
+	@Benchmark
+	public List<Narrow> resultsNarrow() {
+		return db.where("id < ?", rows).results(Narrow.class);
+	}
+
+	@Benchmark
+	public List<Narrow> resultsNarrowJdbc() throws SQLException {
+		List<Narrow> out = new ArrayList<>();
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con
+						.prepareStatement("select " + Fixture.NARROW_COLUMNS + " from narrow where id < ?")) {
+			state.setInt(1, rows);
+			try (ResultSet rs = state.executeQuery()) {
+				while (rs.next()) {
+					Narrow row = new Narrow();
+					row.id = rs.getLong(1);
+					row.name = rs.getString(2);
+					row.amount = rs.getDouble(3);
+					out.add(row);
+				}
+			}
+		}
+		return out;
+	}
+
+	@Benchmark
+	public List<Wide> resultsWide() {
+		return db.where("id < ?", rows).results(Wide.class);
+	}
+
+	@Benchmark
+	public List<Wide> resultsWideJdbc() throws SQLException {
+		List<Wide> out = new ArrayList<>();
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con
+						.prepareStatement("select " + Fixture.WIDE_COLUMNS + " from wide where id < ?")) {
+			state.setInt(1, rows);
+			try (ResultSet rs = state.executeQuery()) {
+				while (rs.next()) {
+					Wide row = new Wide();
+					row.id = rs.getLong(1);
+					row.s1 = rs.getString(2);
+					row.s2 = rs.getString(3);
+					row.s3 = rs.getString(4);
+					row.s4 = rs.getString(5);
+					row.s5 = rs.getString(6);
+					row.s6 = rs.getString(7);
+					row.s7 = rs.getString(8);
+					row.s8 = rs.getString(9);
+					row.s9 = rs.getString(10);
+					row.n1 = rs.getLong(11);
+					row.n2 = rs.getLong(12);
+					row.n3 = rs.getLong(13);
+					row.n4 = rs.getLong(14);
+					row.n5 = rs.getLong(15);
+					row.n6 = rs.getLong(16);
+					row.n7 = rs.getLong(17);
+					row.n8 = rs.getLong(18);
+					row.n9 = rs.getLong(19);
+					row.n10 = rs.getLong(20);
+					out.add(row);
+				}
+			}
+		}
+		return out;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Benchmark
+	public List<HashMap> resultsMap() {
+		return db.sql("select " + Fixture.NARROW_COLUMNS + " from narrow where id < ?", rows).results(HashMap.class);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> resultsMapJdbc() throws SQLException {
+		List<Map<String, Object>> out = new ArrayList<>();
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con
+						.prepareStatement("select " + Fixture.NARROW_COLUMNS + " from narrow where id < ?")) {
+			state.setInt(1, rows);
+			try (ResultSet rs = state.executeQuery()) {
+				ResultSetMetaData meta = rs.getMetaData();
+				int colCount = meta.getColumnCount();
+				while (rs.next()) {
+					Map<String, Object> map = new HashMap<>();
+					for (int i = 1; i <= colCount; i++) {
+						map.put(meta.getColumnLabel(i), rs.getObject(i));
+					}
+					out.add(map);
+				}
+			}
+		}
+		return out;
+	}
+
+	@Benchmark
+	public Narrow first() {
+		return db.where("id = ?", rows - 1).first(Narrow.class);
+	}
+
+	@Benchmark
+	public Narrow firstJdbc() throws SQLException {
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con
+						.prepareStatement("select " + Fixture.NARROW_COLUMNS + " from narrow where id = ?")) {
+			state.setInt(1, rows - 1);
+			try (ResultSet rs = state.executeQuery()) {
+				if (!rs.next()) {
+					return null;
+				}
+				Narrow row = new Narrow();
+				row.id = rs.getLong(1);
+				row.name = rs.getString(2);
+				row.amount = rs.getDouble(3);
+				return row;
+			}
+		}
+	}
+
+	@Benchmark
+	public Long count() {
+		return db.table("narrow").where("id < ?", rows).count();
+	}
+
+	@Benchmark
+	public long countJdbc() throws SQLException {
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con.prepareStatement("select count(*) from narrow where id < ?")) {
+			state.setInt(1, rows);
+			try (ResultSet rs = state.executeQuery()) {
+				rs.next();
+				return rs.getLong(1);
+			}
+		}
+	}
+
+}
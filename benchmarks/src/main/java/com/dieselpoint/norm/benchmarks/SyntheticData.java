@@ -0,0 +1,167 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.UUID;
+
+import javax.persistence.EnumType;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Generates rows for any pojo from its StandardPojoInfo: the single @Id gets
+ * the row number, every other property a pseudo-random value of its type. The
+ * same seed always produces the same rows.
+ */
+public class SyntheticData<T> {
+
+	private static final long EPOCH = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+	private static final long YEAR = 365L * 24 * 3600 * 1000;
+
+	private final Database db;
+	private final Class<T> clazz;
+	private final StandardPojoInfo info;
+	private final String idName;
+
+	public SyntheticData(Database db, Class<T> clazz) {
+		this.db = db;
+		this.clazz = clazz;
+		this.info = (StandardPojoInfo) db.getSqlMaker().getPojoInfo(clazz);
+		if (info.primaryKeyNames.size() != 1) {
+			throw new DbException("SyntheticData needs exactly one @Id property on " + clazz.getName());
+		}
+		this.idName = info.primaryKeyNames.get(0);
+	}
+
+	public String getIdName() {
+		return idName;
+	}
+
+	/**
+	 * Returns a new row with the given id and random values everywhere else.
+	 */
+	public T newRow(long id, Random random) {
+		try {
+			T row = clazz.getDeclaredConstructor().newInstance();
+			for (Property prop : info.propertyMap.values()) {
+				Object value = prop.name.equals(idName) ? id : randomValue(prop, random);
+				if (value instanceof Long) {
+					value = narrow((Long) value, prop.dataType);
+				}
+				info.putValue(row, prop.name, value);
+			}
+			return row;
+		} catch (ReflectiveOperationException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private Object randomValue(Property prop, Random random) {
+		Class<?> type = prop.dataType;
+		if (prop.isEnumField) {
+			Object[] constants = prop.enumClass.getEnumConstants();
+			int ordinal = random.nextInt(constants.length);
+			// putValue() takes enums the way they're stored
+			return prop.enumType == EnumType.ORDINAL ? (Object) ordinal : constants[ordinal].toString();
+		}
+		if (type == String.class) {
+			return prop.name + "-" + random.nextInt(100_000);
+		}
+		if (type == long.class || type == Long.class || type == int.class || type == Integer.class
+				|| type == short.class || type == Short.class) {
+			return (long) random.nextInt(10_000);
+		}
+		if (type == double.class || type == Double.class) {
+			return random.nextDouble() * 1000;
+		}
+		if (type == float.class || type == Float.class) {
+			return random.nextFloat() * 1000;
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return random.nextBoolean();
+		}
+		if (type == BigDecimal.class) {
+			return BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+		}
+		if (type == Timestamp.class) {
+			return new Timestamp(EPOCH + (long) (random.nextDouble() * YEAR));
+		}
+		if (type == java.util.Date.class) {
+			return new java.util.Date(EPOCH + (long) (random.nextDouble() * YEAR));
+		}
+		if (type == LocalDateTime.class) {
+			return LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(random.nextInt(365 * 24 * 3600));
+		}
+		if (type == LocalDate.class) {
+			return LocalDate.of(2020, 1, 1).plusDays(random.nextInt(365));
+		}
+		if (type == UUID.class) {
+			return new UUID(random.nextLong(), random.nextLong());
+		}
+		// leave anything else null
+		return null;
+	}
+
+	private static Object narrow(long value, Class<?> type) {
+		if (type == int.class || type == Integer.class) {
+			return (int) value;
+		}
+		if (type == short.class || type == Short.class) {
+			return (short) value;
+		}
+		return value;
+	}
+
+	/**
+	 * Insert rows with ids 0 to count - 1, using a JDBC batch and the insert sql
+	 * norm generates for the class. Prints progress every million rows.
+	 */
+	public void fill(long count, long seed) {
+		Random random = new Random(seed);
+		SqlMaker sqlMaker = db.getSqlMaker();
+		T first = newRow(0, random);
+		String sql = sqlMaker.getInsertSql(new Query(db), first);
+
+		try (Connection con = db.getConnection()) {
+			con.setAutoCommit(false);
+			try (PreparedStatement state = con.prepareStatement(sql)) {
+				for (long id = 0; id < count; id++) {
+					T row = id == 0 ? first : newRow(id, random);
+					Object[] args = sqlMaker.getInsertArgs(new Query(db), row);
+					for (int i = 0; i < args.length; i++) {
+						state.setObject(i + 1, args[i]);
+					}
+					state.addBatch();
+
+					if ((id + 1) % 1000 == 0) {
+						state.executeBatch();
+					}
+					if ((id + 1) % 100_000 == 0) {
+						con.commit();
+					}
+					if ((id + 1) % 1_000_000 == 0) {
+						System.out.println("  " + (id + 1) + " rows");
+					}
+				}
+				state.executeBatch();
+			}
+			con.commit();
+			con.setAutoCommit(true);
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+}
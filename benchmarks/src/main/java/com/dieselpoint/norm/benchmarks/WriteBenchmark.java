@@ -0,0 +1,175 @@
+package com.dieselpoint.norm.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Transaction;
+import com.dieselpoint.norm.benchmarks.Fixture.Narrow;
+import com.dieselpoint.norm.benchmarks.Fixture.Wide;
+
+/**
+ * Writes: single-row insert and update on narrow and wide pojos, and a batch of
+ * {@value #BATCH} inserts, one at a time in a transaction and with insertAll(),
+ * each against a raw JDBC baseline.
+ * The tables are emptied before every iteration so they don't grow without
+ * bound.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+
+	public static final int BATCH = 100;
+	private static final int UPDATE_ROWS = 1000;
+
+	private Database db;
+	private long nextId;
+	private long updateCount;
+
+	private Narrow narrow = Fixture.narrow(0);
+	private Wide wide = Fixture.wide(0);
+	private List<Narrow> batch = new ArrayList<>();
+
+	@Setup
+	public void setUp() {
+		db = Fixture.database("write");
+		Fixture.createTables(db);
+		for (int i = 0; i < BATCH; i++) {
+			batch.add(Fixture.narrow(0));
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void emptyTables() {
+		db.sql("truncate table narrow").execute();
+		db.sql("truncate table wide").execute();
+		Fixture.fill(db, UPDATE_ROWS);
+		nextId = UPDATE_ROWS;
+	}
+
+	@TearDown
+	public void tearDown() {
+		db.close();
+	}
+
+	@Benchmark
+	public Narrow insertNarrow() {
+		narrow.id = nextId++;
+		db.insert(narrow);
+		return narrow;
+	}
+
+	@Benchmark
+	public int insertNarrowJdbc() throws SQLException {
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con.prepareStatement("insert into narrow (id,name,amount) values (?,?,?)")) {
+			state.setLong(1, nextId++);
+			state.setString(2, narrow.name);
+			state.setDouble(3, narrow.amount);
+			return state.executeUpdate();
+		}
+	}
+
+	@Benchmark
+	public Wide insertWide() {
+		wide.id = nextId++;
+		db.insert(wide);
+		return wide;
+	}
+
+	/**
+	 * {@value #BATCH} single-row inserts inside one transaction, which is how
+	 * you'd load a batch with the plain insert() API.
+	 */
+	@Benchmark
+	public Transaction insertBatchInTransaction() {
+		Transaction trans = db.startTransaction();
+		for (int i = 0; i < BATCH; i++) {
+			narrow.id = nextId++;
+			db.transaction(trans).insert(narrow);
+		}
+		trans.commit();
+		return trans;
+	}
+
+	/**
+	 * The same {@value #BATCH} rows as insertBatchInTransaction(), sent as one
+	 * JDBC batch.
+	 */
+	@Benchmark
+	public List<Narrow> insertAll() {
+		for (Narrow row : batch) {
+			row.id = nextId++;
+		}
+		db.insertAll(batch);
+		return batch;
+	}
+
+	@Benchmark
+	public int[] insertBatchJdbc() throws SQLException {
+		try (Connection con = db.getConnection()) {
+			con.setAutoCommit(false);
+			int[] counts;
+			try (PreparedStatement state = con
+					.prepareStatement("insert into narrow (id,name,amount) values (?,?,?)")) {
+				for (int i = 0; i < BATCH; i++) {
+					state.setLong(1, nextId++);
+					state.setString(2, narrow.name);
+					state.setDouble(3, narrow.amount);
+					state.addBatch();
+				}
+				counts = state.executeBatch();
+			}
+			con.commit();
+			con.setAutoCommit(true);
+			return counts;
+		}
+	}
+
+	@Benchmark
+	public Narrow updateNarrow() {
+		narrow.id = updateCount++ % UPDATE_ROWS;
+		db.update(narrow);
+		return narrow;
+	}
+
+	@Benchmark
+	public int updateNarrowJdbc() throws SQLException {
+		try (Connection con = db.getConnection();
+				PreparedStatement state = con.prepareStatement("update narrow set name=?,amount=? where id=?")) {
+			state.setString(1, narrow.name);
+			state.setDouble(2, narrow.amount);
+			state.setLong(3, updateCount++ % UPDATE_ROWS);
+			return state.executeUpdate();
+		}
+	}
+
+	@Benchmark
+	public Wide updateWide() {
+		wide.id = updateCount++ % UPDATE_ROWS;
+		db.update(wide);
+		return wide;
+	}
+
+}
@@ -0,0 +1,153 @@
+package com.dieselpoint.norm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Collects single-row lookups by primary key from many threads and fetches
+ * them together, in one "select ... where id in (...)" per batch, instead of
+ * spending a connection checkout and a round trip on each one. A batch is sent
+ * when it reaches maxBatchSize keys, or when the window has passed since its
+ * first key arrived, whichever comes first. Duplicate keys in a batch are only
+ * fetched once.
+ * <p>
+ * Create one with Database.batchLoader() and share it between threads:
+ *
+ * <pre>
+ * BatchLoader&lt;Long, Person&gt; people = db.batchLoader(Person.class, 2, 100);
+ * Person p = people.load(42L).join(); // null if there is no such row
+ * </pre>
+ *
+ * The row class must have exactly one @Id property.
+ */
+public class BatchLoader<K, T> implements AutoCloseable {
+
+	private final Database db;
+	private final Class<T> rowClass;
+	private final PojoInfo pojoInfo;
+	private final String keyName;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final ScheduledThreadPoolExecutor executor;
+
+	private final Object lock = new Object();
+	private Map<Object, CompletableFuture<T>> pending = new LinkedHashMap<>();
+	private ScheduledFuture<?> timer;
+
+	BatchLoader(Database db, Class<T> rowClass, long windowMillis, int maxBatchSize) {
+		this.db = db;
+		this.rowClass = rowClass;
+		this.pojoInfo = db.getSqlMaker().getPojoInfo(rowClass);
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+
+		if (!(pojoInfo instanceof StandardPojoInfo)
+				|| ((StandardPojoInfo) pojoInfo).primaryKeyNames.size() != 1) {
+			throw new DbException("BatchLoader needs a row class with exactly one @Id property: " + rowClass.getName());
+		}
+		this.keyName = ((StandardPojoInfo) pojoInfo).primaryKeyNames.get(0);
+
+		int threads = Math.max(1, Math.min(4, db.getMaxPoolSize()));
+		this.executor = new ScheduledThreadPoolExecutor(threads, r -> {
+			Thread t = new Thread(r, "norm-batch-loader-" + rowClass.getSimpleName());
+			t.setDaemon(true);
+			return t;
+		});
+		this.executor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Queue a lookup. The future completes with the row, or with null if no row
+	 * has that key, once the batch it's part of has been fetched.
+	 */
+	public CompletableFuture<T> load(K key) {
+		Object batchKey = Util.normalizeKey(key);
+		Map<Object, CompletableFuture<T>> full = null;
+		CompletableFuture<T> future;
+
+		synchronized (lock) {
+			future = pending.get(batchKey);
+			if (future == null) {
+				future = new CompletableFuture<>();
+				pending.put(batchKey, future);
+				if (pending.size() >= maxBatchSize) {
+					full = takePending();
+				} else if (pending.size() == 1) {
+					timer = executor.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+
+		if (full != null) {
+			// the thread that fills the batch pays for it
+			fetch(full);
+		}
+		return future;
+	}
+
+	/**
+	 * Fetch whatever is pending now, without waiting for the window to pass.
+	 */
+	public void flush() {
+		Map<Object, CompletableFuture<T>> batch;
+		synchronized (lock) {
+			batch = takePending();
+		}
+		if (!batch.isEmpty()) {
+			fetch(batch);
+		}
+	}
+
+	private Map<Object, CompletableFuture<T>> takePending() {
+		Map<Object, CompletableFuture<T>> batch = pending;
+		pending = new LinkedHashMap<>();
+		if (timer != null) {
+			timer.cancel(false);
+			timer = null;
+		}
+		return batch;
+	}
+
+	private void fetch(Map<Object, CompletableFuture<T>> batch) {
+		try {
+			List<Object> keys = new ArrayList<>(batch.keySet());
+			String where = keyName + " in (" + Util.getQuestionMarks(keys.size()) + ")";
+			List<T> rows = db.where(where, keys.toArray()).results(rowClass);
+
+			for (T row : rows) {
+				CompletableFuture<T> future = batch.get(Util.normalizeKey(pojoInfo.getValue(row, keyName)));
+				if (future != null) {
+					future.complete(row);
+				}
+			}
+			for (CompletableFuture<T> future : batch.values()) {
+				// the rest weren't found
+				future.complete(null);
+			}
+
+		} catch (Throwable t) {
+			for (CompletableFuture<T> future : batch.values()) {
+				future.completeExceptionally(t);
+			}
+		}
+	}
+
+	/**
+	 * Fetches anything still pending and stops the background threads.
+	 */
+	@Override
+	public void close() {
+		flush();
+		executor.shutdown();
+	}
+
+}
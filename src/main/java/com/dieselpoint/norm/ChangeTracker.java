@@ -0,0 +1,140 @@
+package com.dieselpoint.norm;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Remembers the column values a row had when it was loaded or last written, so
+ * that an update can set only the columns that changed since. Rows are held by
+ * identity and weakly: a row that is no longer referenced elsewhere drops out
+ * on its own, so tracking never keeps rows alive.
+ * <p>
+ * A snapshot is the row's values for pojoInfo.updateColumnNames, as they are
+ * written to the database, so serialized and converted columns compare by what
+ * would be stored.
+ */
+class ChangeTracker {
+
+	private final Map<RowRef, Object[]> snapshots = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+	/**
+	 * Snapshot the row's current values, replacing any earlier snapshot.
+	 */
+	void track(StandardPojoInfo pojoInfo, Object row) {
+		expunge();
+		snapshots.put(new RowRef(row, collected), snapshot(pojoInfo, row));
+	}
+
+	void untrack(Object row) {
+		snapshots.remove(new RowRef(row, null));
+	}
+
+	boolean isTracked(Object row) {
+		return snapshots.containsKey(new RowRef(row, null));
+	}
+
+	/**
+	 * Returns the indexes into pojoInfo.updateColumnNames of the columns that
+	 * changed since the row's snapshot, or null if the row isn't tracked.
+	 */
+	BitSet changes(StandardPojoInfo pojoInfo, Object row) {
+		if (snapshots.isEmpty()) {
+			return null;
+		}
+		Object[] before = snapshots.get(new RowRef(row, null));
+		if (before == null) {
+			return null;
+		}
+		String[] cols = pojoInfo.updateColumnNames;
+		BitSet changed = new BitSet(cols.length);
+		for (int i = 0; i < cols.length; i++) {
+			if (!Objects.deepEquals(before[i], pojoInfo.getValue(row, cols[i]))) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	int size() {
+		expunge();
+		return snapshots.size();
+	}
+
+	private static Object[] snapshot(StandardPojoInfo pojoInfo, Object row) {
+		String[] cols = pojoInfo.updateColumnNames;
+		Object[] values = new Object[cols.length];
+		for (int i = 0; i < cols.length; i++) {
+			values[i] = copy(pojoInfo.getValue(row, cols[i]));
+		}
+		return values;
+	}
+
+	/**
+	 * Copy the mutable values that are commonly changed in place, so the
+	 * snapshot doesn't change along with the row.
+	 */
+	private static Object copy(Object value) {
+		if (value instanceof Date) {
+			return ((Date) value).clone();
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
+		if (value instanceof Object[]) {
+			return ((Object[]) value).clone();
+		}
+		if (value instanceof List) {
+			return new ArrayList<>((List<?>) value);
+		}
+		return value;
+	}
+
+	private void expunge() {
+		Object ref;
+		while ((ref = collected.poll()) != null) {
+			snapshots.remove(ref);
+		}
+	}
+
+	/**
+	 * Weak reference to a row that compares by identity. A cleared reference is
+	 * only equal to itself, which is enough to remove it.
+	 */
+	private static class RowRef extends WeakReference<Object> {
+
+		private final int hash;
+
+		RowRef(Object row, ReferenceQueue<Object> queue) {
+			super(row, queue);
+			this.hash = System.identityHashCode(row);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RowRef)) {
+				return false;
+			}
+			Object row = get();
+			return row != null && row == ((RowRef) obj).get();
+		}
+	}
+
+}
@@ -1,17 +1,29 @@
 package com.dieselpoint.norm;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import com.dieselpoint.norm.csv.CsvImport;
+import com.dieselpoint.norm.csv.CsvImportOptions;
+import com.dieselpoint.norm.idgen.IdGenerators;
+import com.dieselpoint.norm.latency.AsyncLatencyDispatcher;
 import com.dieselpoint.norm.latency.DbLatencyWarning;
 import com.dieselpoint.norm.latency.LatencyAlerter;
+import com.dieselpoint.norm.latency.QueryScope;
+import com.dieselpoint.norm.latency.SlowQueryExplainer;
+import com.dieselpoint.norm.metrics.MetricsRegistry;
+import com.dieselpoint.norm.serialize.CompressionStats;
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
 import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
 import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
@@ -34,6 +46,15 @@ public class Database {
 	protected int maxPoolSize = 10;
 	protected long maxLatency = System.getProperty("norm.maxLatency") != null ? Integer.parseInt( System.getProperty("norm.maxLatency") ) : -1;
 	protected ArrayList<LatencyAlerter> latencyAlerters = new ArrayList<>();
+	protected volatile AsyncLatencyDispatcher latencyDispatcher;
+	protected volatile SlowQueryExplainer slowQueryExplainer;
+	protected int repeatedStatementThreshold = 10;
+	protected boolean failOnRepeatedStatements = false;
+	protected final ThreadLocal<QueryScope> currentScope = new ThreadLocal<>();
+	protected MetricsRegistry metrics = new MetricsRegistry();
+	protected volatile boolean trackChanges = false;
+	final ChangeTracker changeTracker = new ChangeTracker();
+	protected IdGenerators idGenerators = new IdGenerators();
 
 	protected Map<String, String> dataSourceProperties = new HashMap<>();
 
@@ -130,6 +151,58 @@ public class Database {
 		return new Query(this).orderBy(orderBy);
 	}
 
+	/**
+	 * Create a loader that batches primary key lookups from many threads into one
+	 * "where id in (...)" query. See {@link BatchLoader}. Close it when done.
+	 * 
+	 * @param clazz        the row class, which must have a single @Id property
+	 * @param windowMillis how long to wait for more keys after the first one
+	 *                     arrives
+	 * @param maxBatchSize send the batch as soon as it has this many keys
+	 */
+	public <K, T> BatchLoader<K, T> batchLoader(Class<T> clazz, long windowMillis, int maxBatchSize) {
+		return new BatchLoader<>(this, clazz, windowMillis, maxBatchSize);
+	}
+
+	/**
+	 * Turn change tracking on or off for rows loaded with results() and first().
+	 * A tracked row remembers the values it was loaded with, and update() then
+	 * sets only the columns that changed, or skips the statement if none did.
+	 * That means less to log and fewer index updates on the database side. Rows
+	 * are tracked by identity and held weakly, so they can still be garbage
+	 * collected. Off by default.
+	 * <p>
+	 * A tracked row is taken to match the database after every update. If the
+	 * update was part of a transaction that rolls back, call {@link #track(Object)}
+	 * on the row after reloading it, or {@link #untrack(Object)} it.
+	 */
+	public void setTrackChanges(boolean trackChanges) {
+		this.trackChanges = trackChanges;
+	}
+
+	public boolean isTrackChanges() {
+		return trackChanges;
+	}
+
+	/**
+	 * Start tracking changes to a row, taking its current values as the ones in
+	 * the database. Works whether or not setTrackChanges() is on.
+	 */
+	public void track(Object row) {
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(row.getClass());
+		if (!(pojoInfo instanceof StandardPojoInfo)) {
+			throw new DbException("Change tracking needs a StandardPojoInfo for " + row.getClass().getName());
+		}
+		changeTracker.track((StandardPojoInfo) pojoInfo, row);
+	}
+
+	/**
+	 * Stop tracking changes to a row, so the next update() sets every column.
+	 */
+	public void untrack(Object row) {
+		changeTracker.untrack(row);
+	}
+
 	/**
 	 * Returns a JDBC connection. Can be useful if you need to customize how
 	 * transactions work, but you shouldn't normally need to call this method. You
@@ -140,6 +213,7 @@ public class Database {
 
 			if (ds == null) {
 				ds = getDataSource();
+				metrics.setDataSource(ds);
 			}
 			return ds.getConnection();
 
@@ -209,13 +283,62 @@ public class Database {
 	}
 
 	/**
-	 * Upsert a row in a table. It will insert, and if that fails, do an update with
-	 * a match on a primary key.
+	 * Upsert a row in a table. It will insert, or if a row with the same primary
+	 * key exists, update it, in a single statement. Needs a SqlMaker that
+	 * supports it: MySqlMaker, PostgresMaker or H2Maker.
 	 */
 	public Query upsert(Object row) {
 		return new Query(this).upsert(row);
 	}
 
+	/**
+	 * Insert a collection of rows using JDBC batches. See
+	 * {@link Query#insertAll(Collection)}.
+	 */
+	public Query insertAll(Collection<?> rows) {
+		return new Query(this).insertAll(rows);
+	}
+
+	/**
+	 * Upsert a collection of rows using JDBC batches. See
+	 * {@link Query#upsertAll(Collection)}.
+	 */
+	public Query upsertAll(Collection<?> rows) {
+		return new Query(this).upsertAll(rows);
+	}
+
+	/**
+	 * Update a collection of rows using JDBC batches. See
+	 * {@link Query#updateAll(Collection)}.
+	 */
+	public Query updateAll(Collection<?> rows) {
+		return new Query(this).updateAll(rows);
+	}
+
+	/**
+	 * Import a CSV file into the table of rowClass and return the number of rows
+	 * written. The file is memory-mapped and parsed on this thread, with each
+	 * header column going into the property of that name through its serializer,
+	 * converter or enum mapping. Writer threads insert the rows in batches, each
+	 * batch in a transaction of its own. See {@link CsvImportOptions} for the
+	 * file's format, batch size, number of writers and progress callbacks.
+	 */
+	public <T> long importCsv(Path file, Class<T> rowClass, CsvImportOptions options) {
+		return new CsvImport<>(this, file, rowClass, options).run();
+	}
+
+	public <T> long importCsv(Path file, Class<T> rowClass) {
+		return importCsv(file, rowClass, new CsvImportOptions());
+	}
+
+	/**
+	 * Insert rows through the database's native bulk path. See
+	 * {@link Query#bulkLoad(Iterable)}.
+	 */
+	public Query bulkLoad(Iterable<?> rows) {
+		return new Query(this).bulkLoad(rows);
+	}
+
 	/**
 	 * Create a query and specify which table it operates on.
 	 */
@@ -243,6 +366,9 @@ public class Database {
 	}
 
 	public void close() {
+		metrics.unregisterMBean();
+		setExplainSlowQueries(false);
+		setAsyncLatencyAlerts(0);
 		if (ds instanceof HikariDataSource) {
 			((HikariDataSource) ds).close();
 		}
@@ -308,8 +434,160 @@ public class Database {
 	}
 
 	public void alertLatency( DbLatencyWarning latencyWarning ) {
+		SlowQueryExplainer explainer = slowQueryExplainer;
+		if (explainer != null && explainer.explain( latencyWarning )) {
+			// comes back here with the plan attached
+			return;
+		}
+		AsyncLatencyDispatcher dispatcher = latencyDispatcher;
+		if (dispatcher != null) {
+			dispatcher.offer( latencyWarning );
+		} else {
+			dispatchLatency( latencyWarning );
+		}
+	}
+
+	/**
+	 * Calls each {@link LatencyAlerter} in turn. This runs on the query thread, or on the background thread if
+	 * async alerts are on, or on the explainer's thread for a warning it explained.
+	 */
+	protected void dispatchLatency( DbLatencyWarning latencyWarning ) {
 		for (LatencyAlerter a : latencyAlerters) {
 			a.alertLatencyFailure( latencyWarning );
 		}
 	}
+
+	/**
+	 * Hands latency warnings to a background thread instead of calling the {@link LatencyAlerter}s on the query
+	 * thread. Warnings wait in a lock-free buffer of the given capacity; if it fills up, new warnings are dropped and
+	 * counted (see {@link #getDroppedLatencyAlerts()}). Pass 0 to go back to synchronous alerts. Add the alerters
+	 * before turning this on. Note that an {@link com.dieselpoint.norm.latency.ExceptionLatencyAlerter} can only fail
+	 * the query when alerts are synchronous.
+	 */
+	public synchronized void setAsyncLatencyAlerts( int capacity ) {
+		if (latencyDispatcher != null) {
+			latencyDispatcher.close();
+			latencyDispatcher = null;
+		}
+		if (capacity > 0) {
+			latencyDispatcher = new AsyncLatencyDispatcher( capacity, this::dispatchLatency );
+		}
+	}
+
+	/**
+	 * When on, a statement that exceeds its maxLatency is explained on a background connection (using
+	 * {@link SqlMaker#getExplainSql(String)}) and the plan is attached to the {@link DbLatencyWarning} as
+	 * {@code plan}. Each statement fingerprint is explained at most once a minute. Off by default. Note that a
+	 * warning that gets explained reaches the alerters from the explainer's thread, even when alerts are
+	 * synchronous, so an {@link com.dieselpoint.norm.latency.ExceptionLatencyAlerter} can't fail that query.
+	 */
+	public void setExplainSlowQueries( boolean explain ) {
+		setExplainSlowQueries( explain, 60_000 );
+	}
+
+	/**
+	 * @param minIntervalMillis the minimum time between two explains of the same statement fingerprint
+	 */
+	public synchronized void setExplainSlowQueries( boolean explain, long minIntervalMillis ) {
+		if (slowQueryExplainer != null) {
+			slowQueryExplainer.close();
+			slowQueryExplainer = null;
+		}
+		if (explain) {
+			slowQueryExplainer = new SlowQueryExplainer( this, minIntervalMillis );
+		}
+	}
+
+	/**
+	 * Starts a {@link QueryScope} bound to the current thread, which counts statement executions per SQL fingerprint
+	 * to catch N+1 query patterns. Queries on this thread report to the scope until it's closed; use
+	 * try-with-resources. Scopes can be nested: closing the inner one makes the outer one current again. Queries
+	 * that are part of a {@link Transaction} with its own scope report to that scope instead.
+	 */
+	public QueryScope openScope() {
+		QueryScope previous = currentScope.get();
+		QueryScope scope = new QueryScope( this, repeatedStatementThreshold, failOnRepeatedStatements, closing -> {
+			if (currentScope.get() == closing) {
+				if (previous == null) {
+					currentScope.remove();
+				} else {
+					currentScope.set( previous );
+				}
+			}
+		} );
+		currentScope.set( scope );
+		return scope;
+	}
+
+	/**
+	 * @return the scope opened on this thread with {@link #openScope()}, or null
+	 */
+	public QueryScope getCurrentScope() {
+		return currentScope.get();
+	}
+
+	public int getRepeatedStatementThreshold() {
+		return repeatedStatementThreshold;
+	}
+
+	/**
+	 * @param threshold the number of times a statement fingerprint may run within one {@link QueryScope} before a
+	 * {@link com.dieselpoint.norm.latency.RepeatedStatementWarning} is raised. Default is 10. Applies to scopes
+	 * opened afterwards.
+	 */
+	public void setRepeatedStatementThreshold( int threshold ) {
+		this.repeatedStatementThreshold = threshold;
+	}
+
+	/**
+	 * Test mode: when a statement goes over the repeated statement threshold in a {@link QueryScope}, the query
+	 * throws a {@link DbException} instead of raising a warning, so N+1 patterns fail the build.
+	 */
+	public void setFailOnRepeatedStatements( boolean fail ) {
+		this.failOnRepeatedStatements = fail;
+	}
+
+	public boolean isFailOnRepeatedStatements() {
+		return failOnRepeatedStatements;
+	}
+
+	/**
+	 * @return the number of latency warnings dropped because the async buffer was full
+	 */
+	public long getDroppedLatencyAlerts() {
+		AsyncLatencyDispatcher dispatcher = latencyDispatcher;
+		return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+	}
+
+	/**
+	 * Returns the id generators that assign ids on the client for properties
+	 * annotated @ClientGenerated, by their @GeneratedValue generator name.
+	 * Register your own here. See {@link IdGenerators}.
+	 */
+	public IdGenerators getIdGenerators() {
+		return idGenerators;
+	}
+
+	/**
+	 * Returns the compression stats of each of the class's columns that are
+	 * annotated @Compressed or @DbSerializer(compressed = true), by column name.
+	 */
+	public Map<String, CompressionStats> getCompressionStats(Class<?> rowClass) {
+		PojoInfo pojoInfo = getSqlMaker().getPojoInfo(rowClass);
+		if (pojoInfo instanceof StandardPojoInfo) {
+			return ((StandardPojoInfo) pojoInfo).getCompressionStats();
+		}
+		return new HashMap<>();
+	}
+
+	/**
+	 * Returns the registry that records latency, row counts and errors for every
+	 * statement this Database executes. Metrics are on by default; turn them off
+	 * with getMetrics().setEnabled(false). Call
+	 * getMetrics().registerMBean("com.dieselpoint.norm:type=Metrics,name=mydb") to
+	 * expose them over JMX.
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
 }
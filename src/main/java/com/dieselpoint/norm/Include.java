@@ -0,0 +1,146 @@
+package com.dieselpoint.norm;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * One Query.include() call: after the parent rows are loaded, fetch the child
+ * rows whose foreign key matches a parent's @Id and put them in the parent's
+ * @OneToMany collection property. Each level costs one query per
+ * {@value #CHUNK_SIZE} parents, no matter how many parents there are.
+ */
+class Include {
+
+	/**
+	 * The most keys sent in a single "in (...)" list. Oracle won't take more than
+	 * 1000.
+	 */
+	static final int CHUNK_SIZE = 1000;
+
+	private final Class<?> childClass;
+	private final String foreignKeyProperty;
+	private final String targetCollectionProperty;
+
+	Include(Class<?> childClass, String foreignKeyProperty, String targetCollectionProperty) {
+		this.childClass = childClass;
+		this.foreignKeyProperty = foreignKeyProperty;
+		this.targetCollectionProperty = targetCollectionProperty;
+	}
+
+	/**
+	 * Run the includes in order. Each one attaches to whichever class loaded so far
+	 * (the root, or the children of an earlier include) has the target collection
+	 * property, which is how nesting works.
+	 */
+	static void loadAll(Query parentQuery, Class<?> rootClass, List<?> roots, List<Include> includes) {
+		Map<Class<?>, List<Object>> loaded = new LinkedHashMap<>();
+		loaded.put(rootClass, new ArrayList<>(roots));
+		for (Include include : includes) {
+			include.load(parentQuery, loaded);
+		}
+	}
+
+	private void load(Query parentQuery, Map<Class<?>, List<Object>> loaded) {
+		Database db = parentQuery.getDatabase();
+		SqlMaker sqlMaker = db.getSqlMaker();
+
+		Class<?> ownerClass = null;
+		StandardPojoInfo ownerInfo = null;
+		Property target = null;
+		for (Class<?> clazz : loaded.keySet()) {
+			PojoInfo info = sqlMaker.getPojoInfo(clazz);
+			if (info instanceof StandardPojoInfo) {
+				target = ((StandardPojoInfo) info).relationMap.get(targetCollectionProperty);
+				if (target != null) {
+					ownerClass = clazz;
+					ownerInfo = (StandardPojoInfo) info;
+					break;
+				}
+			}
+		}
+		if (target == null) {
+			throw new DbException("No @OneToMany property named '" + targetCollectionProperty
+					+ "' found on any class loaded so far. Include the parent level first.");
+		}
+		if (ownerInfo.primaryKeyNames.size() != 1) {
+			throw new DbException("include() needs exactly one @Id property on " + ownerClass.getName());
+		}
+		String idName = ownerInfo.primaryKeyNames.get(0);
+
+		Map<Object, List<Object>> ownersByKey = new LinkedHashMap<>();
+		for (Object owner : loaded.get(ownerClass)) {
+			Object key = ownerInfo.getValue(owner, idName);
+			if (key != null) {
+				ownersByKey.computeIfAbsent(Util.normalizeKey(key), k -> new ArrayList<>(1)).add(owner);
+			}
+		}
+
+		PojoInfo childInfo = sqlMaker.getPojoInfo(childClass);
+		Map<Object, List<Object>> childrenByKey = new HashMap<>();
+		List<Object> allChildren = new ArrayList<>();
+
+		List<Object> keys = new ArrayList<>(ownersByKey.keySet());
+		for (int from = 0; from < keys.size(); from += CHUNK_SIZE) {
+			List<Object> chunk = keys.subList(from, Math.min(from + CHUNK_SIZE, keys.size()));
+			String where = foreignKeyProperty + " in (" + Util.getQuestionMarks(chunk.size()) + ")";
+
+			List<?> children = new Query(db).transaction(parentQuery.getTransaction())
+					.maxLatency(parentQuery.getMaxLatencyMillis()).where(where, chunk.toArray()).results(childClass);
+
+			for (Object child : children) {
+				Object fk = Util.normalizeKey(childInfo.getValue(child, foreignKeyProperty));
+				childrenByKey.computeIfAbsent(fk, k -> new ArrayList<>()).add(child);
+				allChildren.add(child);
+			}
+		}
+
+		for (Map.Entry<Object, List<Object>> entry : ownersByKey.entrySet()) {
+			List<Object> children = childrenByKey.get(entry.getKey());
+			for (Object owner : entry.getValue()) {
+				Collection<Object> collection = newCollection(target.dataType, targetCollectionProperty);
+				if (children != null) {
+					collection.addAll(children);
+				}
+				ownerInfo.putValue(owner, targetCollectionProperty, collection);
+			}
+		}
+
+		loaded.computeIfAbsent(childClass, k -> new ArrayList<>()).addAll(allChildren);
+	}
+
+	/**
+	 * Create an empty collection that can be assigned to a @OneToMany property of
+	 * the given type.
+	 */
+	@SuppressWarnings("unchecked")
+	static Collection<Object> newCollection(Class<?> type, String propertyName) {
+		if (type.isAssignableFrom(ArrayList.class)) {
+			return new ArrayList<>();
+		}
+		if (type.isAssignableFrom(LinkedHashSet.class)) {
+			return new LinkedHashSet<>();
+		}
+		if (Collection.class.isAssignableFrom(type) && !type.isInterface()
+				&& !Modifier.isAbstract(type.getModifiers())) {
+			try {
+				return (Collection<Object>) type.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new DbException(e);
+			}
+		}
+		throw new DbException("@OneToMany property '" + propertyName
+				+ "' must be a List, Set or Collection, not " + type.getName());
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.dieselpoint.norm;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Turns the rows of a parent-child join into parent pojos with their children
+ * in a @OneToMany collection, for Query.resultsJoined(). Each column goes to the
+ * parent or the child by its label prefix ("o_id", "l_id"), or failing that by
+ * the table the driver says it came from, so "select o.*, l.*" works on drivers
+ * that report table names. Parents are deduplicated by @Id, so each one is
+ * created once no matter how many child rows it has.
+ */
+class JoinMapper<T> {
+
+	private static final int SKIP = 0;
+	private static final int PARENT = 1;
+	private static final int CHILD = 2;
+
+	private final SqlMaker sqlMaker;
+	private final Class<T> parentClass;
+	private final String parentPrefix;
+	private final Class<?> childClass;
+	private final String childPrefix;
+	private final String collectionProperty;
+
+	private final StandardPojoInfo parentInfo;
+	private final PojoInfo childInfo;
+	private final Property collection;
+
+	private int[] owners;
+	private String[] names;
+	private String[] typeNames;
+	private int parentIdColumn;
+
+	private final Map<Object, Collection<Object>> identityMap = new HashMap<>();
+	private final List<T> out = new ArrayList<>();
+
+	JoinMapper(SqlMaker sqlMaker, Class<T> parentClass, String parentPrefix, Class<?> childClass,
+			String childPrefix, String collectionProperty) {
+		this.sqlMaker = sqlMaker;
+		this.parentClass = parentClass;
+		this.parentPrefix = parentPrefix == null ? "" : parentPrefix;
+		this.childClass = childClass;
+		this.childPrefix = childPrefix == null ? "" : childPrefix;
+		this.collectionProperty = collectionProperty;
+
+		PojoInfo info = sqlMaker.getPojoInfo(parentClass);
+		if (!(info instanceof StandardPojoInfo) || ((StandardPojoInfo) info).primaryKeyNames.size() != 1) {
+			throw new DbException("resultsJoined() needs exactly one @Id property on " + parentClass.getName());
+		}
+		this.parentInfo = (StandardPojoInfo) info;
+		this.collection = parentInfo.relationMap.get(collectionProperty);
+		if (collection == null) {
+			throw new DbException(
+					"No @OneToMany property named '" + collectionProperty + "' on " + parentClass.getName());
+		}
+		this.childInfo = sqlMaker.getPojoInfo(childClass);
+	}
+
+	/**
+	 * Decide, once per query, which pojo each column belongs to and which property
+	 * it goes in.
+	 */
+	void init(ResultSetMetaData meta) throws SQLException {
+		int colCount = meta.getColumnCount();
+		owners = new int[colCount + 1];
+		names = new String[colCount + 1];
+		typeNames = new String[colCount + 1];
+		parentIdColumn = -1;
+
+		String idName = parentInfo.primaryKeyNames.get(0);
+		String parentTable = unqualified(parentInfo.table);
+		String childTable = childInfo instanceof StandardPojoInfo ? unqualified(((StandardPojoInfo) childInfo).table)
+				: null;
+
+		for (int i = 1; i <= colCount; i++) {
+			String label = meta.getColumnLabel(i);
+			typeNames[i] = meta.getColumnTypeName(i);
+
+			boolean parentMatch = hasPrefix(label, parentPrefix);
+			boolean childMatch = hasPrefix(label, childPrefix);
+			if (parentMatch && childMatch) {
+				// one prefix is a prefix of the other, the longer one wins
+				parentMatch = parentPrefix.length() > childPrefix.length();
+				childMatch = !parentMatch;
+			}
+
+			if (childMatch) {
+				owners[i] = CHILD;
+				names[i] = label.substring(childPrefix.length());
+			} else if (parentMatch) {
+				owners[i] = PARENT;
+				names[i] = label.substring(parentPrefix.length());
+			} else {
+				String table = meta.getTableName(i);
+				names[i] = label;
+				if (table != null && table.equalsIgnoreCase(childTable)) {
+					owners[i] = CHILD;
+				} else if (table != null && table.equalsIgnoreCase(parentTable)) {
+					owners[i] = PARENT;
+				} else if (parentPrefix.isEmpty()) {
+					owners[i] = PARENT;
+				} else if (childPrefix.isEmpty()) {
+					owners[i] = CHILD;
+				} else {
+					owners[i] = SKIP;
+				}
+			}
+
+			if (owners[i] == PARENT && parentIdColumn < 0 && names[i].equalsIgnoreCase(idName)) {
+				parentIdColumn = i;
+			}
+		}
+
+		if (parentIdColumn < 0) {
+			throw new DbException("resultsJoined() needs the parent's @Id column '" + parentPrefix + idName
+					+ "' in the select list");
+		}
+	}
+
+	private static boolean hasPrefix(String label, String prefix) {
+		return prefix.length() > 0 && label.length() > prefix.length()
+				&& label.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+
+	private static String unqualified(String table) {
+		return table.substring(table.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * Map the current row. A parent that's already been seen is reused; the child
+	 * is skipped if all of its columns are null, as they are when an outer join
+	 * finds no children.
+	 */
+	void map(ResultSet rs) throws SQLException, ReflectiveOperationException {
+		Object id = sqlMaker.convertValue(rs.getObject(parentIdColumn), typeNames[parentIdColumn]);
+		if (id == null) {
+			throw new DbException("Joined row has a null parent id");
+		}
+		id = Util.normalizeKey(id);
+
+		Collection<Object> children = identityMap.get(id);
+		if (children == null) {
+			T parent = parentClass.getDeclaredConstructor().newInstance();
+			for (int i = 1; i < owners.length; i++) {
+				if (owners[i] == PARENT) {
+					Object colValue = sqlMaker.convertValue(rs.getObject(i), typeNames[i]);
+					parentInfo.putValue(parent, names[i], colValue, true);
+				}
+			}
+			children = Include.newCollection(collection.dataType, collectionProperty);
+			parentInfo.putValue(parent, collectionProperty, children);
+			identityMap.put(id, children);
+			out.add(parent);
+		}
+
+		Object child = null;
+		for (int i = 1; i < owners.length; i++) {
+			if (owners[i] == CHILD) {
+				Object colValue = rs.getObject(i);
+				if (colValue == null) {
+					continue;
+				}
+				if (child == null) {
+					child = childClass.getDeclaredConstructor().newInstance();
+				}
+				childInfo.putValue(child, names[i], sqlMaker.convertValue(colValue, typeNames[i]), true);
+			}
+		}
+		if (child != null) {
+			children.add(child);
+		}
+	}
+
+	/**
+	 * The parents, in the order they first appeared in the result set.
+	 */
+	List<T> getResults() {
+		return out;
+	}
+
+}
@@ -1,6 +1,11 @@
 package com.dieselpoint.norm;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -8,12 +13,27 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.export.Exporter;
+import com.dieselpoint.norm.export.Format;
+import com.dieselpoint.norm.idgen.IdGenerator;
 import com.dieselpoint.norm.latency.LatencyTimer;
+import com.dieselpoint.norm.latency.Phase;
+import com.dieselpoint.norm.latency.QueryScope;
+import com.dieselpoint.norm.offheap.OffHeapList;
 import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.Property;
 import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
 
 /**
  * Holds all of the information in a query. Create a query using
@@ -43,6 +63,10 @@ public class Query {
 
 	private Transaction transaction;
 
+	private List<Include> includes;
+
+	private int batchSize = 1000;
+
 	public Query(Database db) {
 		this.db = db;
 		this.sqlMaker = db.getSqlMaker();
@@ -96,6 +120,30 @@ public class Query {
 		return this;
 	}
 
+	/**
+	 * Eagerly load a child collection for every row the query returns. After the
+	 * rows are mapped, the children are fetched with "where foreignKeyProperty in
+	 * (...)", a chunk of parent ids at a time, and put into each parent's
+	 * targetCollectionProperty, which must be annotated @OneToMany. Call it again
+	 * for more collections, or for grandchildren:
+	 * 
+	 * <pre>
+	 * db.where("customerId=?", 42)
+	 * 		.include(Line.class, "orderId", "lines")
+	 * 		.include(LineNote.class, "lineId", "notes")
+	 * 		.results(Order.class);
+	 * </pre>
+	 * 
+	 * That's one query per level instead of one per row.
+	 */
+	public Query include(Class<?> childClass, String foreignKeyProperty, String targetCollectionProperty) {
+		if (includes == null) {
+			includes = new ArrayList<>();
+		}
+		includes.add(new Include(childClass, foreignKeyProperty, targetCollectionProperty));
+		return this;
+	}
+
 	/**
 	 * Returns the first row in a query in a pojo, or null if the query returns no
 	 * results. Will return it in a Map if a class that implements Map is specified.
@@ -133,6 +181,8 @@ public class Query {
 				sql = sqlMaker.getSelectSql(this, clazz);
 			}
 
+			LatencyTimer myTimer = new LatencyTimer(this);
+
 			Connection localCon;
 			if (transaction == null) {
 				localCon = db.getConnection();
@@ -140,13 +190,14 @@ public class Query {
 			} else {
 				localCon = transaction.getConnection();
 			}
+			myTimer.endPhase(Phase.CONNECT);
 
 			state = localCon.prepareStatement(sql);
 			loadArgs(state);
+			myTimer.endPhase(Phase.PREPARE);
 
-			LatencyTimer myTimer = new LatencyTimer( this );
 			ResultSet rs = state.executeQuery();
-			myTimer.stop( sql, args );
+			myTimer.endPhase(Phase.EXECUTE);
 
 			meta = rs.getMetaData();
 			int colCount = meta.getColumnCount();
@@ -160,9 +211,13 @@ public class Query {
 				}
 				out.add(map);
 			}
+			myTimer.endPhase(Phase.FETCH);
+			myTimer.stop(sql, args, out.size());
+			recordInScope(myTimer);
 
 		} catch (InstantiationException | IllegalAccessException | SQLException | IllegalArgumentException
 				| InvocationTargetException | NoSuchMethodException | SecurityException e) {
+			recordError();
 			throw new DbException(e);
 		} finally {
 			close(state);
@@ -192,6 +247,8 @@ public class Query {
 				sql = sqlMaker.getSelectSql(this, clazz);
 			}
 
+			LatencyTimer myLatencyTimer = new LatencyTimer(this);
+
 			Connection localCon;
 			if (transaction == null) {
 				localCon = db.getConnection();
@@ -199,13 +256,14 @@ public class Query {
 			} else {
 				localCon = transaction.getConnection();
 			}
+			myLatencyTimer.endPhase(Phase.CONNECT);
 
 			state = localCon.prepareStatement(sql);
 			loadArgs(state);
+			myLatencyTimer.endPhase(Phase.PREPARE);
 
-			LatencyTimer myLatencyTimer = new LatencyTimer( this );
 			ResultSet rs = state.executeQuery();
-			myLatencyTimer.stop( sql, args );
+			myLatencyTimer.endPhase(Phase.EXECUTE);
 
 			meta = rs.getMetaData();
 			int colCount = meta.getColumnCount();
@@ -220,6 +278,7 @@ public class Query {
 
 			} else {
 				PojoInfo pojoInfo = sqlMaker.getPojoInfo(clazz);
+				boolean track = db.isTrackChanges() && pojoInfo instanceof StandardPojoInfo;
 				while (rs.next()) {
 					T row = clazz.getDeclaredConstructor().newInstance();
 
@@ -229,12 +288,19 @@ public class Query {
 
 						pojoInfo.putValue(row, colName, colValue, true);
 					}
+					if (track) {
+						db.changeTracker.track((StandardPojoInfo) pojoInfo, row);
+					}
 					out.add(row);
 				}
 			}
+			myLatencyTimer.endPhase(Phase.FETCH);
+			myLatencyTimer.stop(sql, args, out.size());
+			recordInScope(myLatencyTimer);
 
 		} catch (InstantiationException | IllegalAccessException | SQLException | IllegalArgumentException
 				| InvocationTargetException | NoSuchMethodException | SecurityException e) {
+			recordError();
 			DbException dbe = new DbException(e);
 			dbe.setSql(sql);
 			throw dbe;
@@ -243,9 +309,311 @@ public class Query {
 			close(con);
 		}
 
+		if (includes != null && !out.isEmpty()) {
+			Include.loadAll(this, clazz, out, includes);
+		}
+
 		return out;
 	}
 
+	/**
+	 * Run the query set with .sql() and write its rows to the channel in the
+	 * format, straight from the ResultSet, without making an object per row. The
+	 * driver is asked to stream the rows (see
+	 * {@link SqlMaker#getStreamingFetchSize()}), and the output goes through a
+	 * reused buffer, so memory use doesn't depend on the number of rows. Returns
+	 * the number of rows written. The channel is not closed.
+	 */
+	public long exportTo(WritableByteChannel channel, Format format) {
+
+		if (sql == null) {
+			throw new DbException("exportTo() needs the select. Set it with .sql().");
+		}
+
+		Connection con = null;
+		PreparedStatement state = null;
+		boolean restoreAutoCommit = false;
+
+		try {
+
+			LatencyTimer myTimer = new LatencyTimer(this);
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+
+				// Postgres only streams inside a transaction
+				if (con.getAutoCommit()) {
+					con.setAutoCommit(false);
+					restoreAutoCommit = true;
+				}
+			} else {
+				localCon = transaction.getConnection();
+			}
+			myTimer.endPhase(Phase.CONNECT);
+
+			state = localCon.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			state.setFetchSize(sqlMaker.getStreamingFetchSize());
+			loadArgs(state);
+			myTimer.endPhase(Phase.PREPARE);
+
+			ResultSet rs = state.executeQuery();
+			myTimer.endPhase(Phase.EXECUTE);
+
+			long rows = Exporter.export(rs, channel, format);
+			myTimer.endPhase(Phase.FETCH);
+			myTimer.stop(sql, args, (int) Math.min(rows, Integer.MAX_VALUE));
+			recordInScope(myTimer);
+			return rows;
+
+		} catch (SQLException | IOException e) {
+			recordError();
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			if (restoreAutoCommit) {
+				try {
+					con.rollback();
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// the pool resets it anyway
+				}
+			}
+			close(con);
+		}
+	}
+
+	/**
+	 * Export the rows to a file, replacing it if it exists. See
+	 * {@link #exportTo(WritableByteChannel, Format)}.
+	 */
+	public long exportTo(Path file, Format format) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			return exportTo(channel, format);
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Like {@link #results(Class)}, but for results too big for the heap. The
+	 * rows are read in one pass, streamed from the driver, into a compact binary
+	 * form in direct memory, which spills to a memory-mapped temp file past
+	 * {@link OffHeapList#DEFAULT_MAX_DIRECT_BYTES}. Each get(i) makes a new
+	 * object from row i. Close the list to free the memory:
+	 *
+	 * <pre>
+	 * try (OffHeapList&lt;Order&gt; orders = db.where("year=?", 2024).resultsOffHeap(Order.class)) {
+	 * 	Order last = orders.get(orders.size() - 1);
+	 * }
+	 * </pre>
+	 *
+	 * include() isn't supported here.
+	 */
+	public <T> OffHeapList<T> resultsOffHeap(Class<T> clazz) {
+		return resultsOffHeap(clazz, OffHeapList.DEFAULT_MAX_DIRECT_BYTES);
+	}
+
+	/**
+	 * See {@link #resultsOffHeap(Class)}. The rows spill to a temp file once
+	 * they would take more than maxDirectBytes of direct memory.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> OffHeapList<T> resultsOffHeap(Class<T> clazz, long maxDirectBytes) {
+
+		if (includes != null) {
+			throw new DbException("include() isn't supported with resultsOffHeap()");
+		}
+
+		Connection con = null;
+		PreparedStatement state = null;
+		boolean restoreAutoCommit = false;
+
+		try {
+			if (sql == null) {
+				sql = sqlMaker.getSelectSql(this, clazz);
+			}
+
+			LatencyTimer myTimer = new LatencyTimer(this);
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+
+				// Postgres only streams inside a transaction
+				if (con.getAutoCommit()) {
+					con.setAutoCommit(false);
+					restoreAutoCommit = true;
+				}
+			} else {
+				localCon = transaction.getConnection();
+			}
+			myTimer.endPhase(Phase.CONNECT);
+
+			state = localCon.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			state.setFetchSize(sqlMaker.getStreamingFetchSize());
+			loadArgs(state);
+			myTimer.endPhase(Phase.PREPARE);
+
+			ResultSet rs = state.executeQuery();
+			myTimer.endPhase(Phase.EXECUTE);
+
+			meta = rs.getMetaData();
+			int colCount = meta.getColumnCount();
+			String[] colNames = new String[colCount];
+			String[] colTypes = new String[colCount];
+			for (int i = 0; i < colCount; i++) {
+				colNames[i] = meta.getColumnLabel(i + 1);
+				colTypes[i] = meta.getColumnTypeName(i + 1);
+			}
+
+			// the same mapping as results(), done row by row in get()
+			Function<Object[], T> materializer;
+			if (Map.class.isAssignableFrom(clazz)) {
+				materializer = values -> {
+					Map<String, Object> map = (Map<String, Object>) newInstance(clazz);
+					for (int i = 0; i < colCount; i++) {
+						map.put(colNames[i], values[i]);
+					}
+					return (T) map;
+				};
+			} else if (Util.isPrimitiveOrString(clazz) || clazz.getPackage().getName().startsWith("java.sql")) {
+				materializer = values -> (T) values[0];
+			} else {
+				PojoInfo pojoInfo = sqlMaker.getPojoInfo(clazz);
+				boolean track = db.isTrackChanges() && pojoInfo instanceof StandardPojoInfo;
+				materializer = values -> {
+					T row = newInstance(clazz);
+					for (int i = 0; i < colCount; i++) {
+						pojoInfo.putValue(row, colNames[i], sqlMaker.convertValue(values[i], colTypes[i]), true);
+					}
+					if (track) {
+						db.changeTracker.track((StandardPojoInfo) pojoInfo, row);
+					}
+					return row;
+				};
+			}
+
+			OffHeapList<T> out = OffHeapList.load(rs, maxDirectBytes, materializer);
+			try {
+				myTimer.endPhase(Phase.FETCH);
+				myTimer.stop(sql, args, out.size());
+				recordInScope(myTimer);
+			} catch (Throwable t) {
+				// the caller never gets the list, so free its memory and temp file here
+				try {
+					out.close();
+				} catch (RuntimeException e) {
+					t.addSuppressed(e);
+				}
+				throw t;
+			}
+			return out;
+
+		} catch (SQLException | RuntimeException e) {
+			recordError();
+			DbException dbe = e instanceof DbException ? (DbException) e : new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			if (restoreAutoCommit) {
+				try {
+					con.rollback();
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// the pool resets it anyway
+				}
+			}
+			close(con);
+		}
+	}
+
+	private static <T> T newInstance(Class<T> clazz) {
+		try {
+			return clazz.getDeclaredConstructor().newInstance();
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException | NoSuchMethodException | SecurityException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Execute a join of a parent table and a child table and return the parents,
+	 * each with its children in the @OneToMany property collectionProperty. A
+	 * parent appears once in the list however many child rows it joined to.
+	 * Columns are assigned by their label prefix, so alias them:
+	 *
+	 * <pre>
+	 * db.sql("select o.id o_id, o.customer o_customer, l.id l_id, l.sku l_sku "
+	 * 		+ "from orders o left join lines l on l.orderId = o.id order by o.id")
+	 * 		.resultsJoined(Order.class, "o_", Line.class, "l_", "lines");
+	 * </pre>
+	 *
+	 * Columns without either prefix are assigned by the table the driver reports
+	 * they came from, which lets "select o.*, l.*" work on drivers that report it.
+	 * The result set is read in a single pass.
+	 */
+	public <T> List<T> resultsJoined(Class<T> parentClass, String parentPrefix, Class<?> childClass,
+			String childPrefix, String collectionProperty) {
+
+		if (sql == null) {
+			throw new DbException("resultsJoined() needs the join sql. Set it with .sql().");
+		}
+
+		JoinMapper<T> mapper = new JoinMapper<>(sqlMaker, parentClass, parentPrefix, childClass, childPrefix,
+				collectionProperty);
+		Connection con = null;
+		PreparedStatement state = null;
+		int rows = 0;
+
+		try {
+			LatencyTimer myTimer = new LatencyTimer(this);
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+			} else {
+				localCon = transaction.getConnection();
+			}
+			myTimer.endPhase(Phase.CONNECT);
+
+			state = localCon.prepareStatement(sql);
+			loadArgs(state);
+			myTimer.endPhase(Phase.PREPARE);
+
+			ResultSet rs = state.executeQuery();
+			myTimer.endPhase(Phase.EXECUTE);
+
+			meta = rs.getMetaData();
+			mapper.init(meta);
+			while (rs.next()) {
+				mapper.map(rs);
+				rows++;
+			}
+			myTimer.endPhase(Phase.FETCH);
+			myTimer.stop(sql, args, rows);
+			recordInScope(myTimer);
+
+		} catch (SQLException | ReflectiveOperationException | IllegalArgumentException | SecurityException e) {
+			recordError();
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			close(con);
+		}
+
+		return mapper.getResults();
+	}
+
 	private void loadArgs(PreparedStatement state) throws SQLException {
 		if (args != null) {
 			for (int i = 0; i < args.length; i++) {
@@ -254,6 +622,47 @@ public class Query {
 		}
 	}
 
+	private void loadWriteArgs(PreparedStatement state, int offset) throws SQLException {
+		if (args != null) {
+			for (int i = 0; i < args.length; i++) {
+				Object arg = args[i];
+
+				/*
+				 * The purpose of this is to allow List args to be inserted into JDBC array
+				 * fields. Postgres JDBC drivers do not handle this correctly.
+				 */
+				if (arg != null && List.class.isAssignableFrom(arg.getClass())) {
+					arg = ((List<?>) arg).toArray();
+				}
+				if (arg instanceof SimpleArray) {
+					arg = sqlMaker.toSqlArray(state.getConnection(), (SimpleArray) arg);
+				}
+
+				state.setObject(offset + i + 1, arg);
+			}
+		}
+	}
+
+	/**
+	 * Reports the statement to the transaction's QueryScope, or else to the one
+	 * open on this thread, if any.
+	 */
+	private void recordInScope(LatencyTimer timer) {
+		QueryScope scope = transaction == null ? null : transaction.getScope();
+		if (scope == null) {
+			scope = db.getCurrentScope();
+		}
+		if (scope != null) {
+			scope.record(sql, timer.getElapsedNanos());
+		}
+	}
+
+	private void recordError() {
+		if (db.getMetrics() != null) {
+			db.getMetrics().recordError(sql);
+		}
+	}
+
 	private void close(AutoCloseable ac) {
 		if (ac == null) {
 			return;
@@ -271,6 +680,8 @@ public class Query {
 	 */
 	public Query insert(Object row) {
 
+		assignIds(row);
+
 		if (this.generatedKeyReceiver == null) {
 			PojoInfo pojoInfo = sqlMaker.getPojoInfo(row.getClass());
 			String[] names = pojoInfo.getGeneratedColumnNames();
@@ -293,6 +704,8 @@ public class Query {
 	 */
 	public Query upsert(Object row) {
 
+		assignIds(row);
+
 		sql = sqlMaker.getUpsertSql(this, row);
 		args = sqlMaker.getUpsertArgs(this, row);
 
@@ -301,18 +714,426 @@ public class Query {
 		return this;
 	}
 
+	/**
+	 * Insert a collection of rows using JDBC batches, which takes one round trip
+	 * per batchSize() rows instead of one per row. The rows must all be of the
+	 * same class. Generated keys are put back into the rows if the driver returns
+	 * them for batches, as H2 and Postgres do. Unless the query is part of a
+	 * transaction, the rows are inserted in a transaction of their own, so either
+	 * all of them are inserted or none are.
+	 * <p>
+	 * If the SqlMaker can bind a column of values as one array, as PostgresMaker
+	 * can, each batch goes as a single statement with one parameter per column.
+	 */
+	public Query insertAll(Collection<?> rows) {
+		return executeBatch(rows, BatchType.INSERT);
+	}
+
+	/**
+	 * Upsert a collection of rows using JDBC batches. See
+	 * {@link #insertAll(Collection)}. Generated keys are not read back.
+	 */
+	public Query upsertAll(Collection<?> rows) {
+		return executeBatch(rows, BatchType.UPSERT);
+	}
+
+	/**
+	 * Update a collection of rows using JDBC batches. Every column of every row is
+	 * written, whether or not it changed. See {@link #insertAll(Collection)}.
+	 */
+	public Query updateAll(Collection<?> rows) {
+		return executeBatch(rows, BatchType.UPDATE);
+	}
+
+	/**
+	 * Insert rows through the database's native bulk path: COPY on Postgres, LOAD
+	 * DATA LOCAL INFILE on MySQL, CSVREAD on H2, and JDBC batches elsewhere. See
+	 * {@link SqlMaker#getBulkLoader()}. This is for loads too large for
+	 * insertAll(): rows are taken from the iterable one at a time as they are
+	 * sent, so they can come from a stream or a file without all being in memory
+	 * at once. The rows must all be of the same class. Ids from id generators
+	 * are assigned, but keys generated by the database are not read back. Unless
+	 * the query is part of a transaction, the load runs in a transaction of its
+	 * own.
+	 */
+	public Query bulkLoad(Iterable<?> rows) {
+
+		rowsAffected = 0;
+		Iterator<?> it = rows.iterator();
+		if (!it.hasNext()) {
+			return this;
+		}
+
+		Object firstRow = it.next();
+		Class<?> rowClass = firstRow.getClass();
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(rowClass);
+		if (!(pojoInfo instanceof StandardPojoInfo)) {
+			throw new DbException("Bulk loading needs a StandardPojoInfo, not " + pojoInfo.getClass().getName());
+		}
+		String tableName = table != null ? table : ((StandardPojoInfo) pojoInfo).table;
+		BulkLoader loader = sqlMaker.getBulkLoader();
+		// not sql, but it names the load in latency reports and metrics
+		sql = "bulk load into " + tableName;
+
+		// hands the loader the first row again, and checks and prepares each row
+		// just before it's sent
+		Iterator<Object> prepared = new Iterator<Object>() {
+			Object pending = firstRow;
+
+			@Override
+			public boolean hasNext() {
+				return pending != null || it.hasNext();
+			}
+
+			@Override
+			public Object next() {
+				Object row = pending != null ? pending : it.next();
+				pending = null;
+				if (row.getClass() != rowClass) {
+					throw new DbException("All rows must be of the same class. Expected " + rowClass.getName()
+							+ ", got " + row.getClass().getName());
+				}
+				assignIds(row);
+				return row;
+			}
+		};
+
+		Connection con = null;
+		boolean done = false;
+
+		try {
+
+			LatencyTimer myTimer = new LatencyTimer(this);
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+				con.setAutoCommit(false);
+			} else {
+				localCon = transaction.getConnection();
+			}
+			myTimer.endPhase(Phase.CONNECT);
+
+			long count = loader.load(localCon, tableName, (StandardPojoInfo) pojoInfo, prepared);
+			rowsAffected = (int) Math.min(count, Integer.MAX_VALUE);
+
+			if (con != null) {
+				con.commit();
+			}
+			done = true;
+			myTimer.endPhase(Phase.EXECUTE);
+			myTimer.stop(sql, null, rowsAffected);
+			recordInScope(myTimer);
+
+		} catch (SQLException | IOException e) {
+			recordError();
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			if (con != null) {
+				try {
+					if (!done) {
+						con.rollback();
+					}
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// the pool resets it anyway
+				}
+			}
+			close(con);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Set the number of rows insertAll() and upsertAll() send to the database at a
+	 * time. The default is 1000.
+	 */
+	public Query batchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new DbException("Batch size must be at least 1");
+		}
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Give the row ids from its id generators, for id properties that don't
+	 * already have one. Null and zero count as not having one.
+	 */
+	private void assignIds(Object row) {
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(row.getClass());
+		if (!(pojoInfo instanceof StandardPojoInfo)) {
+			return;
+		}
+		StandardPojoInfo info = (StandardPojoInfo) pojoInfo;
+		if (info.assignedIdProperties.isEmpty()) {
+			return;
+		}
+		for (Property prop : info.assignedIdProperties) {
+			Object value = info.getValue(row, prop.name);
+			if (value == null || (value instanceof Number && ((Number) value).longValue() == 0)) {
+				IdGenerator generator = db.getIdGenerators().get(prop.idGenerator);
+				info.putValue(row, prop.name, generator.nextId(db, prop.dataType));
+			}
+		}
+	}
+
+	private enum BatchType {
+		INSERT, UPSERT, UPDATE
+	}
+
+	// how a chunk of rows goes to the database: a JDBC batch of one statement per
+	// row, one multi-row insert, or one statement with an array per column
+	private enum BatchStrategy {
+		BATCH, MULTI_ROW, ARRAYS
+	}
+
+	private Query executeBatch(Collection<?> rows, BatchType type) {
+
+		rowsAffected = 0;
+		if (rows.isEmpty()) {
+			return this;
+		}
+
+		// before taking a connection, because a generator may need one of its own
+		if (type != BatchType.UPDATE) {
+			for (Object row : rows) {
+				assignIds(row);
+			}
+		}
+
+		Object firstRow = rows.iterator().next();
+		Class<?> rowClass = firstRow.getClass();
+		sql = type == BatchType.INSERT ? sqlMaker.getInsertSql(this, firstRow)
+				: type == BatchType.UPSERT ? sqlMaker.getUpsertSql(this, firstRow)
+						: sqlMaker.getUpdateSql(this, firstRow);
+		PojoInfo pojoInfo = sqlMaker.getPojoInfo(rowClass);
+		String[] keyNames = type == BatchType.INSERT ? pojoInfo.getGeneratedColumnNames() : new String[0];
+
+		// Rows with generated keys always go as a batch of single row inserts. A
+		// multi-row insert could return all their keys at once, but the database
+		// doesn't promise to return them in the order of the values list, and
+		// there's nothing else to match them to the rows by.
+		BatchStrategy strategy = BatchStrategy.BATCH;
+		if (keyNames.length == 0 && sqlMaker instanceof StandardSqlMaker) {
+			StandardSqlMaker maker = (StandardSqlMaker) sqlMaker;
+
+			// if the database can bind a whole column as one array, a chunk of rows goes
+			// as one statement that takes one parameter per column
+			String arraySql = type == BatchType.UPDATE ? maker.getArrayUpdateSql(this, firstRow)
+					: maker.getArrayInsertSql(this, firstRow, type == BatchType.UPSERT);
+			if (arraySql != null && type != BatchType.INSERT && maker.hasRepeatedKeys(rows)) {
+				arraySql = null;
+			}
+			if (arraySql != null) {
+				sql = arraySql;
+				strategy = BatchStrategy.ARRAYS;
+			} else if (type == BatchType.INSERT && maker.supportsMultiRowInsert()) {
+				strategy = BatchStrategy.MULTI_ROW;
+			}
+		}
+
+		int chunkSize = batchSize;
+		if (strategy == BatchStrategy.MULTI_ROW) {
+			int argCount = Math.max(1, ((StandardPojoInfo) pojoInfo).insertSqlArgCount);
+			chunkSize = Math.max(1, Math.min(batchSize, ((StandardSqlMaker) sqlMaker).getMaxParameters() / argCount));
+		}
+
+		Connection con = null;
+		PreparedStatement state = null;
+		boolean done = false;
+
+		try {
+
+			LatencyTimer myTimer = new LatencyTimer(this);
+
+			Connection localCon;
+			if (transaction == null) {
+				localCon = db.getConnection();
+				con = localCon; // con gets closed below if non-null
+				con.setAutoCommit(false);
+			} else {
+				localCon = transaction.getConnection();
+			}
+			myTimer.endPhase(Phase.CONNECT);
+
+			if (strategy == BatchStrategy.MULTI_ROW) {
+				// prepared per chunk, below
+			} else if (keyNames.length > 0 && sqlMaker.getReturningSql(sql, keyNames) != null) {
+				// the driver turns the names into a "returning" clause, so only the keys
+				// come back, not the whole row
+				state = localCon.prepareStatement(sql, keyNames);
+			} else if (keyNames.length > 0) {
+				state = localCon.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+			} else {
+				state = localCon.prepareStatement(sql);
+			}
+			myTimer.endPhase(Phase.PREPARE);
+
+			List<Object> batch = new ArrayList<>(Math.min(chunkSize, rows.size()));
+			for (Object row : rows) {
+				if (row.getClass() != rowClass) {
+					throw new DbException("All rows must be of the same class. Expected " + rowClass.getName()
+							+ ", got " + row.getClass().getName());
+				}
+				if (strategy == BatchStrategy.BATCH) {
+					args = type == BatchType.INSERT ? sqlMaker.getInsertArgs(this, row)
+							: type == BatchType.UPSERT ? sqlMaker.getUpsertArgs(this, row)
+									: sqlMaker.getUpdateArgs(this, row);
+					loadWriteArgs(state, 0);
+					state.addBatch();
+				}
+				batch.add(row);
+
+				if (batch.size() == chunkSize) {
+					send(localCon, state, batch, pojoInfo, keyNames, strategy, type);
+				}
+			}
+			if (!batch.isEmpty()) {
+				send(localCon, state, batch, pojoInfo, keyNames, strategy, type);
+			}
+
+			if (con != null) {
+				con.commit();
+			}
+			done = true;
+			myTimer.endPhase(Phase.EXECUTE);
+			myTimer.stop(sql, null, rowsAffected);
+			recordInScope(myTimer);
+
+		} catch (SQLException | IllegalArgumentException e) {
+			recordError();
+			DbException dbe = new DbException(e);
+			dbe.setSql(sql);
+			throw dbe;
+		} finally {
+			close(state);
+			if (con != null) {
+				try {
+					if (!done) {
+						con.rollback();
+					}
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					// the pool resets it anyway
+				}
+			}
+			close(con);
+		}
+
+		return this;
+	}
+
+	private void send(Connection con, PreparedStatement state, List<Object> batch, PojoInfo pojoInfo,
+			String[] keyNames, BatchStrategy strategy, BatchType type) throws SQLException {
+		switch (strategy) {
+		case MULTI_ROW:
+			sendMultiRow(con, batch);
+			break;
+		case ARRAYS:
+			sendArrays(con, state, batch, type == BatchType.UPDATE);
+			break;
+		default:
+			sendBatch(state, batch, pojoInfo, keyNames);
+		}
+	}
+
+	private void sendArrays(Connection con, PreparedStatement state, List<Object> batch, boolean update)
+			throws SQLException {
+		args = ((StandardSqlMaker) sqlMaker).getArrayArgs(con, batch, update);
+		loadWriteArgs(state, 0);
+		rowsAffected += state.executeUpdate();
+		batch.clear();
+	}
+
+	private void sendMultiRow(Connection con, List<Object> batch) throws SQLException {
+
+		String multiRowSql = ((StandardSqlMaker) sqlMaker).getInsertSql(this, batch.get(0), batch.size());
+
+		try (PreparedStatement state = con.prepareStatement(multiRowSql)) {
+			int offset = 0;
+			for (Object row : batch) {
+				args = sqlMaker.getInsertArgs(this, row);
+				loadWriteArgs(state, offset);
+				offset += args.length;
+			}
+
+			int count = state.executeUpdate();
+			if (count != batch.size()) {
+				DbException dbe = new DbException("Inserted " + count + " rows, expected " + batch.size());
+				dbe.setSql(multiRowSql);
+				throw dbe;
+			}
+			rowsAffected += count;
+		}
+		batch.clear();
+	}
+
+	private void sendBatch(PreparedStatement state, List<Object> batch, PojoInfo pojoInfo, String[] keyNames)
+			throws SQLException {
+
+		for (int count : state.executeBatch()) {
+			rowsAffected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+		}
+
+		if (keyNames.length > 0) {
+			// one row of keys per inserted row, in order. See populateGeneratedKeys()
+			// for why a single column is taken to be the key.
+			try (ResultSet rs = state.getGeneratedKeys()) {
+				int colCount = rs.getMetaData().getColumnCount();
+				for (Object row : batch) {
+					if (!rs.next()) {
+						throw new DbException(
+								"The driver returned generated keys for fewer than the " + batch.size() + " rows inserted");
+					}
+					for (String keyName : keyNames) {
+						Object value = colCount == 1 ? rs.getObject(1) : rs.getObject(keyName);
+						pojoInfo.putValue(row, keyName, value);
+					}
+				}
+			}
+		}
+		batch.clear();
+	}
+
 	/**
 	 * Update a row in a table. It will match an existing row based on the primary
 	 * key.
+	 * <p>
+	 * If the row is tracked (see {@link Database#setTrackChanges(boolean)}), only
+	 * the columns that changed since it was loaded or last updated are set, and if
+	 * none changed, nothing is sent to the database and getRowsAffected() is 0.
 	 */
 	public Query update(Object row) {
 
-		sql = sqlMaker.getUpdateSql(this, row);
-		args = sqlMaker.getUpdateArgs(this, row);
+		StandardPojoInfo pojoInfo = null;
+		BitSet changed = null;
+		if (sqlMaker instanceof StandardSqlMaker) {
+			pojoInfo = ((StandardSqlMaker) sqlMaker).getPojoInfo(row.getClass());
+			changed = db.changeTracker.changes(pojoInfo, row);
+		}
+
+		if (changed == null) {
+			sql = sqlMaker.getUpdateSql(this, row);
+			args = sqlMaker.getUpdateArgs(this, row);
+		} else if (changed.isEmpty()) {
+			rowsAffected = 0;
+			return this;
+		} else {
+			sql = ((StandardSqlMaker) sqlMaker).getUpdateSql(this, row, changed);
+			args = ((StandardSqlMaker) sqlMaker).getUpdateArgs(this, row, changed);
+		}
 
 		if (execute().getRowsAffected() <= 0) {
 			throw new DbException("Row not updated because the primary key was not found");
 		}
+		if (changed != null) {
+			db.changeTracker.track(pojoInfo, row);
+		}
 		return this;
 	}
 
@@ -325,9 +1146,12 @@ public class Query {
 
 		Connection con = null;
 		PreparedStatement state = null;
+		String statementSql = sql; // what's actually sent, which may add a "returning" clause
 
 		try {
 
+			LatencyTimer myTimer = new LatencyTimer(this);
+
 			Connection localCon;
 			if (transaction == null) {
 				localCon = db.getConnection();
@@ -335,41 +1159,49 @@ public class Query {
 			} else {
 				localCon = transaction.getConnection();
 			}
+			myTimer.endPhase(Phase.CONNECT);
 
 			// see notes on generatedKeyReceiver()
+			String returningSql = null;
 			if (generatedKeyReceiver != null) {
+				returningSql = sqlMaker.getReturningSql(sql, generatedKeyNames);
+			}
+			if (returningSql != null) {
+				statementSql = returningSql;
+				state = localCon.prepareStatement(statementSql);
+			} else if (generatedKeyReceiver != null) {
 				state = localCon.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 			} else {
 				state = localCon.prepareStatement(sql);
 			}
 
-			if (args != null) {
-				for (int i = 0; i < args.length; i++) {
-					Object arg = args[i];
+			loadWriteArgs(state, 0);
 
-					/*
-					 * The purpose of this is to allow List args to be inserted into JDBC array
-					 * fields. Postgres JDBC drivers do not handle this correctly.
-					 */
-					if (arg != null && List.class.isAssignableFrom(arg.getClass())) {
-						arg = ((List<?>) arg).toArray();
-					}
+			myTimer.endPhase(Phase.PREPARE);
 
-					state.setObject(i + 1, arg);
+			if (returningSql != null) {
+				// the keys come back as the statement's own result set, one row per row
+				// written, so there's no second fetch and only the named columns are sent
+				try (ResultSet rs = state.executeQuery()) {
+					myTimer.endPhase(Phase.EXECUTE);
+					rowsAffected = populateReturnedKeys(rs, generatedKeyReceiver, generatedKeyNames);
 				}
-			}
-
-			LatencyTimer myTimer = new LatencyTimer( this );
-			rowsAffected = state.executeUpdate();
-			myTimer.stop( sql, args );
+			} else {
+				rowsAffected = state.executeUpdate();
+				myTimer.endPhase(Phase.EXECUTE);
 
-			if (generatedKeyReceiver != null) {
-				populateGeneratedKeys(state, generatedKeyReceiver, generatedKeyNames);
+				if (generatedKeyReceiver != null) {
+					populateGeneratedKeys(state, generatedKeyReceiver, generatedKeyNames);
+				}
 			}
+			myTimer.endPhase(Phase.FETCH);
+			myTimer.stop(statementSql, args, rowsAffected);
+			recordInScope(myTimer);
 
 		} catch (SQLException | IllegalArgumentException e) {
+			recordError();
 			DbException dbe = new DbException(e);
-			dbe.setSql(sql);
+			dbe.setSql(statementSql);
 			throw dbe;
 		} finally {
 			close(state);
@@ -379,6 +1211,34 @@ public class Query {
 		return this;
 	}
 
+	/**
+	 * Puts the first row of a "returning" result set into the receiver, and
+	 * returns the number of rows.
+	 */
+	@SuppressWarnings("unchecked")
+	private int populateReturnedKeys(ResultSet rs, Object generatedKeyReceiver, String[] generatedKeyNames)
+			throws SQLException {
+
+		int count = 0;
+		while (rs.next()) {
+			if (count == 0) {
+				if (generatedKeyReceiver instanceof Map) {
+					Map<String, Object> map = (Map<String, Object>) generatedKeyReceiver;
+					for (String generatedKeyName : generatedKeyNames) {
+						map.put(generatedKeyName, rs.getObject(generatedKeyName));
+					}
+				} else {
+					PojoInfo pojoInfo = sqlMaker.getPojoInfo(generatedKeyReceiver.getClass());
+					for (String generatedKeyName : generatedKeyNames) {
+						pojoInfo.putValue(generatedKeyReceiver, generatedKeyName, rs.getObject(generatedKeyName));
+					}
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+
 	@SuppressWarnings("unchecked")
 	private void populateGeneratedKeys(PreparedStatement state, Object generatedKeyReceiver,
 			String[] generatedKeyNames) {
@@ -589,6 +1449,10 @@ public class Query {
 		return table;
 	}
 
+	public Transaction getTransaction() {
+		return transaction;
+	}
+
 	public ResultSetMetaData getResultSetMetaData() {
 		return meta;
 	}
@@ -599,7 +1463,8 @@ public class Query {
 	 * sets the maximum acceptable latency for this query. Must be called before terminal operators such as {@link #execute}
 	 * or {@link #first(Class)} . <br>If latency of the query exceeds the threshold then the
 	 * {@link com.dieselpoint.norm.latency.LatencyAlerter} that have been added to the
-	 * {@link Database} will be called in order
+	 * {@link Database} will be called in order. The latency covers waiting for a connection, preparing the
+	 * statement, executing it and mapping the rows.
 	 * @param millis maximum number of milliseconds that a query can take to execute before an alert will be generated
 	 * @return this, to enable maxLatency to be chained, a la {@code db.sql( "select count(*) from Thing" ).maxLatency(50).first( Long.class )}
 	 */
@@ -1,6 +1,7 @@
 package com.dieselpoint.norm;
 
 import com.dieselpoint.norm.latency.LatencyTimer;
+import com.dieselpoint.norm.latency.QueryScope;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -25,6 +26,7 @@ public class Transaction implements Closeable {
 	private Connection con;
 	private Database db;
 	private long maxLatency;
+	private QueryScope scope;
 
 	Transaction() {
 		this.maxLatency = -1;
@@ -49,6 +51,7 @@ public class Transaction implements Closeable {
 	}
 
 	public void commit() {
+		closeScope();
 		try {
 			LatencyTimer myLatencyTimer = new LatencyTimer( this );
 			con.commit();
@@ -65,6 +68,7 @@ public class Transaction implements Closeable {
 	}
 
 	public void rollback() {
+		closeScope();
 		try {
 			con.rollback();
 		} catch (Throwable t) {
@@ -107,4 +111,27 @@ public class Transaction implements Closeable {
 
 	public long getMaxLatencyMillis() { return maxLatency; }
 
+	/**
+	 * Starts a {@link QueryScope} bound to this transaction: every query run with .transaction(this) is counted in
+	 * it, whichever thread runs it. The scope closes when the transaction is committed or rolled back.
+	 */
+	public QueryScope openScope() {
+		closeScope();
+		scope = new QueryScope( db, db.getRepeatedStatementThreshold(), db.isFailOnRepeatedStatements(), null );
+		return scope;
+	}
+
+	/**
+	 * @return the scope opened with {@link #openScope()}, or null
+	 */
+	public QueryScope getScope() {
+		return scope;
+	}
+
+	private void closeScope() {
+		if (scope != null) {
+			scope.close();
+		}
+	}
+
 }
@@ -1,5 +1,7 @@
 package com.dieselpoint.norm;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Collection;
 
 public class Util {
@@ -84,4 +86,25 @@ public class Util {
 		}
 		throw new RuntimeException("Will never get here");
 	}
+
+	/**
+	 * The database may hand back a key as a different numeric type than the caller
+	 * used (Integer vs Long vs BigInteger), so integral keys are converted to Long
+	 * before they're compared or used in a hash map.
+	 */
+	public static Object normalizeKey(Object key) {
+		if (key instanceof Integer || key instanceof Short || key instanceof Byte) {
+			return ((Number) key).longValue();
+		}
+		if (key instanceof BigInteger && ((BigInteger) key).bitLength() < 64) {
+			return ((BigInteger) key).longValue();
+		}
+		if (key instanceof BigDecimal) {
+			BigDecimal bd = ((BigDecimal) key).stripTrailingZeros();
+			if (bd.scale() <= 0 && bd.precision() - bd.scale() < 19) {
+				return bd.longValue();
+			}
+		}
+		return key;
+	}
 }
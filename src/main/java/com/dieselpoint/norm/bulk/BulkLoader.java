@@ -0,0 +1,30 @@
+package com.dieselpoint.norm.bulk;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Writes rows into a table through the database's own bulk path, which for
+ * millions of rows is many times faster than inserts, even batched ones. A
+ * SqlMaker supplies the one for its database with getBulkLoader(); use it with
+ * Query.bulkLoad().
+ * <p>
+ * Implementations take the rows one at a time from the iterator as they send
+ * them, so memory use doesn't grow with the number of rows. They write the
+ * columns of pojoInfo.insertColumnNames, as an insert would, and don't read
+ * back generated keys.
+ */
+public interface BulkLoader {
+
+	/**
+	 * Load the rows into the table and return the number of rows written. The
+	 * caller owns the connection and any transaction on it.
+	 */
+	public long load(Connection con, String table, StandardPojoInfo pojoInfo, Iterator<?> rows)
+			throws SQLException, IOException;
+
+}
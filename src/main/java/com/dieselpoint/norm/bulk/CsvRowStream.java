@@ -0,0 +1,126 @@
+package com.dieselpoint.norm.bulk;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Iterator;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Encodes rows as UTF-8 CSV as it's read, one row at a time, so a load of any
+ * size streams from the row iterator to the database in constant memory.
+ * <p>
+ * Every value is quoted, with quotes inside doubled, and null is the unquoted
+ * word NULL, so that null and the string "NULL" stay distinct. Postgres COPY
+ * and MySQL LOAD DATA can be told to read it that way. H2 CSVREAD reads the
+ * quoted empty string as null too, so H2CsvLoader changes how values are
+ * written; see there. Lines end with \n.
+ */
+public class CsvRowStream extends InputStream {
+
+	public static final String NULL = "NULL";
+
+	private final Iterator<?> rows;
+	private final StandardPojoInfo pojoInfo;
+	private final String[] cols;
+	private final StringBuilder line = new StringBuilder();
+
+	private byte[] buf = new byte[0];
+	private int pos;
+	private long rowCount;
+
+	public CsvRowStream(StandardPojoInfo pojoInfo, Iterator<?> rows) {
+		this.pojoInfo = pojoInfo;
+		this.rows = rows;
+		this.cols = pojoInfo.insertColumnNames;
+	}
+
+	/**
+	 * Returns the number of rows encoded so far.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int read() {
+		if (pos == buf.length && !nextRow()) {
+			return -1;
+		}
+		return buf[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int n = 0;
+		while (n < len) {
+			if (pos == buf.length && !nextRow()) {
+				break;
+			}
+			int chunk = Math.min(len - n, buf.length - pos);
+			System.arraycopy(buf, pos, b, off + n, chunk);
+			pos += chunk;
+			n += chunk;
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	private boolean nextRow() {
+		if (!rows.hasNext()) {
+			return false;
+		}
+		Object row = rows.next();
+		line.setLength(0);
+		for (int i = 0; i < cols.length; i++) {
+			if (i > 0) {
+				line.append(',');
+			}
+			Object value = pojoInfo.getBindValue(row, cols[i]);
+			if (value == null) {
+				line.append(NULL);
+			} else {
+				String str = format(value);
+				line.append('"');
+				for (int j = 0; j < str.length(); j++) {
+					char c = str.charAt(j);
+					if (c == '"') {
+						line.append('"');
+					}
+					line.append(c);
+				}
+				line.append('"');
+			}
+		}
+		line.append('\n');
+		buf = line.toString().getBytes(StandardCharsets.UTF_8);
+		pos = 0;
+		rowCount++;
+		return true;
+	}
+
+	/**
+	 * Returns the text the database parses back into the value. Subclasses handle
+	 * types their database spells differently.
+	 */
+	protected String format(Object value) {
+		if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof java.sql.Time)) {
+			// java.util.Date's toString() isn't a format databases read
+			return new Timestamp(((Date) value).getTime()).toString();
+		}
+		if (value instanceof byte[]) {
+			throw new DbException("Binary columns can't be bulk loaded as CSV here. Use insertAll() instead.");
+		}
+		if (value instanceof SimpleArray) {
+			throw new DbException("Array columns can't be bulk loaded as CSV here. Use insertAll() instead.");
+		}
+		return value.toString();
+	}
+
+}
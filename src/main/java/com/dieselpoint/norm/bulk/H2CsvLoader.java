@@ -0,0 +1,82 @@
+package com.dieselpoint.norm.bulk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Loads H2 tables with "insert into t (a,b) select ... from csvread(...)". The
+ * rows are staged through a temporary CSV file, which is deleted after, so the
+ * database must be able to read the client's files, as it can when it is
+ * embedded.
+ * <p>
+ * csvread() reads a quoted empty field as null, whatever its nullString, so
+ * every value that isn't null is written with a one character prefix, which
+ * the select strips. An empty string is written as the prefix alone and loads
+ * as an empty string.
+ */
+public class H2CsvLoader implements BulkLoader {
+
+	private static final String PREFIX = "x";
+
+	@Override
+	public long load(Connection con, String table, StandardPojoInfo pojoInfo, Iterator<?> rows)
+			throws SQLException, IOException {
+
+		String[] cols = pojoInfo.insertColumnNames;
+		Path file = Files.createTempFile("norm-bulk", ".csv");
+		try {
+			Files.copy(new PrefixedRowStream(pojoInfo, rows), file, StandardCopyOption.REPLACE_EXISTING);
+
+			// the file's columns get names of our own, c0, c1 and so on, so nothing
+			// about the table's names needs quoting
+			String[] fileCols = new String[cols.length];
+			StringBuilder select = new StringBuilder();
+			for (int i = 0; i < cols.length; i++) {
+				fileCols[i] = "c" + i;
+				if (i > 0) {
+					select.append(',');
+				}
+				select.append("substring(\"").append(fileCols[i]).append("\", ").append(PREFIX.length() + 1)
+						.append(')');
+			}
+
+			// H2 reads csvread()'s arguments when it prepares the statement, so they
+			// can't be parameters
+			String sql = "insert into " + table + " (" + Util.join(cols) + ") select " + select + " from csvread("
+					+ literal(file.toAbsolutePath().toString()) + ", " + literal(String.join(",", fileCols)) + ", "
+					+ literal("charset=UTF-8 fieldSeparator=, nullString=" + CsvRowStream.NULL) + ")";
+			try (Statement state = con.createStatement()) {
+				return state.executeLargeUpdate(sql);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static String literal(String str) {
+		return "'" + str.replace("'", "''") + "'";
+	}
+
+	private static class PrefixedRowStream extends CsvRowStream {
+
+		PrefixedRowStream(StandardPojoInfo pojoInfo, Iterator<?> rows) {
+			super(pojoInfo, rows);
+		}
+
+		@Override
+		protected String format(Object value) {
+			return PREFIX + super.format(value);
+		}
+
+	}
+
+}
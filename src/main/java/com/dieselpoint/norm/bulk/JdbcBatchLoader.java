@@ -0,0 +1,79 @@
+package com.dieselpoint.norm.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * The fallback for databases without a bulk path of their own: plain inserts,
+ * sent batchSize rows at a time as JDBC batches. Values are bound as Query
+ * binds them, with array values made into the driver's own by the SqlMaker.
+ */
+public class JdbcBatchLoader implements BulkLoader {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final SqlMaker sqlMaker;
+	private final int batchSize;
+
+	public JdbcBatchLoader(SqlMaker sqlMaker) {
+		this(sqlMaker, DEFAULT_BATCH_SIZE);
+	}
+
+	public JdbcBatchLoader(SqlMaker sqlMaker, int batchSize) {
+		this.sqlMaker = sqlMaker;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public long load(Connection con, String table, StandardPojoInfo pojoInfo, Iterator<?> rows) throws SQLException {
+
+		String[] cols = pojoInfo.insertColumnNames;
+		String sql = "insert into " + table + " (" + Util.join(cols) + ") values (" + Util.getQuestionMarks(cols.length)
+				+ ")";
+
+		long count = 0;
+		int pending = 0;
+		try (PreparedStatement state = con.prepareStatement(sql)) {
+			while (rows.hasNext()) {
+				Object row = rows.next();
+				for (int i = 0; i < cols.length; i++) {
+					Object value = pojoInfo.getBindValue(row, cols[i]);
+					if (value instanceof List) {
+						value = ((List<?>) value).toArray();
+					}
+					if (value instanceof SimpleArray) {
+						value = sqlMaker.toSqlArray(con, (SimpleArray) value);
+					}
+					state.setObject(i + 1, value);
+				}
+				state.addBatch();
+				if (++pending == batchSize) {
+					count += send(state);
+					pending = 0;
+				}
+			}
+			if (pending > 0) {
+				count += send(state);
+			}
+		}
+		return count;
+	}
+
+	private static long send(PreparedStatement state) throws SQLException {
+		long count = 0;
+		for (int n : state.executeBatch()) {
+			count += n == Statement.SUCCESS_NO_INFO ? 1 : Math.max(n, 0);
+		}
+		return count;
+	}
+
+}
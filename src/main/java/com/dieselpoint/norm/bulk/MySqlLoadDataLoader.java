@@ -0,0 +1,87 @@
+package com.dieselpoint.norm.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Loads MySQL tables with "load data local infile", handing the driver the rows
+ * as a CSV stream instead of a file. The connection needs
+ * allowLoadLocalInfile=true, and the server local_infile=ON. The driver is
+ * reached by reflection so Norm doesn't depend on it; if the statement isn't a
+ * Connector/J one, the rows go as JDBC batches instead.
+ */
+public class MySqlLoadDataLoader implements BulkLoader {
+
+	private static final String JDBC_STATEMENT = "com.mysql.cj.jdbc.JdbcStatement";
+
+	private final SqlMaker sqlMaker;
+
+	/**
+	 * The maker binds values for the JDBC batches used instead of LOAD DATA.
+	 */
+	public MySqlLoadDataLoader(SqlMaker sqlMaker) {
+		this.sqlMaker = sqlMaker;
+	}
+
+	@Override
+	public long load(Connection con, String table, StandardPojoInfo pojoInfo, Iterator<?> rows)
+			throws SQLException, IOException {
+
+		Class<?> stmtClass;
+		try {
+			stmtClass = Class.forName(JDBC_STATEMENT);
+		} catch (ClassNotFoundException e) {
+			return new JdbcBatchLoader(sqlMaker).load(con, table, pojoInfo, rows);
+		}
+
+		// the file name is ignored when the statement has a stream. With no escape
+		// character, an unquoted NULL is null and quotes inside values are doubled
+		String sql = "load data local infile 'stream' into table " + table
+				+ " character set utf8mb4 fields terminated by ',' optionally enclosed by '\"' escaped by ''"
+				+ " lines terminated by '\\n' (" + Util.join(pojoInfo.insertColumnNames) + ")";
+
+		try (Statement state = con.createStatement()) {
+			if (!state.isWrapperFor(stmtClass)) {
+				return new JdbcBatchLoader(sqlMaker).load(con, table, pojoInfo, rows);
+			}
+			try {
+				Object mysqlStatement = state.unwrap(stmtClass);
+				stmtClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(mysqlStatement,
+						new MySqlCsvRowStream(pojoInfo, rows));
+			} catch (InvocationTargetException e) {
+				throw PostgresCopyLoader.rethrow(e.getCause());
+			} catch (ReflectiveOperationException e) {
+				throw new SQLException("Can't give the MySQL driver a stream to load", e);
+			}
+			return state.executeLargeUpdate(sql);
+		}
+	}
+
+	/**
+	 * MySQL has no boolean type; true and false go into tinyint(1) as 1 and 0.
+	 */
+	private static class MySqlCsvRowStream extends CsvRowStream {
+
+		MySqlCsvRowStream(StandardPojoInfo pojoInfo, Iterator<?> rows) {
+			super(pojoInfo, rows);
+		}
+
+		@Override
+		protected String format(Object value) {
+			if (value instanceof Boolean) {
+				return (Boolean) value ? "1" : "0";
+			}
+			return super.format(value);
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.dieselpoint.norm.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.sqlmakers.SqlMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Loads Postgres tables with "copy t (a,b) from stdin", streaming the rows as
+ * CSV through the driver's CopyManager. The driver is reached by reflection so
+ * Norm doesn't depend on it; if the connection isn't a pgjdbc one, the rows go
+ * as JDBC batches instead.
+ */
+public class PostgresCopyLoader implements BulkLoader {
+
+	private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+	private final SqlMaker sqlMaker;
+
+	/**
+	 * The maker binds values for the JDBC batches used instead of COPY.
+	 */
+	public PostgresCopyLoader(SqlMaker sqlMaker) {
+		this.sqlMaker = sqlMaker;
+	}
+
+	@Override
+	public long load(Connection con, String table, StandardPojoInfo pojoInfo, Iterator<?> rows)
+			throws SQLException, IOException {
+
+		Class<?> pgClass;
+		try {
+			pgClass = Class.forName(PG_CONNECTION);
+		} catch (ClassNotFoundException e) {
+			return new JdbcBatchLoader(sqlMaker).load(con, table, pojoInfo, rows);
+		}
+		if (!con.isWrapperFor(pgClass)) {
+			return new JdbcBatchLoader(sqlMaker).load(con, table, pojoInfo, rows);
+		}
+
+		String sql = "copy " + table + " (" + Util.join(pojoInfo.insertColumnNames)
+				+ ") from stdin with (format csv, null '" + CsvRowStream.NULL + "')";
+		try {
+			Object pgCon = con.unwrap(pgClass);
+			Object copyManager = pgClass.getMethod("getCopyAPI").invoke(pgCon);
+			return (Long) copyManager.getClass().getMethod("copyIn", String.class, InputStream.class)
+					.invoke(copyManager, sql, new PostgresCsvRowStream(pojoInfo, rows));
+		} catch (InvocationTargetException e) {
+			throw rethrow(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new SQLException("Can't use the Postgres CopyManager", e);
+		}
+	}
+
+	static SQLException rethrow(Throwable t) throws IOException {
+		if (t instanceof SQLException) {
+			return (SQLException) t;
+		}
+		if (t instanceof IOException) {
+			throw (IOException) t;
+		}
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		return new SQLException(t);
+	}
+
+	/**
+	 * Postgres reads bytea as hex with a \x prefix, and arrays as literals,
+	 * {1,2,3}.
+	 */
+	static class PostgresCsvRowStream extends CsvRowStream {
+
+		private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+		PostgresCsvRowStream(StandardPojoInfo pojoInfo, Iterator<?> rows) {
+			super(pojoInfo, rows);
+		}
+
+		@Override
+		protected String format(Object value) {
+			if (value instanceof byte[]) {
+				byte[] bytes = (byte[]) value;
+				char[] out = new char[2 + bytes.length * 2];
+				out[0] = '\\';
+				out[1] = 'x';
+				for (int i = 0; i < bytes.length; i++) {
+					out[2 + i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+					out[3 + i * 2] = HEX[bytes[i] & 0xF];
+				}
+				return new String(out);
+			}
+			if (value instanceof SimpleArray) {
+				return arrayLiteral((SimpleArray) value);
+			}
+			return super.format(value);
+		}
+
+		/**
+		 * Every element that isn't null is quoted, with backslashes before quotes
+		 * and backslashes inside, so commas, braces and the word NULL read back as
+		 * they are.
+		 */
+		private String arrayLiteral(SimpleArray array) {
+			Object[] elements = array.toObjectArray();
+			StringBuilder buf = new StringBuilder();
+			buf.append('{');
+			for (int i = 0; i < elements.length; i++) {
+				if (i > 0) {
+					buf.append(',');
+				}
+				if (elements[i] == null) {
+					buf.append("NULL");
+					continue;
+				}
+				String str = format(elements[i]);
+				buf.append('"');
+				for (int j = 0; j < str.length(); j++) {
+					char c = str.charAt(j);
+					if (c == '"' || c == '\\') {
+						buf.append('\\');
+					}
+					buf.append(c);
+				}
+				buf.append('"');
+			}
+			buf.append('}');
+			return buf.toString();
+		}
+	}
+
+}
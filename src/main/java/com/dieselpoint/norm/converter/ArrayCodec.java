@@ -0,0 +1,236 @@
+package com.dieselpoint.norm.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * The encodings behind the primitive array converters. Nothing here boxes the
+ * elements, except where a driver has already handed them over boxed.
+ */
+class ArrayCodec {
+
+	/*
+	 * From whatever Array.getArray() returned: our own primitive array for a
+	 * SimpleArray, or an Object[] of boxed elements from most drivers.
+	 */
+
+	static int[] toInts(Object array) {
+		if (array instanceof int[]) {
+			return (int[]) array;
+		}
+		Object[] in = (Object[]) array;
+		int[] out = new int[in.length];
+		for (int i = 0; i < in.length; i++) {
+			out[i] = element(in, i).intValue();
+		}
+		return out;
+	}
+
+	static long[] toLongs(Object array) {
+		if (array instanceof long[]) {
+			return (long[]) array;
+		}
+		Object[] in = (Object[]) array;
+		long[] out = new long[in.length];
+		for (int i = 0; i < in.length; i++) {
+			out[i] = element(in, i).longValue();
+		}
+		return out;
+	}
+
+	static double[] toDoubles(Object array) {
+		if (array instanceof double[]) {
+			return (double[]) array;
+		}
+		Object[] in = (Object[]) array;
+		double[] out = new double[in.length];
+		for (int i = 0; i < in.length; i++) {
+			out[i] = element(in, i).doubleValue();
+		}
+		return out;
+	}
+
+	static String[] toStrings(Object array) {
+		if (array instanceof String[]) {
+			return (String[]) array;
+		}
+		Object[] in = (Object[]) array;
+		String[] out = new String[in.length];
+		for (int i = 0; i < in.length; i++) {
+			out[i] = in[i] == null ? null : in[i].toString();
+		}
+		return out;
+	}
+
+	private static Number element(Object[] in, int i) {
+		if (in[i] == null) {
+			throw new DbException("Array element " + i + " is null, which a primitive array can't hold");
+		}
+		return (Number) in[i];
+	}
+
+	/*
+	 * Comma-separated text.
+	 */
+
+	static int[] parseInts(String in) {
+		long[] longs = parseLongs(in);
+		int[] out = new int[longs.length];
+		for (int i = 0; i < longs.length; i++) {
+			if (longs[i] != (int) longs[i]) {
+				throw new DbException("Out of range for an int: " + longs[i]);
+			}
+			out[i] = (int) longs[i];
+		}
+		return out;
+	}
+
+	static long[] parseLongs(String in) {
+		long[] out = new long[count(in)];
+		int pos = 0;
+		for (int i = 0; i < out.length; i++) {
+			boolean negative = pos < in.length() && in.charAt(pos) == '-';
+			if (negative) {
+				pos++;
+			}
+			int start = pos;
+			long value = 0;
+			while (pos < in.length() && in.charAt(pos) != ',') {
+				int digit = in.charAt(pos) - '0';
+				if (digit < 0 || digit > 9) {
+					throw new DbException("Not a list of integers: " + in);
+				}
+				try {
+					// built up on the side of its sign, so Long.MIN_VALUE fits
+					value = Math.multiplyExact(value, 10);
+					value = negative ? Math.subtractExact(value, digit) : Math.addExact(value, digit);
+				} catch (ArithmeticException e) {
+					throw new DbException("Out of range for a long: " + in, e);
+				}
+				pos++;
+			}
+			if (pos == start) {
+				throw new DbException("Not a list of integers: " + in);
+			}
+			out[i] = value;
+			pos++; // the comma
+		}
+		return out;
+	}
+
+	static double[] parseDoubles(String in) {
+		double[] out = new double[count(in)];
+		int start = 0;
+		for (int i = 0; i < out.length; i++) {
+			int end = in.indexOf(',', start);
+			if (end < 0) {
+				end = in.length();
+			}
+			try {
+				out[i] = Double.parseDouble(in.substring(start, end));
+			} catch (NumberFormatException e) {
+				throw new DbException("Not a list of numbers: " + in, e);
+			}
+			start = end + 1;
+		}
+		return out;
+	}
+
+	private static int count(String in) {
+		if (in.isEmpty()) {
+			return 0;
+		}
+		int count = 1;
+		for (int i = 0; i < in.length(); i++) {
+			if (in.charAt(i) == ',') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Binary, big-endian.
+	 */
+
+	static byte[] encodeInts(int[] values) {
+		ByteBuffer out = ByteBuffer.allocate(values.length * Integer.BYTES);
+		out.asIntBuffer().put(values);
+		return out.array();
+	}
+
+	static int[] decodeInts(byte[] bytes) {
+		int[] out = new int[length(bytes, Integer.BYTES)];
+		ByteBuffer.wrap(bytes).asIntBuffer().get(out);
+		return out;
+	}
+
+	static byte[] encodeLongs(long[] values) {
+		ByteBuffer out = ByteBuffer.allocate(values.length * Long.BYTES);
+		out.asLongBuffer().put(values);
+		return out.array();
+	}
+
+	static long[] decodeLongs(byte[] bytes) {
+		long[] out = new long[length(bytes, Long.BYTES)];
+		ByteBuffer.wrap(bytes).asLongBuffer().get(out);
+		return out;
+	}
+
+	static byte[] encodeDoubles(double[] values) {
+		ByteBuffer out = ByteBuffer.allocate(values.length * Double.BYTES);
+		out.asDoubleBuffer().put(values);
+		return out.array();
+	}
+
+	static double[] decodeDoubles(byte[] bytes) {
+		double[] out = new double[length(bytes, Double.BYTES)];
+		ByteBuffer.wrap(bytes).asDoubleBuffer().get(out);
+		return out;
+	}
+
+	static byte[] encodeStrings(String[] values) {
+		byte[][] utf8 = new byte[values.length][];
+		int size = 4;
+		for (int i = 0; i < values.length; i++) {
+			size += 4;
+			if (values[i] != null) {
+				utf8[i] = values[i].getBytes(StandardCharsets.UTF_8);
+				size += utf8[i].length;
+			}
+		}
+		ByteBuffer out = ByteBuffer.allocate(size);
+		out.putInt(values.length);
+		for (byte[] bytes : utf8) {
+			if (bytes == null) {
+				out.putInt(-1);
+			} else {
+				out.putInt(bytes.length).put(bytes);
+			}
+		}
+		return out.array();
+	}
+
+	static String[] decodeStrings(byte[] bytes) {
+		ByteBuffer in = ByteBuffer.wrap(bytes);
+		String[] out = new String[in.getInt()];
+		for (int i = 0; i < out.length; i++) {
+			int length = in.getInt();
+			if (length >= 0) {
+				out[i] = new String(bytes, in.position(), length, StandardCharsets.UTF_8);
+				in.position(in.position() + length);
+			}
+		}
+		return out;
+	}
+
+	private static int length(byte[] bytes, int width) {
+		if (bytes.length % width != 0) {
+			throw new DbException("Expected a multiple of " + width + " bytes, got " + bytes.length);
+		}
+		return bytes.length / width;
+	}
+
+}
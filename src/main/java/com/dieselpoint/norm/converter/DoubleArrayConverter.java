@@ -0,0 +1,32 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Array;
+import java.sql.SQLException;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps a double[] property to an array column. Writes go out as a
+ * SimpleDoubleArray, which the SqlMaker binds as the driver's own array.
+ */
+@Converter
+public class DoubleArrayConverter implements AttributeConverter<double[], java.sql.Array> {
+
+	@Override
+	public Array convertToDatabaseColumn(double[] attribute) {
+		return new SimpleDoubleArray(attribute);
+	}
+
+	@Override
+	public double[] convertToEntityAttribute(Array dbData) {
+		try {
+			return ArrayCodec.toDoubles(dbData.getArray());
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+}
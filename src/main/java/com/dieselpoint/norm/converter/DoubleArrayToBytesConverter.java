@@ -0,0 +1,23 @@
+package com.dieselpoint.norm.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps a double[] property to a binary column holding the values as big-endian float64s, for databases
+ * without array columns.
+ */
+@Converter
+public class DoubleArrayToBytesConverter implements AttributeConverter<double[], byte[]> {
+
+	@Override
+	public byte[] convertToDatabaseColumn(double[] attribute) {
+		return ArrayCodec.encodeDoubles(attribute);
+	}
+
+	@Override
+	public double[] convertToEntityAttribute(byte[] dbData) {
+		return ArrayCodec.decodeDoubles(dbData);
+	}
+
+}
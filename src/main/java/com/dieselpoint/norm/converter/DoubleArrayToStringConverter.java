@@ -0,0 +1,30 @@
+package com.dieselpoint.norm.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps a double[] property to a comma-separated string, like "1,2,3", for
+ * databases without array columns.
+ */
+@Converter
+public class DoubleArrayToStringConverter implements AttributeConverter<double[], String> {
+
+	@Override
+	public String convertToDatabaseColumn(double[] attribute) {
+		StringBuilder sb = new StringBuilder(attribute.length * 8);
+		for (int i = 0; i < attribute.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(attribute[i]);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public double[] convertToEntityAttribute(String dbData) {
+		return ArrayCodec.parseDoubles(dbData);
+	}
+
+}
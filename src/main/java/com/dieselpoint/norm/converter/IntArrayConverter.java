@@ -0,0 +1,32 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Array;
+import java.sql.SQLException;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps a int[] property to an array column. Writes go out as a
+ * SimpleIntArray, which the SqlMaker binds as the driver's own array.
+ */
+@Converter
+public class IntArrayConverter implements AttributeConverter<int[], java.sql.Array> {
+
+	@Override
+	public Array convertToDatabaseColumn(int[] attribute) {
+		return new SimpleIntArray(attribute);
+	}
+
+	@Override
+	public int[] convertToEntityAttribute(Array dbData) {
+		try {
+			return ArrayCodec.toInts(dbData.getArray());
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.dieselpoint.norm.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps a int[] property to a binary column holding the values as big-endian int32s, for databases
+ * without array columns.
+ */
+@Converter
+public class IntArrayToBytesConverter implements AttributeConverter<int[], byte[]> {
+
+	@Override
+	public byte[] convertToDatabaseColumn(int[] attribute) {
+		return ArrayCodec.encodeInts(attribute);
+	}
+
+	@Override
+	public int[] convertToEntityAttribute(byte[] dbData) {
+		return ArrayCodec.decodeInts(dbData);
+	}
+
+}
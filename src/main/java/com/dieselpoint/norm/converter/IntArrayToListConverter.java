@@ -26,10 +26,11 @@ public class IntArrayToListConverter implements AttributeConverter<List<Integer>
 				throw new DbException("Database is not returning an integer array");
 			}
 			
-			Integer [] arr = (Integer[]) dbData.getArray();
+			// Postgres returns Integer[], H2 a boxed Object[]
+			Object [] arr = (Object[]) dbData.getArray();
 			List<Integer> out = new ArrayList<>();
-			for (Integer i: arr) {
-				out.add(i);
+			for (Object i: arr) {
+				out.add((Integer) i);
 			}
 			return out;
 
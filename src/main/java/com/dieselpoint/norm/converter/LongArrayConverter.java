@@ -0,0 +1,32 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Array;
+import java.sql.SQLException;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps a long[] property to an array column. Writes go out as a
+ * SimpleLongArray, which the SqlMaker binds as the driver's own array.
+ */
+@Converter
+public class LongArrayConverter implements AttributeConverter<long[], java.sql.Array> {
+
+	@Override
+	public Array convertToDatabaseColumn(long[] attribute) {
+		return new SimpleLongArray(attribute);
+	}
+
+	@Override
+	public long[] convertToEntityAttribute(Array dbData) {
+		try {
+			return ArrayCodec.toLongs(dbData.getArray());
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.dieselpoint.norm.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps a long[] property to a binary column holding the values as big-endian int64s, for databases
+ * without array columns.
+ */
+@Converter
+public class LongArrayToBytesConverter implements AttributeConverter<long[], byte[]> {
+
+	@Override
+	public byte[] convertToDatabaseColumn(long[] attribute) {
+		return ArrayCodec.encodeLongs(attribute);
+	}
+
+	@Override
+	public long[] convertToEntityAttribute(byte[] dbData) {
+		return ArrayCodec.decodeLongs(dbData);
+	}
+
+}
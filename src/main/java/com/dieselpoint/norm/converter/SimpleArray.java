@@ -1,22 +1,64 @@
 package com.dieselpoint.norm.converter;
 
+import java.sql.JDBCType;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
 
+/**
+ * An array to bind as a parameter. The statement binds it with
+ * SqlMaker.toSqlArray(), which turns it into the driver's own array. See
+ * SimpleIntArray and the others for arrays of primitives.
+ */
 public class SimpleArray implements java.sql.Array {
 	
 	private int baseType;
-	private Object [] arr;
+	private String baseTypeName;
+	private Object arr;
 	
 	public SimpleArray(int baseType, Object [] arr) {
+		this(baseType, typeName(baseType), (Object) arr);
+	}
+
+	/**
+	 * An array with the driver's own name for its base type, such as one read
+	 * from a result set.
+	 */
+	public SimpleArray(int baseType, String baseTypeName, Object [] arr) {
+		this(baseType, baseTypeName, (Object) arr);
+	}
+
+	/**
+	 * Returns the standard name of a java.sql.Types code, or null for a code of
+	 * the driver's own, which has no standard name.
+	 */
+	private static String typeName(int baseType) {
+		try {
+			return JDBCType.valueOf(baseType).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * arr is an array of any component type, primitive or not.
+	 */
+	protected SimpleArray(int baseType, String baseTypeName, Object arr) {
 		this.baseType = baseType;
+		this.baseTypeName = baseTypeName;
 		this.arr = arr;
 	}
 
+	/**
+	 * Returns the elements as objects, for drivers that only take those.
+	 */
+	public Object[] toObjectArray() {
+		return (Object[]) arr;
+	}
+
 	@Override
 	public String getBaseTypeName() throws SQLException {
-		throw new UnsupportedOperationException();
+		return baseTypeName;
 	}
 
 	@Override
@@ -0,0 +1,30 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Types;
+
+/**
+ * A SimpleArray of doubles, kept unboxed until a driver needs objects.
+ */
+public class SimpleDoubleArray extends SimpleArray {
+
+	private final double[] values;
+
+	public SimpleDoubleArray(double[] values) {
+		super(Types.DOUBLE, "double precision", values);
+		this.values = values;
+	}
+
+	public double[] getDoubles() {
+		return values;
+	}
+
+	@Override
+	public Object[] toObjectArray() {
+		Object[] out = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			out[i] = values[i];
+		}
+		return out;
+	}
+
+}
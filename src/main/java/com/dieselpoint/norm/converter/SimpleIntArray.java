@@ -0,0 +1,30 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Types;
+
+/**
+ * A SimpleArray of ints, kept unboxed until a driver needs objects.
+ */
+public class SimpleIntArray extends SimpleArray {
+
+	private final int[] values;
+
+	public SimpleIntArray(int[] values) {
+		super(Types.INTEGER, "integer", values);
+		this.values = values;
+	}
+
+	public int[] getInts() {
+		return values;
+	}
+
+	@Override
+	public Object[] toObjectArray() {
+		Object[] out = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			out[i] = values[i];
+		}
+		return out;
+	}
+
+}
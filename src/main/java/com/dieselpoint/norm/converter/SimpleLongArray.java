@@ -0,0 +1,30 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Types;
+
+/**
+ * A SimpleArray of longs, kept unboxed until a driver needs objects.
+ */
+public class SimpleLongArray extends SimpleArray {
+
+	private final long[] values;
+
+	public SimpleLongArray(long[] values) {
+		super(Types.BIGINT, "bigint", values);
+		this.values = values;
+	}
+
+	public long[] getLongs() {
+		return values;
+	}
+
+	@Override
+	public Object[] toObjectArray() {
+		Object[] out = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			out[i] = values[i];
+		}
+		return out;
+	}
+
+}
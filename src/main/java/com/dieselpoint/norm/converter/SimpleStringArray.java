@@ -0,0 +1,21 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Types;
+
+/**
+ * A SimpleArray of Strings.
+ */
+public class SimpleStringArray extends SimpleArray {
+
+	private final String[] values;
+
+	public SimpleStringArray(String[] values) {
+		super(Types.VARCHAR, "varchar", values);
+		this.values = values;
+	}
+
+	public String[] getStrings() {
+		return values;
+	}
+
+}
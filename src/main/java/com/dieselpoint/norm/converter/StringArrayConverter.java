@@ -0,0 +1,32 @@
+package com.dieselpoint.norm.converter;
+
+import java.sql.Array;
+import java.sql.SQLException;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Maps a String[] property to an array column. Writes go out as a
+ * SimpleStringArray, which the SqlMaker binds as the driver's own array.
+ */
+@Converter
+public class StringArrayConverter implements AttributeConverter<String[], java.sql.Array> {
+
+	@Override
+	public Array convertToDatabaseColumn(String[] attribute) {
+		return new SimpleStringArray(attribute);
+	}
+
+	@Override
+	public String[] convertToEntityAttribute(Array dbData) {
+		try {
+			return ArrayCodec.toStrings(dbData.getArray());
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.dieselpoint.norm.converter;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Maps a String[] property to a binary column holding an int32 count, then per string an int32 length, or -1 for null, and the UTF-8, for databases
+ * without array columns.
+ */
+@Converter
+public class StringArrayToBytesConverter implements AttributeConverter<String[], byte[]> {
+
+	@Override
+	public byte[] convertToDatabaseColumn(String[] attribute) {
+		return ArrayCodec.encodeStrings(attribute);
+	}
+
+	@Override
+	public String[] convertToEntityAttribute(byte[] dbData) {
+		return ArrayCodec.decodeStrings(dbData);
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.dieselpoint.norm.csv;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.EnumType;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.sqlmakers.Property;
+
+/**
+ * Turns one CSV column into values for one property. The value is of the type
+ * the database would return for the column, so that StandardPojoInfo.putValue()
+ * applies the property's serializer, converter or enum mapping as it does for
+ * query results.
+ */
+class ColumnDecoder {
+
+	enum Kind {
+		STRING, INT, LONG, SHORT, BYTE, DOUBLE, FLOAT, BOOLEAN, BIG_DECIMAL, TIMESTAMP, SQL_DATE, LOCAL_DATE,
+		LOCAL_DATE_TIME, UUID
+	}
+
+	final int index;
+	final String name;
+	final Kind kind;
+
+	ColumnDecoder(int index, Property prop) {
+		this.index = index;
+		this.name = prop.name;
+		this.kind = kindOf(prop);
+		if (kind == null) {
+			throw new DbException("Can't import a CSV column into " + prop.name + ", of type " + prop.dataType.getName());
+		}
+	}
+
+	private static Kind kindOf(Property prop) {
+		if (prop.serializer != null) {
+			return Kind.STRING;
+		}
+		if (prop.binarySerializer != null) {
+			// CSV has no binary values
+			return null;
+		}
+		if (prop.converter != null) {
+			Kind kind = kindOf(getColumnType(prop.converter));
+			return kind == null ? Kind.STRING : kind;
+		}
+		if (prop.isEnumField) {
+			return prop.enumType == EnumType.ORDINAL ? Kind.INT : Kind.STRING;
+		}
+		return kindOf(prop.dataType);
+	}
+
+	private static Kind kindOf(Class<?> type) {
+		if (type == String.class) {
+			return Kind.STRING;
+		} else if (type == int.class || type == Integer.class) {
+			return Kind.INT;
+		} else if (type == long.class || type == Long.class) {
+			return Kind.LONG;
+		} else if (type == short.class || type == Short.class) {
+			return Kind.SHORT;
+		} else if (type == byte.class || type == Byte.class) {
+			return Kind.BYTE;
+		} else if (type == double.class || type == Double.class) {
+			return Kind.DOUBLE;
+		} else if (type == float.class || type == Float.class) {
+			return Kind.FLOAT;
+		} else if (type == boolean.class || type == Boolean.class) {
+			return Kind.BOOLEAN;
+		} else if (type == BigDecimal.class) {
+			return Kind.BIG_DECIMAL;
+		} else if (type == java.sql.Date.class) {
+			return Kind.SQL_DATE;
+		} else if (type == Date.class || type == Timestamp.class) {
+			return Kind.TIMESTAMP;
+		} else if (type == LocalDate.class) {
+			return Kind.LOCAL_DATE;
+		} else if (type == LocalDateTime.class) {
+			return Kind.LOCAL_DATE_TIME;
+		} else if (type == UUID.class) {
+			return Kind.UUID;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns Y of the AttributeConverter&lt;X, Y&gt; the converter implements.
+	 */
+	private static Class<?> getColumnType(AttributeConverter<?, ?> converter) {
+		for (Class<?> c = converter.getClass(); c != null; c = c.getSuperclass()) {
+			for (Type t : c.getGenericInterfaces()) {
+				if (t instanceof ParameterizedType && ((ParameterizedType) t).getRawType() == AttributeConverter.class) {
+					Type columnType = ((ParameterizedType) t).getActualTypeArguments()[1];
+					if (columnType instanceof Class) {
+						return (Class<?>) columnType;
+					}
+				}
+			}
+		}
+		return String.class;
+	}
+
+	Object decode(MappedCsvParser parser) {
+		int i = index;
+		switch (kind) {
+		case INT:
+			return Math.toIntExact(parser.getLong(i));
+		case LONG:
+			return parser.getLong(i);
+		case SHORT:
+			return (short) Math.toIntExact(parser.getLong(i));
+		case BYTE:
+			return (byte) Math.toIntExact(parser.getLong(i));
+		case BOOLEAN:
+			if (parser.equalsAscii(i, "1") || parser.equalsAscii(i, "true") || parser.equalsAscii(i, "TRUE")) {
+				return Boolean.TRUE;
+			}
+			if (parser.equalsAscii(i, "0") || parser.equalsAscii(i, "false") || parser.equalsAscii(i, "FALSE")) {
+				return Boolean.FALSE;
+			}
+			return parseBoolean(parser.getString(i));
+		case STRING:
+			return parser.getString(i);
+		default:
+			return decode(parser.getString(i).trim());
+		}
+	}
+
+	private Object decode(String str) {
+		switch (kind) {
+		case DOUBLE:
+			return Double.parseDouble(str);
+		case FLOAT:
+			return Float.parseFloat(str);
+		case BIG_DECIMAL:
+			return new BigDecimal(str);
+		case TIMESTAMP:
+			// "2020-01-02", "2020-01-02 03:04:05[.fff]" or "2020-01-02T03:04:05[.fff]"
+			if (str.length() == 10) {
+				return Timestamp.valueOf(str + " 00:00:00");
+			}
+			return Timestamp.valueOf(str.replace('T', ' '));
+		case SQL_DATE:
+			return java.sql.Date.valueOf(str);
+		case LOCAL_DATE:
+			return LocalDate.parse(str);
+		case LOCAL_DATE_TIME:
+			return LocalDateTime.parse(str.replace(' ', 'T'));
+		case UUID:
+			return java.util.UUID.fromString(str);
+		default:
+			throw new IllegalStateException(kind.toString());
+		}
+	}
+
+	private static Boolean parseBoolean(String str) {
+		str = str.trim();
+		if (str.equalsIgnoreCase("true") || str.equalsIgnoreCase("yes") || str.equals("1")) {
+			return Boolean.TRUE;
+		}
+		if (str.equalsIgnoreCase("false") || str.equalsIgnoreCase("no") || str.equals("0")) {
+			return Boolean.FALSE;
+		}
+		throw new IllegalArgumentException("Not a boolean: " + str);
+	}
+
+}
@@ -0,0 +1,225 @@
+package com.dieselpoint.norm.csv;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.sqlmakers.PojoInfo;
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+/**
+ * Reads a CSV file into rows on the calling thread and inserts them in batches
+ * on writer threads. Each batch is an insertAll() in a transaction of its own,
+ * so if the import fails part way, the batches before the failure stay
+ * written. The queue between the parser and the writers is short, so a slow
+ * database slows the parser down instead of letting parsed rows pile up.
+ */
+public class CsvImport<T> {
+
+	private static final List<Object> END = Collections.emptyList();
+
+	private final Database db;
+	private final Path file;
+	private final Class<T> rowClass;
+	private final CsvImportOptions options;
+	private final StandardPojoInfo pojoInfo;
+
+	private final BlockingQueue<List<?>> queue;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final AtomicLong rowsWritten = new AtomicLong();
+	private volatile long rowsParsed;
+	private volatile long bytesParsed;
+	private long totalBytes;
+
+	public CsvImport(Database db, Path file, Class<T> rowClass, CsvImportOptions options) {
+		PojoInfo pi = db.getSqlMaker().getPojoInfo(rowClass);
+		if (!(pi instanceof StandardPojoInfo)) {
+			throw new DbException("Importing needs a StandardPojoInfo, not " + pi.getClass().getName());
+		}
+		if (options.batchSize < 1 || options.writerThreads < 1) {
+			throw new DbException("Batch size and writer threads must be at least 1");
+		}
+		this.db = db;
+		this.file = file;
+		this.rowClass = rowClass;
+		this.options = options;
+		this.pojoInfo = (StandardPojoInfo) pi;
+		this.queue = new ArrayBlockingQueue<>(options.writerThreads * 2);
+	}
+
+	/**
+	 * Run the import and return the number of rows written.
+	 */
+	public long run() {
+
+		List<Thread> writers = new ArrayList<>();
+		for (int i = 0; i < options.writerThreads; i++) {
+			Thread writer = new Thread(this::write, "norm-csv-import-" + i);
+			writer.setDaemon(true);
+			writers.add(writer);
+			writer.start();
+		}
+
+		try {
+			parse();
+		} catch (Throwable t) {
+			failure.compareAndSet(null, t);
+		}
+
+		try {
+			for (int i = 0; i < writers.size(); i++) {
+				queue.put(END);
+			}
+			for (Thread writer : writers) {
+				writer.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, e);
+		}
+
+		Throwable t = failure.get();
+		if (t instanceof DbException) {
+			throw (DbException) t;
+		}
+		if (t != null) {
+			throw new DbException(t);
+		}
+		return rowsWritten.get();
+	}
+
+	private void parse() throws IOException, InterruptedException, ReflectiveOperationException {
+
+		try (MappedCsvParser parser = new MappedCsvParser(file, options.delimiter, options.quote)) {
+			totalBytes = parser.getSize();
+
+			String[] names = options.columns;
+			if (options.header) {
+				if (!parser.next()) {
+					return;
+				}
+				if (names == null) {
+					names = new String[parser.getFieldCount()];
+					for (int i = 0; i < names.length; i++) {
+						names[i] = parser.getString(i).trim();
+					}
+				}
+			} else if (names == null) {
+				throw new DbException("The file has no header, so name its columns with CsvImportOptions.columns()");
+			}
+			List<ColumnDecoder> decoders = getDecoders(names);
+
+			List<Object> batch = new ArrayList<>(options.batchSize);
+			while (failure.get() == null && parser.next()) {
+				T row = rowClass.getDeclaredConstructor().newInstance();
+				for (ColumnDecoder decoder : decoders) {
+					if (decoder.index >= parser.getFieldCount() || isNull(parser, decoder.index)) {
+						continue;
+					}
+					Object value;
+					try {
+						value = decoder.decode(parser);
+					} catch (RuntimeException e) {
+						throw new DbException("Can't read column " + names[decoder.index] + " of record "
+								+ parser.getRecordNumber() + ": " + e.getMessage(), e);
+					}
+					pojoInfo.putValue(row, decoder.name, value);
+				}
+				batch.add(row);
+				rowsParsed++;
+
+				if (batch.size() == options.batchSize) {
+					bytesParsed = parser.getPosition();
+					queue.put(batch);
+					batch = new ArrayList<>(options.batchSize);
+				}
+			}
+			bytesParsed = parser.getPosition();
+			if (!batch.isEmpty()) {
+				queue.put(batch);
+			}
+		}
+	}
+
+	private boolean isNull(MappedCsvParser parser, int i) {
+		if (options.nullString == null) {
+			return false;
+		}
+		return options.nullString.isEmpty() ? parser.isEmpty(i)
+				: !parser.isQuoted(i) && parser.equalsAscii(i, options.nullString);
+	}
+
+	/**
+	 * Match the column names to properties, exactly or else ignoring case.
+	 * Columns without a property are skipped.
+	 */
+	private List<ColumnDecoder> getDecoders(String[] names) {
+		List<ColumnDecoder> decoders = new ArrayList<>();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i] == null) {
+				continue;
+			}
+			Property prop = pojoInfo.getProperty(names[i]);
+			if (prop == null) {
+				for (Property p : pojoInfo.propertyMap.values()) {
+					if (p.name.equalsIgnoreCase(names[i])) {
+						prop = p;
+						break;
+					}
+				}
+			}
+			if (prop != null) {
+				decoders.add(new ColumnDecoder(i, prop));
+			}
+		}
+		if (decoders.isEmpty()) {
+			throw new DbException("None of the columns " + String.join(",", names) + " match a property of "
+					+ rowClass.getName());
+		}
+		return decoders;
+	}
+
+	private void write() {
+		try {
+			while (true) {
+				List<?> batch = queue.take();
+				if (batch == END) {
+					return;
+				}
+				if (failure.get() != null) {
+					continue; // drain, so the parser isn't left blocked
+				}
+				try {
+					Query query = new Query(db).batchSize(options.batchSize);
+					if (options.table != null) {
+						query.table(options.table);
+					}
+					query.insertAll(batch);
+					rowsWritten.addAndGet(batch.size());
+					report();
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			}
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null, e);
+		}
+	}
+
+	private synchronized void report() {
+		if (options.progress != null) {
+			options.progress.accept(new CsvImportProgress(rowsParsed, rowsWritten.get(), bytesParsed, totalBytes));
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.dieselpoint.norm.csv;
+
+import java.util.function.Consumer;
+
+/**
+ * Settings for Database.importCsv(). The defaults read a comma-separated UTF-8
+ * file with a header line, quoted with double quotes, where an empty unquoted
+ * field is null.
+ */
+public class CsvImportOptions {
+
+	char delimiter = ',';
+	char quote = '"';
+	boolean header = true;
+	String[] columns;
+	String nullString = "";
+	String table;
+	int batchSize = 1000;
+	int writerThreads = 2;
+	Consumer<CsvImportProgress> progress;
+
+	public CsvImportOptions delimiter(char delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	public CsvImportOptions quote(char quote) {
+		this.quote = quote;
+		return this;
+	}
+
+	/**
+	 * Set whether the first line names the columns. If it doesn't, set the column
+	 * names with columns().
+	 */
+	public CsvImportOptions header(boolean header) {
+		this.header = header;
+		return this;
+	}
+
+	/**
+	 * Name the properties the columns of the file go into, in order, in place of
+	 * the header. A null name skips its column.
+	 */
+	public CsvImportOptions columns(String... columns) {
+		this.columns = columns;
+		return this;
+	}
+
+	/**
+	 * Set the unquoted value that means null. Quoted values are never null.
+	 */
+	public CsvImportOptions nullString(String nullString) {
+		this.nullString = nullString;
+		return this;
+	}
+
+	/**
+	 * Insert into this table instead of the row class's table.
+	 */
+	public CsvImportOptions table(String table) {
+		this.table = table;
+		return this;
+	}
+
+	/**
+	 * Set the number of rows in each insertAll(). The default is 1000.
+	 */
+	public CsvImportOptions batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Set the number of threads that insert batches, each with a connection of
+	 * its own. The default is 2.
+	 */
+	public CsvImportOptions writerThreads(int writerThreads) {
+		this.writerThreads = writerThreads;
+		return this;
+	}
+
+	/**
+	 * Call the listener each time a batch has been written. It's called from the
+	 * writer threads, one call at a time.
+	 */
+	public CsvImportOptions progress(Consumer<CsvImportProgress> progress) {
+		this.progress = progress;
+		return this;
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.dieselpoint.norm.csv;
+
+/**
+ * How far an import has got.
+ */
+public class CsvImportProgress {
+
+	private final long rowsParsed;
+	private final long rowsWritten;
+	private final long bytesParsed;
+	private final long totalBytes;
+
+	CsvImportProgress(long rowsParsed, long rowsWritten, long bytesParsed, long totalBytes) {
+		this.rowsParsed = rowsParsed;
+		this.rowsWritten = rowsWritten;
+		this.bytesParsed = bytesParsed;
+		this.totalBytes = totalBytes;
+	}
+
+	public long getRowsParsed() {
+		return rowsParsed;
+	}
+
+	public long getRowsWritten() {
+		return rowsWritten;
+	}
+
+	public long getBytesParsed() {
+		return bytesParsed;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Returns the part of the file parsed so far, from 0 to 1.
+	 */
+	public double getFractionParsed() {
+		return totalBytes == 0 ? 1 : bytesParsed / (double) totalBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "CsvImportProgress [rowsParsed=" + rowsParsed + ", rowsWritten=" + rowsWritten + ", bytesParsed="
+				+ bytesParsed + ", totalBytes=" + totalBytes + "]";
+	}
+
+}
@@ -0,0 +1,316 @@
+package com.dieselpoint.norm.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Reads CSV records from a memory-mapped UTF-8 file. A record's fields are kept
+ * as offsets into the mapping, and are only copied when a caller asks for one
+ * as a String; numbers are parsed from the bytes where they lie. The file is
+ * mapped a window at a time, so files larger than 2GB work; a record must fit
+ * in one window.
+ */
+class MappedCsvParser implements Closeable {
+
+	static final int WINDOW = 64 * 1024 * 1024;
+
+	private static final int OK = 0;
+	private static final int END = 1;
+	private static final int NEED_MORE = 2;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int window;
+	private final byte delimiter;
+	private final byte quote;
+
+	private MappedByteBuffer buf;
+	private ByteBuffer view; // for bulk copies, which need a position
+	private long base; // file offset of buf
+	private int limit;
+	private int pos;
+	private long recordNumber;
+
+	// the current record
+	private int fieldCount;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private boolean[] quoted = new boolean[16];
+	private boolean[] escaped = new boolean[16];
+
+	private byte[] scratch = new byte[256];
+
+	MappedCsvParser(Path file, char delimiter, char quote) throws IOException {
+		this(file, delimiter, quote, WINDOW);
+	}
+
+	MappedCsvParser(Path file, char delimiter, char quote, int window) throws IOException {
+		if (delimiter > 127 || quote > 127) {
+			throw new DbException("The delimiter and quote must be ASCII characters");
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.window = window;
+		this.delimiter = (byte) delimiter;
+		this.quote = (byte) quote;
+		map(0);
+
+		// skip a UTF-8 byte order mark
+		if (limit >= 3 && buf.get(0) == (byte) 0xEF && buf.get(1) == (byte) 0xBB && buf.get(2) == (byte) 0xBF) {
+			pos = 3;
+		}
+	}
+
+	private void map(long offset) throws IOException {
+		base = offset;
+		limit = (int) Math.min(window, size - offset);
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, base, limit);
+		view = buf.duplicate();
+		pos = 0;
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns how far into the file the records read so far reach.
+	 */
+	long getPosition() {
+		return base + pos;
+	}
+
+	/**
+	 * Returns the number of the current record, counting from 1.
+	 */
+	long getRecordNumber() {
+		return recordNumber;
+	}
+
+	/**
+	 * Read the next record, skipping blank lines. Returns false at the end of the
+	 * file.
+	 */
+	boolean next() throws IOException {
+		while (true) {
+			int result = parseRecord();
+			if (result == END) {
+				return false;
+			}
+			if (result == NEED_MORE) {
+				if (pos == 0 && limit == window) {
+					throw new DbException("Record " + (recordNumber + 1) + " is longer than " + window + " bytes");
+				}
+				map(base + pos);
+				continue;
+			}
+			recordNumber++;
+			if (fieldCount == 1 && ends[0] == starts[0] && !quoted[0]) {
+				continue; // blank line
+			}
+			return true;
+		}
+	}
+
+	private int parseRecord() {
+		boolean eof = base + limit == size;
+		int p = pos;
+		if (p == limit) {
+			return eof ? END : NEED_MORE;
+		}
+		fieldCount = 0;
+
+		while (true) {
+			int start;
+			int end;
+			boolean isQuoted = false;
+			boolean isEscaped = false;
+
+			if (buf.get(p) == quote) {
+				isQuoted = true;
+				start = ++p;
+				while (true) {
+					if (p == limit) {
+						if (eof) {
+							throw new DbException("Unclosed quote in record " + (recordNumber + 1));
+						}
+						return NEED_MORE;
+					}
+					if (buf.get(p) == quote) {
+						if (p + 1 == limit && !eof) {
+							return NEED_MORE; // can't tell yet if the quote is doubled
+						}
+						if (p + 1 < limit && buf.get(p + 1) == quote) {
+							isEscaped = true;
+							p += 2;
+							continue;
+						}
+						end = p++;
+						break;
+					}
+					p++;
+				}
+			} else {
+				start = p;
+				while (p < limit) {
+					byte b = buf.get(p);
+					if (b == delimiter || b == '\n' || b == '\r') {
+						break;
+					}
+					p++;
+				}
+				if (p == limit && !eof) {
+					return NEED_MORE;
+				}
+				end = p;
+			}
+			addField(start, end, isQuoted, isEscaped);
+
+			if (p == limit) {
+				if (!eof) {
+					return NEED_MORE;
+				}
+				pos = p;
+				return OK;
+			}
+			byte b = buf.get(p);
+			if (b == delimiter) {
+				p++;
+				if (p == limit) {
+					if (!eof) {
+						return NEED_MORE;
+					}
+					addField(p, p, false, false);
+					pos = p;
+					return OK;
+				}
+				continue;
+			}
+			if (b == '\r') {
+				p++;
+				if (p == limit && !eof) {
+					return NEED_MORE;
+				}
+				if (p < limit && buf.get(p) == '\n') {
+					p++;
+				}
+				pos = p;
+				return OK;
+			}
+			if (b == '\n') {
+				pos = p + 1;
+				return OK;
+			}
+			throw new DbException("Unexpected character after a quoted field in record " + (recordNumber + 1));
+		}
+	}
+
+	private void addField(int start, int end, boolean isQuoted, boolean isEscaped) {
+		if (fieldCount == starts.length) {
+			int n = fieldCount * 2;
+			starts = Arrays.copyOf(starts, n);
+			ends = Arrays.copyOf(ends, n);
+			quoted = Arrays.copyOf(quoted, n);
+			escaped = Arrays.copyOf(escaped, n);
+		}
+		starts[fieldCount] = start;
+		ends[fieldCount] = end;
+		quoted[fieldCount] = isQuoted;
+		escaped[fieldCount] = isEscaped;
+		fieldCount++;
+	}
+
+	int getFieldCount() {
+		return fieldCount;
+	}
+
+	boolean isQuoted(int i) {
+		return quoted[i];
+	}
+
+	/**
+	 * Returns true for an unquoted field with nothing in it.
+	 */
+	boolean isEmpty(int i) {
+		return !quoted[i] && starts[i] == ends[i];
+	}
+
+	/**
+	 * Returns true if the field holds exactly these ASCII bytes.
+	 */
+	boolean equalsAscii(int i, String str) {
+		if (escaped[i] || ends[i] - starts[i] != str.length()) {
+			return false;
+		}
+		for (int j = 0; j < str.length(); j++) {
+			if (buf.get(starts[i] + j) != str.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	String getString(int i) {
+		int start = starts[i];
+		int len = ends[i] - start;
+		if (scratch.length < len) {
+			scratch = new byte[Math.max(len, scratch.length * 2)];
+		}
+		if (!escaped[i]) {
+			view.position(start);
+			view.get(scratch, 0, len);
+			return new String(scratch, 0, len, StandardCharsets.UTF_8);
+		}
+		// collapse doubled quotes
+		int n = 0;
+		for (int p = start; p < ends[i]; p++) {
+			byte b = buf.get(p);
+			scratch[n++] = b;
+			if (b == quote) {
+				p++;
+			}
+		}
+		return new String(scratch, 0, n, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parse the field as a long, straight from the bytes if it's plain digits.
+	 */
+	long getLong(int i) {
+		int p = starts[i];
+		int end = ends[i];
+		boolean negative = false;
+		if (p < end && (buf.get(p) == '-' || buf.get(p) == '+')) {
+			negative = buf.get(p) == '-';
+			p++;
+		}
+		// up to 18 digits can't overflow
+		if (p == end || end - p > 18) {
+			return Long.parseLong(getString(i).trim());
+		}
+		long value = 0;
+		for (; p < end; p++) {
+			int digit = buf.get(p) - '0';
+			if (digit < 0 || digit > 9) {
+				return Long.parseLong(getString(i).trim());
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
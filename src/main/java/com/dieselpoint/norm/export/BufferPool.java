@@ -0,0 +1,68 @@
+package com.dieselpoint.norm.export;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Direct buffers for exports, shared by all threads and reused from one export
+ * to the next, as direct buffers are slow to allocate. At most MAX_POOLED_BYTES
+ * are kept; a buffer released past that is left to the garbage collector.
+ */
+final class BufferPool {
+
+	static final long MAX_POOLED_BYTES = 16L * 1024 * 1024;
+
+	private static final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+	private static long pooledBytes;
+
+	private BufferPool() {
+	}
+
+	/**
+	 * Returns a cleared buffer of at least the capacity: the smallest one in the
+	 * pool that's big enough, or a new one.
+	 */
+	static ByteBuffer acquire(int capacity) {
+		synchronized (free) {
+			ByteBuffer best = null;
+			for (ByteBuffer buf : free) {
+				if (buf.capacity() >= capacity && (best == null || buf.capacity() < best.capacity())) {
+					best = buf;
+				}
+			}
+			if (best != null) {
+				// by identity; ByteBuffer.equals() compares contents
+				for (Iterator<ByteBuffer> it = free.iterator(); it.hasNext();) {
+					if (it.next() == best) {
+						it.remove();
+						break;
+					}
+				}
+				pooledBytes -= best.capacity();
+				best.clear();
+				return best;
+			}
+		}
+		return ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Give back a buffer from acquire(). The caller must not use it after.
+	 */
+	static void release(ByteBuffer buf) {
+		synchronized (free) {
+			if (pooledBytes + buf.capacity() <= MAX_POOLED_BYTES) {
+				free.push(buf);
+				pooledBytes += buf.capacity();
+			}
+		}
+	}
+
+	static long getPooledBytes() {
+		synchronized (free) {
+			return pooledBytes;
+		}
+	}
+
+}
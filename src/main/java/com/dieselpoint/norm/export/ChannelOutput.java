@@ -0,0 +1,103 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Collects output in a direct buffer and writes it to the channel each time the
+ * buffer fills. The buffer comes from the BufferPool and goes back to it on
+ * close().
+ */
+class ChannelOutput implements AutoCloseable {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel channel;
+	private ByteBuffer buf;
+
+	ChannelOutput(WritableByteChannel channel) {
+		this.channel = channel;
+		this.buf = BufferPool.acquire(BUFFER_SIZE);
+	}
+
+	void put(byte b) throws IOException {
+		ensure(1);
+		buf.put(b);
+	}
+
+	void putShort(short s) throws IOException {
+		ensure(2);
+		buf.putShort(s);
+	}
+
+	void putInt(int i) throws IOException {
+		ensure(4);
+		buf.putInt(i);
+	}
+
+	void put(byte[] bytes) throws IOException {
+		put(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Write the remaining bytes of src. Large ones go straight to the channel
+	 * rather than through the buffer.
+	 */
+	void put(ByteBuffer src) throws IOException {
+		if (src.remaining() <= buf.remaining()) {
+			buf.put(src);
+			return;
+		}
+		flush();
+		if (src.remaining() <= buf.remaining()) {
+			buf.put(src);
+		} else {
+			while (src.hasRemaining()) {
+				channel.write(src);
+			}
+		}
+	}
+
+	/**
+	 * Encode the chars with the encoder, which must have been reset.
+	 */
+	void encode(CharsetEncoder encoder, CharBuffer chars) throws IOException {
+		while (encoder.encode(chars, buf, true) == CoderResult.OVERFLOW) {
+			flush();
+		}
+		while (encoder.flush(buf) == CoderResult.OVERFLOW) {
+			flush();
+		}
+	}
+
+	void flush() throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * Return the buffer to the pool. Anything not flushed is lost; the channel is
+	 * not closed.
+	 */
+	@Override
+	public void close() {
+		if (buf != null) {
+			BufferPool.release(buf);
+			buf = null;
+		}
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (buf.remaining() < bytes) {
+			flush();
+		}
+	}
+
+}
@@ -0,0 +1,262 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * See {@link Format#COLUMNAR}. The layout, all numbers big-endian:
+ *
+ * <pre>
+ * header:  "NORMCOL1", int32 column count, then per column:
+ *          int16 label length, label in UTF-8, byte type
+ * block:   int32 row count (greater than 0), then per column:
+ *          null bitmap of (row count + 7) / 8 bytes, bit (row % 8) of byte (row / 8) set if null,
+ *          int32 length of the values that follow, the values of the rows that aren't null
+ * end:     int32 0
+ * </pre>
+ *
+ * Types and how their values are stored: 1 boolean, one byte 0 or 1; 2 int32;
+ * 3 int64; 4 float32; 5 float64; 6 timestamp, int64 milliseconds since the
+ * epoch, for dates and timestamps; 7 string, int32 length and UTF-8; 8 binary,
+ * int32 length and the bytes. Integer types up to 32 bits are int32, and
+ * decimals, times and any other type are strings.
+ * <p>
+ * A block holds up to BLOCK_ROWS rows, and ends early after the row that takes
+ * a string or binary column past BLOCK_BYTES, so memory use is set by the block
+ * and not by the size of the result or of its rows.
+ */
+public class ColumnarEncoder extends RowEncoder {
+
+	public static final byte[] MAGIC = "NORMCOL1".getBytes(StandardCharsets.US_ASCII);
+	public static final int BLOCK_ROWS = 4096;
+	public static final int BLOCK_BYTES = 4 * 1024 * 1024;
+
+	// a column's values in one block, which the format gives an int32 length
+	private static final long MAX_COLUMN_BYTES = Integer.MAX_VALUE;
+
+	public static final byte BOOLEAN = 1;
+	public static final byte INT32 = 2;
+	public static final byte INT64 = 3;
+	public static final byte FLOAT32 = 4;
+	public static final byte FLOAT64 = 5;
+	public static final byte TIMESTAMP = 6;
+	public static final byte STRING = 7;
+	public static final byte BINARY = 8;
+
+	private byte[] types;
+	private byte[][] nulls;
+	private ByteBuffer[] values;
+	private int rows;
+	private boolean full;
+
+	ColumnarEncoder(ChannelOutput out) {
+		super(out);
+	}
+
+	@Override
+	void start(ResultSetMetaData meta) throws SQLException, IOException {
+		int colCount = meta.getColumnCount();
+		types = new byte[colCount];
+		nulls = new byte[colCount][BLOCK_ROWS / 8];
+		values = new ByteBuffer[colCount];
+
+		out.put(MAGIC);
+		out.putInt(colCount);
+		for (int i = 0; i < colCount; i++) {
+			types[i] = typeOf(meta.getColumnType(i + 1));
+			byte[] label = meta.getColumnLabel(i + 1).getBytes(StandardCharsets.UTF_8);
+			out.putShort((short) label.length);
+			out.put(label);
+			out.put(types[i]);
+
+			int width = types[i] == STRING || types[i] == BINARY ? 16 : Math.max(width(types[i]), 1);
+			values[i] = BufferPool.acquire(BLOCK_ROWS * width);
+		}
+	}
+
+	static byte typeOf(int sqlType) {
+		switch (sqlType) {
+		case Types.BOOLEAN:
+		case Types.BIT:
+			return BOOLEAN;
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+			return INT32;
+		case Types.BIGINT:
+			return INT64;
+		case Types.REAL:
+			return FLOAT32;
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return FLOAT64;
+		case Types.DATE:
+		case Types.TIMESTAMP:
+			return TIMESTAMP;
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return BINARY;
+		default:
+			return STRING;
+		}
+	}
+
+	private static int width(byte type) {
+		switch (type) {
+		case BOOLEAN:
+			return 1;
+		case INT32:
+		case FLOAT32:
+			return 4;
+		case INT64:
+		case FLOAT64:
+		case TIMESTAMP:
+			return 8;
+		default:
+			return 0;
+		}
+	}
+
+	@Override
+	void row(ResultSet rs) throws SQLException, IOException {
+		for (int i = 0; i < types.length; i++) {
+			int col = i + 1;
+			switch (types[i]) {
+			case BOOLEAN:
+				boolean b = rs.getBoolean(col);
+				if (!isNull(rs, i)) {
+					values[i].put((byte) (b ? 1 : 0));
+				}
+				break;
+			case INT32:
+				int n = rs.getInt(col);
+				if (!isNull(rs, i)) {
+					values[i].putInt(n);
+				}
+				break;
+			case INT64:
+				long l = rs.getLong(col);
+				if (!isNull(rs, i)) {
+					values[i].putLong(l);
+				}
+				break;
+			case FLOAT32:
+				float f = rs.getFloat(col);
+				if (!isNull(rs, i)) {
+					values[i].putFloat(f);
+				}
+				break;
+			case FLOAT64:
+				double d = rs.getDouble(col);
+				if (!isNull(rs, i)) {
+					values[i].putDouble(d);
+				}
+				break;
+			case TIMESTAMP:
+				java.util.Date date = rs.getTimestamp(col);
+				if (date != null) {
+					values[i].putLong(date.getTime());
+				} else {
+					setNull(i);
+				}
+				break;
+			case BINARY:
+				putBytes(i, rs.getBytes(col));
+				break;
+			default:
+				String str = rs.getString(col);
+				putBytes(i, str == null ? null : str.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		if (++rows == BLOCK_ROWS || full) {
+			writeBlock();
+		}
+	}
+
+	private boolean isNull(ResultSet rs, int i) throws SQLException {
+		if (rs.wasNull()) {
+			setNull(i);
+			return true;
+		}
+		return false;
+	}
+
+	private void setNull(int i) {
+		nulls[i][rows >> 3] |= 1 << (rows & 7);
+	}
+
+	private void putBytes(int i, byte[] bytes) {
+		if (bytes == null) {
+			setNull(i);
+			return;
+		}
+		ByteBuffer buf = values[i];
+		long needed = buf.position() + 4L + bytes.length;
+		if (needed > MAX_COLUMN_BYTES) {
+			throw new DbException("A value of " + bytes.length + " bytes is too large for a columnar export block");
+		}
+		if (buf.remaining() < 4 + bytes.length) {
+			// grow, and keep the larger buffer for the blocks after this one
+			long capacity = Math.min(Math.max(buf.capacity() * 2L, needed), MAX_COLUMN_BYTES);
+			ByteBuffer bigger = BufferPool.acquire((int) capacity);
+			buf.flip();
+			bigger.put(buf);
+			BufferPool.release(buf);
+			values[i] = buf = bigger;
+		}
+		buf.putInt(bytes.length);
+		buf.put(bytes);
+		if (buf.position() >= BLOCK_BYTES) {
+			full = true;
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		out.putInt(rows);
+		int bitmapBytes = (rows + 7) >> 3;
+		for (int i = 0; i < types.length; i++) {
+			out.put(ByteBuffer.wrap(nulls[i], 0, bitmapBytes));
+			Arrays.fill(nulls[i], 0, bitmapBytes, (byte) 0);
+
+			ByteBuffer buf = values[i];
+			buf.flip();
+			out.putInt(buf.remaining());
+			out.put(buf);
+			buf.clear();
+		}
+		rows = 0;
+		full = false;
+	}
+
+	@Override
+	void finish() throws IOException {
+		if (rows > 0) {
+			writeBlock();
+		}
+		out.putInt(0);
+	}
+
+	@Override
+	public void close() {
+		if (values == null) {
+			return;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				BufferPool.release(values[i]);
+				values[i] = null;
+			}
+		}
+	}
+
+}
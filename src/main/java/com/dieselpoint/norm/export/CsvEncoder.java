@@ -0,0 +1,74 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * See {@link Format#CSV}.
+ */
+class CsvEncoder extends TextEncoder {
+
+	private int colCount;
+
+	CsvEncoder(ChannelOutput out) {
+		super(out);
+	}
+
+	@Override
+	void start(ResultSetMetaData meta) throws SQLException, IOException {
+		colCount = meta.getColumnCount();
+		for (int i = 1; i <= colCount; i++) {
+			if (i > 1) {
+				line.append(',');
+			}
+			appendField(meta.getColumnLabel(i));
+		}
+		writeLine();
+	}
+
+	@Override
+	void row(ResultSet rs) throws SQLException, IOException {
+		for (int i = 1; i <= colCount; i++) {
+			if (i > 1) {
+				line.append(',');
+			}
+			Object value = rs.getObject(i);
+			if (value instanceof byte[]) {
+				line.append(Base64.getEncoder().encodeToString((byte[]) value));
+			} else if (value != null) {
+				appendField(value.toString());
+			}
+		}
+		writeLine();
+	}
+
+	private void appendField(String str) {
+		if (!str.isEmpty() && !needsQuotes(str)) {
+			line.append(str);
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == '"') {
+				line.append('"');
+			}
+			line.append(c);
+		}
+		line.append('"');
+	}
+
+	private static boolean needsQuotes(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams the rows of a ResultSet to a channel in one of the export formats.
+ * Query.exportTo() runs a query and calls this; call it directly to export a
+ * ResultSet you have already.
+ */
+public class Exporter {
+
+	/**
+	 * Write the remaining rows of the ResultSet to the channel and return how many
+	 * there were. The channel is not closed.
+	 */
+	public static long export(ResultSet rs, WritableByteChannel channel, Format format)
+			throws SQLException, IOException {
+
+		try (ChannelOutput out = new ChannelOutput(channel); RowEncoder encoder = RowEncoder.create(format, out)) {
+			encoder.start(rs.getMetaData());
+			long rows = 0;
+			while (rs.next()) {
+				encoder.row(rs);
+				rows++;
+			}
+			encoder.finish();
+			out.flush();
+			return rows;
+		}
+	}
+
+}
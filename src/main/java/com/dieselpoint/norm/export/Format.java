@@ -0,0 +1,29 @@
+package com.dieselpoint.norm.export;
+
+/**
+ * The file formats Query.exportTo() writes. All are UTF-8 where there is text.
+ */
+public enum Format {
+
+	/**
+	 * Comma-separated values with a header line of column labels, per RFC 4180.
+	 * Values are quoted only when they need it, except the empty string, which is
+	 * quoted to tell it from null. Binary values are base64.
+	 */
+	CSV,
+
+	/**
+	 * One JSON object per line, keyed by column label. Numbers and booleans are
+	 * JSON numbers and booleans, binary values are base64 strings, and anything
+	 * else is its string form.
+	 */
+	JSONL,
+
+	/**
+	 * A compact binary format that stores the rows in blocks, and each block
+	 * column by column, so a reader can skip the columns it doesn't need. See
+	 * {@link ColumnarEncoder} for the layout.
+	 */
+	COLUMNAR
+
+}
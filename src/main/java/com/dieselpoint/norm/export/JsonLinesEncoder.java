@@ -0,0 +1,94 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * See {@link Format#JSONL}.
+ */
+class JsonLinesEncoder extends TextEncoder {
+
+	// "{"label": and ,"label": for each column, made once
+	private String[] keys;
+
+	JsonLinesEncoder(ChannelOutput out) {
+		super(out);
+	}
+
+	@Override
+	void start(ResultSetMetaData meta) throws SQLException {
+		keys = new String[meta.getColumnCount()];
+		for (int i = 0; i < keys.length; i++) {
+			appendString(meta.getColumnLabel(i + 1));
+			keys[i] = (i == 0 ? "{" : ",") + line + ":";
+			line.setLength(0);
+		}
+	}
+
+	@Override
+	void row(ResultSet rs) throws SQLException, IOException {
+		if (keys.length == 0) {
+			line.append('{');
+		}
+		for (int i = 0; i < keys.length; i++) {
+			line.append(keys[i]);
+			appendValue(rs.getObject(i + 1));
+		}
+		line.append('}');
+		writeLine();
+	}
+
+	private void appendValue(Object value) {
+		if (value == null) {
+			line.append("null");
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short
+				|| value instanceof Byte || value instanceof BigInteger || value instanceof BigDecimal
+				|| value instanceof Boolean) {
+			line.append(value);
+		} else if ((value instanceof Double && Double.isFinite((Double) value))
+				|| (value instanceof Float && Float.isFinite((Float) value))) {
+			line.append(value);
+		} else if (value instanceof byte[]) {
+			line.append('"').append(Base64.getEncoder().encodeToString((byte[]) value)).append('"');
+		} else {
+			appendString(value.toString());
+		}
+	}
+
+	private void appendString(String str) {
+		line.append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+
+}
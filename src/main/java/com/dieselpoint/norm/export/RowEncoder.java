@@ -0,0 +1,52 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes rows of a ResultSet to a ChannelOutput in one Format. Each row is read
+ * from the ResultSet and encoded in place; nothing is kept from one row to the
+ * next except what a format buffers on purpose.
+ */
+abstract class RowEncoder implements AutoCloseable {
+
+	protected final ChannelOutput out;
+
+	RowEncoder(ChannelOutput out) {
+		this.out = out;
+	}
+
+	static RowEncoder create(Format format, ChannelOutput out) {
+		switch (format) {
+		case CSV:
+			return new CsvEncoder(out);
+		case JSONL:
+			return new JsonLinesEncoder(out);
+		default:
+			return new ColumnarEncoder(out);
+		}
+	}
+
+	abstract void start(ResultSetMetaData meta) throws SQLException, IOException;
+
+	/**
+	 * Encode the row the ResultSet is on.
+	 */
+	abstract void row(ResultSet rs) throws SQLException, IOException;
+
+	/**
+	 * Write anything still buffered. The caller flushes the output.
+	 */
+	abstract void finish() throws IOException;
+
+	/**
+	 * Give back any buffers the encoder holds. Called once the export is done or
+	 * has failed.
+	 */
+	@Override
+	public void close() {
+	}
+
+}
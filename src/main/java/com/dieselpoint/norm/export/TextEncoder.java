@@ -0,0 +1,46 @@
+package com.dieselpoint.norm.export;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base of the line-oriented text formats. A subclass builds each line in
+ * "line", and writeLine() encodes it as UTF-8 into the output, reusing the same
+ * char buffer every time.
+ */
+abstract class TextEncoder extends RowEncoder {
+
+	protected final StringBuilder line = new StringBuilder(256);
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer chars = CharBuffer.allocate(256);
+
+	TextEncoder(ChannelOutput out) {
+		super(out);
+	}
+
+	protected void writeLine() throws IOException {
+		line.append('\n');
+		int len = line.length();
+		if (chars.capacity() < len) {
+			chars = CharBuffer.allocate(Math.max(len, chars.capacity() * 2));
+		}
+		chars.clear();
+		line.getChars(0, len, chars.array(), 0);
+		chars.limit(len);
+
+		encoder.reset();
+		out.encode(encoder, chars);
+		line.setLength(0);
+	}
+
+	@Override
+	void finish() {
+		// every line is written as it's made
+	}
+
+}
@@ -0,0 +1,20 @@
+package com.dieselpoint.norm.idgen;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assign the id on the client, before the row is inserted, with the id
+ * generator named by the property's @GeneratedValue(generator = "name"). The
+ * generator must be registered with Database.getIdGenerators(). Without this,
+ * @GeneratedValue means the database assigns the id, whatever its strategy
+ * or generator.
+ */
+@Target({ElementType.METHOD, ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ClientGenerated {
+}
@@ -0,0 +1,61 @@
+package com.dieselpoint.norm.idgen;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Hands out numeric ids from blocks of blockSize. Each block costs one trip to
+ * the database for a new "hi" value; the ids in it are hi * blockSize up to
+ * hi * blockSize + blockSize - 1. Since every hi is handed out once, clients
+ * never collide, even across processes. Ids left over in a block when the
+ * process ends are never used, so there will be gaps.
+ */
+public abstract class HiLoGenerator implements IdGenerator {
+
+	protected final int blockSize;
+
+	private long next;
+	private long end;
+
+	protected HiLoGenerator(int blockSize) {
+		if (blockSize < 1) {
+			throw new DbException("Block size must be at least 1");
+		}
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Returns a hi value that has never been returned before, to any client.
+	 * Must be greater than 0.
+	 */
+	protected abstract long nextHi(Database db);
+
+	@Override
+	public Object nextId(Database db, Class<?> type) {
+		long id;
+		synchronized (this) {
+			if (next == end) {
+				// other threads wait here for the new block, which they'd need anyway
+				long hi = nextHi(db);
+				next = Math.multiplyExact(hi, blockSize);
+				end = next + blockSize;
+			}
+			id = next++;
+		}
+		return convert(id, type);
+	}
+
+	private static Object convert(long id, Class<?> type) {
+		if (type == long.class || type == Long.class || type == Object.class) {
+			return id;
+		}
+		if (type == int.class || type == Integer.class) {
+			return Math.toIntExact(id);
+		}
+		if (type == String.class) {
+			return Long.toString(id);
+		}
+		throw new DbException("Can't assign a numeric id to a property of type " + type.getName());
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.dieselpoint.norm.idgen;
+
+import com.dieselpoint.norm.Database;
+
+/**
+ * Assigns ids on the client, before a row is inserted, so the insert needs no
+ * round trip to read a generated key back and rows can be batched freely.
+ * Select one for a property with @GeneratedValue(generator = "name") and
+ * @ClientGenerated, after registering it under that name with
+ * Database.getIdGenerators().register().
+ * Implementations are called from many threads.
+ */
+public interface IdGenerator {
+
+	/**
+	 * Returns a new id of the given type, which is the type of the property that
+	 * receives it.
+	 */
+	public Object nextId(Database db, Class<?> type);
+
+}
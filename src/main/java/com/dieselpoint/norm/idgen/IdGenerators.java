@@ -0,0 +1,53 @@
+package com.dieselpoint.norm.idgen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * The id generators of one Database, by name. Get it with
+ * Database.getIdGenerators(). A property annotated
+ * 
+ * <pre>
+ * &#64;Id
+ * &#64;GeneratedValue(generator = "name")
+ * &#64;ClientGenerated
+ * </pre>
+ * 
+ * gets its id from the generator registered under that name, before the row is
+ * inserted. Nothing is created on demand: register a
+ * {@link SequenceHiLoGenerator} or a {@link TableHiLoGenerator} for hi-lo
+ * blocks from the database, or one of your own. A
+ * {@link TimeOrderedUuidGenerator} is registered as {@value #UUID7}.
+ * <p>
+ * Without @ClientGenerated, @GeneratedValue still means the database assigns
+ * the id.
+ */
+public class IdGenerators {
+
+	public static final String UUID7 = "uuid7";
+
+	private final Map<String, IdGenerator> generators = new ConcurrentHashMap<>();
+
+	public IdGenerators() {
+		register(UUID7, new TimeOrderedUuidGenerator());
+	}
+
+	public void register(String name, IdGenerator generator) {
+		generators.put(name, generator);
+	}
+
+	/**
+	 * Returns the generator registered under the name.
+	 */
+	public IdGenerator get(String name) {
+		IdGenerator generator = generators.get(name);
+		if (generator == null) {
+			throw new DbException("No id generator named '" + name
+					+ "'. Register one with Database.getIdGenerators().register().");
+		}
+		return generator;
+	}
+
+}
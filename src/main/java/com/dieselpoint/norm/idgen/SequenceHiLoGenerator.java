@@ -0,0 +1,38 @@
+package com.dieselpoint.norm.idgen;
+
+import java.util.List;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Util;
+
+/**
+ * Gets each block's hi value from a database sequence, with one "select next
+ * value" per block. The sequence should increment by 1:
+ *
+ * <pre>
+ * create sequence order_seq
+ * </pre>
+ */
+public class SequenceHiLoGenerator extends HiLoGenerator {
+
+	private final String sequenceName;
+
+	public SequenceHiLoGenerator(String sequenceName, int blockSize) {
+		super(blockSize);
+		this.sequenceName = sequenceName;
+	}
+
+	@Override
+	protected long nextHi(Database db) {
+		String sql = db.getSqlMaker().getNextSequenceValueSql(sequenceName);
+		List<Long> values = db.sql(sql).results(Long.class);
+		if (values.isEmpty()) {
+			throw new DbException("No value from sequence " + sequenceName);
+		}
+		// drivers differ in the type they return
+		Object value = values.get(0);
+		return ((Number) Util.normalizeKey(value)).longValue();
+	}
+
+}
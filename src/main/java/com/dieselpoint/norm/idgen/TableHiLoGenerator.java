@@ -0,0 +1,65 @@
+package com.dieselpoint.norm.idgen;
+
+import java.util.List;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Transaction;
+import com.dieselpoint.norm.Util;
+
+/**
+ * Gets each block's hi value from a row in a counter table, for databases
+ * without sequences. Many generators can share one table, one row each:
+ *
+ * <pre>
+ * create table norm_id_blocks (name varchar(255) primary key, next_hi bigint not null)
+ * </pre>
+ *
+ * The row is created the first time it's needed. Each block takes an update
+ * and a select in a transaction of its own, so the row is locked only briefly
+ * and never as part of the caller's transaction.
+ */
+public class TableHiLoGenerator extends HiLoGenerator {
+
+	private final String table;
+	private final String name;
+
+	public TableHiLoGenerator(String table, String name, int blockSize) {
+		super(blockSize);
+		this.table = table;
+		this.name = name;
+	}
+
+	@Override
+	protected long nextHi(Database db) {
+		// two attempts, in case another client creates the row at the same time
+		for (int attempt = 0;; attempt++) {
+			Transaction trans = db.startTransaction();
+			try {
+				int updated = db.transaction(trans)
+						.sql("update " + table + " set next_hi = next_hi + 1 where name = ?", name).execute()
+						.getRowsAffected();
+				long hi;
+				if (updated == 0) {
+					hi = 1;
+					db.transaction(trans).sql("insert into " + table + " (name, next_hi) values (?, ?)", name, hi)
+							.execute();
+				} else {
+					List<Long> values = db.transaction(trans)
+							.sql("select next_hi from " + table + " where name = ?", name).results(Long.class);
+					Object value = values.get(0);
+					hi = ((Number) Util.normalizeKey(value)).longValue();
+				}
+				trans.commit();
+				return hi;
+
+			} catch (DbException e) {
+				trans.rollback();
+				if (attempt > 0) {
+					throw e;
+				}
+			}
+		}
+	}
+
+}
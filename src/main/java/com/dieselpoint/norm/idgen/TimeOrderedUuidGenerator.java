@@ -0,0 +1,63 @@
+package com.dieselpoint.norm.idgen;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Version 7 UUIDs (RFC 9562): a millisecond timestamp followed by random bits.
+ * Ids made later sort later, so inserts go to the end of a primary key index
+ * instead of to random pages, as with random UUIDs. Within a millisecond, the
+ * 12 bits after the timestamp count up, so ids from one generator are strictly
+ * increasing even if the clock steps back.
+ * <p>
+ * Fills properties of type UUID, String or byte[].
+ */
+public class TimeOrderedUuidGenerator implements IdGenerator {
+
+	private long lastMillis;
+	private int counter;
+
+	@Override
+	public Object nextId(Database db, Class<?> type) {
+		UUID uuid = next();
+		if (type == UUID.class || type == Object.class) {
+			return uuid;
+		}
+		if (type == String.class) {
+			return uuid.toString();
+		}
+		if (type == byte[].class) {
+			return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits())
+					.putLong(uuid.getLeastSignificantBits()).array();
+		}
+		throw new DbException("Can't assign a UUID to a property of type " + type.getName());
+	}
+
+	public UUID next() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long millis;
+		int count;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			if (now > lastMillis) {
+				lastMillis = now;
+				// start low in the range, leaving room to count up
+				counter = random.nextInt(0x800);
+			} else if (++counter > 0xFFF) {
+				// used up this millisecond, borrow the next one
+				lastMillis++;
+				counter = 0;
+			}
+			millis = lastMillis;
+			count = counter;
+		}
+		long msb = (millis << 16) | 0x7000 | count;
+		long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.dieselpoint.norm.latency;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Takes {@link DbLatencyWarning}s off the query thread. Warnings go into a bounded, lock-free ring buffer and a single
+ * background thread hands them to the sink (normally the {@link LatencyAlerter}s of a
+ * {@link com.dieselpoint.norm.Database}). When the buffer is full, new warnings are dropped and counted rather than
+ * making the query wait: when the database is degrading, the query threads are the last thing we want to block.
+ * <p>Enable it with {@code db.setAsyncLatencyAlerts( 1024 )}.
+ */
+public class AsyncLatencyDispatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger( AsyncLatencyDispatcher.class );
+    private final AtomicReferenceArray<DbLatencyWarning> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot a producer will claim
+    private final AtomicLong tail = new AtomicLong(); // next slot the drainer will read
+    private final LongAdder dropped = new LongAdder();
+    private final Consumer<DbLatencyWarning> sink;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity the maximum number of warnings waiting to be dispatched, rounded up to a power of two
+     * @param sink called on the background thread for each warning
+     */
+    public AsyncLatencyDispatcher( int capacity, Consumer<DbLatencyWarning> sink ) {
+        if (capacity < 1)
+            throw new IllegalArgumentException( "capacity must be positive" );
+        int size = Integer.highestOneBit( capacity );
+        this.capacity = size < capacity ? size << 1 : size;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>( this.capacity );
+        this.sink = sink;
+        this.drainer = new Thread( this::drain, "norm-latency-alerts" );
+        this.drainer.setDaemon( true );
+        this.drainer.start();
+    }
+
+    /**
+     * Queues the warning without blocking.
+     * @return false if the buffer was full and the warning was dropped
+     */
+    public boolean offer( DbLatencyWarning warning ) {
+        long claimed;
+        do {
+            claimed = head.get();
+            if (claimed - tail.get() >= capacity || running == false) {
+                dropped.increment();
+                return false;
+            }
+        } while (head.compareAndSet( claimed, claimed + 1 ) == false);
+        slots.set( (int) claimed & mask, warning );
+        if (claimed == tail.get()) {
+            // the buffer was empty, so the drainer may be parked
+            LockSupport.unpark( drainer );
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            long next = tail.get();
+            int index = (int) next & mask;
+            DbLatencyWarning warning = slots.get( index );
+            if (warning == null) {
+                if (next < head.get()) {
+                    // a producer has claimed the slot but not written to it yet
+                    Thread.onSpinWait();
+                }
+                else if (running) {
+                    // offer() unparks us when the buffer stops being empty
+                    LockSupport.park( this );
+                }
+                else {
+                    return;
+                }
+                continue;
+            }
+            slots.lazySet( index, null );
+            // a full volatile write, so that offer() sees it when it checks for an empty buffer
+            tail.set( next + 1 );
+            try {
+                sink.accept( warning );
+            } catch (Throwable t) {
+                // never let a failing alerter kill the drain thread
+                logger.warn( "Latency alerter failed for: " + warning, t );
+            }
+        }
+    }
+
+    /**
+     * @return the number of warnings that were dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of warnings waiting to be dispatched
+     */
+    public int getPendingCount() {
+        return (int) (head.get() - tail.get());
+    }
+
+    /**
+     * Stops accepting warnings, dispatches the ones already queued, and stops the background thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark( drainer );
+        try {
+            drainer.join( TimeUnit.SECONDS.toMillis( 5 ) );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
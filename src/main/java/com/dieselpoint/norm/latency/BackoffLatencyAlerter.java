@@ -55,7 +55,7 @@ public abstract class BackoffLatencyAlerter implements LatencyAlerter {
 
     @Override
     public synchronized void alertLatencyFailure( DbLatencyWarning warning ) {
-        if (warning.maxAcceptableLatency != 0) {
+        if (warning.isBreach()) {
             long myTime = System.currentTimeMillis();
             if (nextReportTime <= myTime) {
                 if (alertLatencyFailureAfterBackoffAndJitter( warning, alertsSwallowedWhileWaiting ) == false)
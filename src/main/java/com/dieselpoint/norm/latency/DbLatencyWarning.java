@@ -11,20 +11,81 @@ import java.util.Arrays;
  * the system administrators to the warning
  */
 public class DbLatencyWarning {
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
     public final long maxAcceptableLatency;
     public final long actualLatency;
     public final String cause;
     public final String offendingStatement;
+    /**
+     * nanoseconds spent in each {@link Phase}, indexed by {@link Phase#ordinal()}. Null if no breakdown is available
+     */
+    public final long[] phaseNanos;
+    /**
+     * the offending sql and its arguments, null for transaction commits
+     */
+    public final String sql;
+    public final Object[] args;
+    /**
+     * the execution plan, if {@link com.dieselpoint.norm.Database#setExplainSlowQueries(boolean)} is on and the plan
+     * could be captured, otherwise null
+     */
+    public final String plan;
 
     protected DbLatencyWarning( long maxAcceptableLatency, long actualLatency, String cause ) {
+        this( maxAcceptableLatency, actualLatency, null, cause );
+    }
+
+    protected DbLatencyWarning( long maxAcceptableLatency, long actualLatency, long[] phaseNanos, String cause ) {
         this.maxAcceptableLatency = maxAcceptableLatency;
         this.actualLatency = actualLatency;
         this.cause = cause;
+        this.phaseNanos = phaseNanos == null ? null : phaseNanos.clone();
+        this.sql = null;
+        this.args = null;
+        this.plan = null;
         this.offendingStatement = getOffendingStatement();
     }
 
+    private DbLatencyWarning( long maxAcceptableLatency, long actualLatency, String theNaughtySql, Object[] theNaughtyArgs,
+                              long[] phaseNanos, String cause ) {
+        this.maxAcceptableLatency = maxAcceptableLatency;
+        this.actualLatency = actualLatency;
+        this.cause = cause;
+        this.phaseNanos = phaseNanos == null ? null : phaseNanos.clone();
+        this.sql = theNaughtySql;
+        this.args = theNaughtyArgs;
+        this.plan = null;
+        this.offendingStatement = getOffendingStatement();
+    }
+
+    /**
+     * Copies the warning, including its call site, and attaches a plan
+     */
+    protected DbLatencyWarning( DbLatencyWarning original, String plan ) {
+        this.maxAcceptableLatency = original.maxAcceptableLatency;
+        this.actualLatency = original.actualLatency;
+        this.cause = original.cause;
+        this.phaseNanos = original.phaseNanos;
+        this.sql = original.sql;
+        this.args = original.args;
+        this.plan = plan;
+        this.offendingStatement = original.offendingStatement;
+    }
+
+    /**
+     * @return a copy of this warning with the execution plan attached
+     */
+    public DbLatencyWarning withPlan( String plan ) {
+        return new DbLatencyWarning( this, plan );
+    }
+
     public DbLatencyWarning(long maxAcceptableLatency, long actualLatency, String theNaughtySql, Object[] theNaughtyArgs ) {
-        this( maxAcceptableLatency, actualLatency,
+        this( maxAcceptableLatency, actualLatency, theNaughtySql, theNaughtyArgs, null );
+    }
+
+    public DbLatencyWarning(long maxAcceptableLatency, long actualLatency, String theNaughtySql, Object[] theNaughtyArgs, long[] phaseNanos ) {
+        this( maxAcceptableLatency, actualLatency, theNaughtySql, theNaughtyArgs, phaseNanos,
                         "SQL:" + theNaughtySql + ", SQL_Args:" + Arrays.deepToString(theNaughtyArgs) );
     }
 
@@ -32,25 +93,69 @@ public class DbLatencyWarning {
         this( maxAcceptableLatency, actualLatency, "Transaction commit exceeded threshold:" );
     }
 
+    /**
+     * @return true if the warning reports a breach that alerters should act on, false if it's informational. For
+     * latency warnings that's a non-zero {@code maxAcceptableLatency}; subclasses that report other problems override it
+     */
+    public boolean isBreach() {
+        return maxAcceptableLatency != 0;
+    }
+
+    /**
+     * @return the milliseconds spent in the given phase, or 0 if there is no breakdown
+     */
+    public long getPhaseMillis( Phase phase ) {
+        return phaseNanos == null ? 0 : phaseNanos[phase.ordinal()] / 1_000_000;
+    }
+
+    /**
+     * @return the phase that took the longest, or null if there is no breakdown
+     */
+    public Phase getSlowestPhase() {
+        if (phaseNanos == null)
+            return null;
+        Phase slowest = null;
+        for (Phase p : Phase.values()) {
+            if (slowest == null || phaseNanos[p.ordinal()] > phaseNanos[slowest.ordinal()])
+                slowest = p;
+        }
+        return slowest;
+    }
+
     /**
      * @return the most recent call on the stack before any call to classes in the {@code com.dieselpoint.norm} package.
      * This ought to pinpoint the call that exceeded the latency threshold. Returns {@code "[Unknown]"}, when it can't
      * figure out the caller, i.e. will never return null
      */
     private String getOffendingStatement() {
-        StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-        for (int i=2; i<elements.length; i++) {
-            StackTraceElement e = elements[i];
-            // ignore everything in the com.dieselpoint.norm package
-            if (e.getClassName().startsWith( "com.dieselpoint.norm.") == false)
-                return e.toString();
+        // StackWalker stops at the first match, rather than capturing the whole stack the way getStackTrace() does
+        return STACK_WALKER.walk( frames -> frames
+                        // ignore everything in the com.dieselpoint.norm package
+                        .filter( f -> f.getClassName().startsWith( "com.dieselpoint.norm." ) == false )
+                        .findFirst() )
+                .map( StackWalker.StackFrame::toString )
+                .orElse( "[Unknown]" );
+    }
+
+    /**
+     * @return e.g. {@code " (connection wait 400ms, prepare 0ms, execute 3ms, fetch/map 1ms)"}, or an empty string
+     */
+    private String getPhaseBreakdown() {
+        if (phaseNanos == null)
+            return "";
+        StringBuilder sb = new StringBuilder( " (" );
+        for (Phase p : Phase.values()) {
+            if (p.ordinal() > 0)
+                sb.append( ", " );
+            sb.append( p.description ).append( ' ' ).append( getPhaseMillis( p ) ).append( "ms" );
         }
-        return "[Unknown]";
+        return sb.append( ')' ).toString();
     }
 
     public String toString() {
+        String planText = plan == null ? "" : "\nPlan:\n" + plan;
         if (maxAcceptableLatency == 0)
-            return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ". " + cause;
-        return "Database Latency was: " + actualLatency + "ms, at " + offendingStatement + ", versus max acceptable: " + maxAcceptableLatency + "ms. Caused by " + cause;
+            return "Database Latency was: " + actualLatency + "ms" + getPhaseBreakdown() + ", at " + offendingStatement + ". " + cause + planText;
+        return "Database Latency was: " + actualLatency + "ms" + getPhaseBreakdown() + ", at " + offendingStatement + ", versus max acceptable: " + maxAcceptableLatency + "ms. Caused by " + cause + planText;
     }
 }
@@ -13,7 +13,7 @@ public class ExceptionLatencyAlerter implements LatencyAlerter {
 
     @Override
     public void alertLatencyFailure( DbLatencyWarning warning ) {
-        if (warning.maxAcceptableLatency > 0)
+        if (warning.isBreach())
             throw new DbException( warning.toString() );
     }
 }
\ No newline at end of file
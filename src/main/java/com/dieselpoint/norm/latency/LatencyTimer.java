@@ -5,24 +5,59 @@ import com.dieselpoint.norm.Query;
 import com.dieselpoint.norm.Transaction;
 
 /**
- * Utility class that abstracts the starting / stopping of timers and checking whether sql duration was within threshold
+ * Utility class that abstracts the starting / stopping of timers and checking whether sql duration was within threshold.
+ * <p>The timer is started before the connection is requested, and the caller marks the end of each {@link Phase} as it
+ * goes, so the total latency and the per-phase breakdown cover everything from waiting for the pool to mapping the
+ * last row. All timing uses {@link System#nanoTime()}
  */
 public class LatencyTimer {
     public final long startMillis;
+    public final long startNanos;
     public long duration;
     public final long maxAcceptableLatency;
     public final Database db;
+    private static final int PHASE_COUNT = Phase.values().length;
+    private final long[] phaseNanos = new long[PHASE_COUNT];
+    private long lastMarkNanos;
 
     public LatencyTimer( Query query ) {
-        this.db = query.getDatabase();
-        startMillis = System.currentTimeMillis();
-        maxAcceptableLatency = query.getMaxLatencyMillis();
+        this( query.getDatabase(), query.getMaxLatencyMillis() );
     }
 
     public LatencyTimer( Transaction transaction ) {
-        this.db = transaction.getDatabase();
+        this( transaction.getDatabase(), transaction.getMaxLatencyMillis() );
+    }
+
+    private LatencyTimer( Database db, long maxAcceptableLatency ) {
+        this.db = db;
+        this.maxAcceptableLatency = maxAcceptableLatency;
         startMillis = System.currentTimeMillis();
-        maxAcceptableLatency = transaction.getMaxLatencyMillis();
+        startNanos = System.nanoTime();
+        lastMarkNanos = startNanos;
+    }
+
+    /**
+     * Marks the end of the given phase. The time since the previous mark (or since the timer started) is added to
+     * that phase.
+     */
+    public void endPhase( Phase phase ) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - lastMarkNanos;
+        lastMarkNanos = now;
+    }
+
+    /**
+     * @return the nanoseconds from the start of the timer to the last phase mark
+     */
+    public long getElapsedNanos() {
+        return lastMarkNanos - startNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent in each phase so far, indexed by {@link Phase#ordinal()}
+     */
+    public long[] getPhaseNanos() {
+        return phaseNanos;
     }
 
     /**
@@ -31,29 +66,45 @@ public class LatencyTimer {
     private boolean stop() {
         if (maxAcceptableLatency < 0)
             return true;
-        duration = System.currentTimeMillis() - startMillis;
+        duration = (lastMarkNanos - startNanos) / 1_000_000;
         if (maxAcceptableLatency == 0)
             return false;
         return duration <= maxAcceptableLatency;
     }
 
-    public boolean stop( String sql, Object[] args ) {
+    /**
+     * Records the statement in the {@link Database} metrics, and alerts if the total of all phases exceeded the
+     * maxAcceptableLatency
+     * @param rows the number of rows returned or affected
+     * @return true if latency was within acceptable bounds
+     */
+    public boolean stop( String sql, Object[] args, long rows ) {
+        if (db == null)
+            return true;
+        if (db.getMetrics() != null)
+            db.getMetrics().record( sql, lastMarkNanos - startNanos, phaseNanos, rows );
         if (stop() == false) {
-            if (db != null) {
-                db.alertLatency( new DbLatencyWarning( maxAcceptableLatency, duration, sql, args ) );
-            }
+            db.alertLatency( new DbLatencyWarning( maxAcceptableLatency, duration, sql, args, phaseNanos ) );
+            return false;
         }
-        return false;
+        return true;
+    }
+
+    public boolean stop( String sql, Object[] args ) {
+        return stop( sql, args, 0 );
     }
 
     public boolean stop( Transaction aTransaction ) {
+        endPhase( Phase.EXECUTE );
+        if (db == null)
+            return true;
+        if (db.getMetrics() != null)
+            db.getMetrics().record( "commit", lastMarkNanos - startNanos, phaseNanos, 0 );
         if (stop() == false) {
-            if (db != null) {
-                db.alertLatency( new DbLatencyWarning( maxAcceptableLatency, duration, aTransaction ) );
-            }
+            db.alertLatency( new DbLatencyWarning( maxAcceptableLatency, duration, aTransaction ) );
+            return false;
         }
-        return false;
+        return true;
     }
 
-
 }
@@ -0,0 +1,22 @@
+package com.dieselpoint.norm.latency;
+
+/**
+ * The phases that a {@link LatencyTimer} splits a database call into. Together they add up to the total latency
+ * that is checked against maxLatency.
+ */
+public enum Phase {
+    /** waiting for the pool to hand over a connection */
+    CONNECT( "connection wait" ),
+    /** preparing the statement and binding its arguments */
+    PREPARE( "prepare" ),
+    /** executing the statement, up to the first row being available */
+    EXECUTE( "execute" ),
+    /** iterating the result set and mapping rows to pojos */
+    FETCH( "fetch/map" );
+
+    public final String description;
+
+    Phase( String description ) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,129 @@
+package com.dieselpoint.norm.latency;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.metrics.SqlFingerprint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Counts statement executions per SQL fingerprint within a unit of work (typically one web request, or one
+ * {@link com.dieselpoint.norm.Transaction}) to catch N+1 query patterns, such as calling
+ * {@code db.where("parent_id=?", id).results(Child.class)} once per parent in a loop.
+ * <p>When one fingerprint is executed more than the threshold number of times, a {@link RepeatedStatementWarning} is
+ * sent once through the {@link LatencyAlerter}s, pointing at the line of code that issued the statement. In test mode
+ * ({@link Database#setFailOnRepeatedStatements(boolean)}) the offending query throws a {@link DbException} instead.
+ * <pre>{@code
+ * try (QueryScope scope = db.openScope()) {
+ *     handleRequest();
+ * }
+ * }</pre>
+ */
+public class QueryScope implements AutoCloseable {
+
+    private final Database db;
+    private final int threshold;
+    private final boolean failOnRepeat;
+    private final Consumer<QueryScope> onClose;
+    private final Map<String, Counter> bySql = new ConcurrentHashMap<>();
+    private final Map<String, Counter> byFingerprint = new ConcurrentHashMap<>();
+    private final List<RepeatedStatementWarning> warnings = new ArrayList<>();
+    private volatile boolean closed;
+
+    private static class Counter {
+        final String fingerprint;
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicLong nanos = new AtomicLong();
+
+        Counter( String fingerprint ) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Use {@link Database#openScope()} or {@link com.dieselpoint.norm.Transaction#openScope()} rather than calling
+     * this directly.
+     * @param onClose unbinds the scope from its thread or transaction, may be null
+     */
+    public QueryScope( Database db, int threshold, boolean failOnRepeat, Consumer<QueryScope> onClose ) {
+        this.db = db;
+        this.threshold = threshold;
+        this.failOnRepeat = failOnRepeat;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Called by {@link com.dieselpoint.norm.Query} after each execution
+     * @throws DbException in test mode, when the statement has been repeated too often
+     */
+    public void record( String sql, long nanos ) {
+        if (closed)
+            return;
+        Counter counter = bySql.get( sql );
+        if (counter == null) {
+            counter = byFingerprint.computeIfAbsent( SqlFingerprint.of( sql ), Counter::new );
+            bySql.put( sql, counter );
+        }
+        counter.nanos.addAndGet( nanos );
+        int count = counter.count.incrementAndGet();
+        if (threshold > 0 && count == threshold + 1) {
+            RepeatedStatementWarning warning = new RepeatedStatementWarning( counter.fingerprint, count, threshold,
+                    counter.nanos.get() / 1_000_000 );
+            synchronized (warnings) {
+                warnings.add( warning );
+            }
+            if (failOnRepeat)
+                throw new DbException( warning.toString() );
+            db.alertLatency( warning );
+        }
+    }
+
+    /**
+     * @return how many times statements with the same fingerprint as this sql ran in the scope
+     */
+    public int getCount( String sql ) {
+        Counter counter = byFingerprint.get( SqlFingerprint.of( sql ) );
+        return counter == null ? 0 : counter.count.get();
+    }
+
+    /**
+     * @return the statements that went over the threshold so far
+     */
+    public List<RepeatedStatementWarning> getWarnings() {
+        synchronized (warnings) {
+            return new ArrayList<>( warnings );
+        }
+    }
+
+    /**
+     * For tests: fails if any statement went over the threshold in this scope.
+     * @throws DbException listing the repeated statements
+     */
+    public void assertNoRepeatedStatements() {
+        List<RepeatedStatementWarning> found = getWarnings();
+        if (found.isEmpty() == false) {
+            StringBuilder sb = new StringBuilder( "Repeated statements (possible N+1 queries):" );
+            for (RepeatedStatementWarning w : found)
+                sb.append( "\n  " ).append( w );
+            throw new DbException( sb.toString() );
+        }
+    }
+
+    /**
+     * Ends the scope. For thread-bound scopes, the enclosing scope (if any) becomes current again
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (onClose != null)
+            onClose.accept( this );
+    }
+}
@@ -0,0 +1,37 @@
+package com.dieselpoint.norm.latency;
+
+/**
+ * Raised by a {@link QueryScope} when one statement fingerprint runs more often than the threshold within the scope,
+ * which usually means a query inside a loop (the N+1 query problem). It travels through the same
+ * {@link LatencyAlerter} chain as latency warnings, and {@link #isBreach()} is always true. The latency fields keep their
+ * meaning: {@code actualLatency} is the time spent on the statement in the scope, and {@code maxAcceptableLatency} is
+ * 0, since no latency limit was broken. The count and threshold are in their own fields.
+ */
+public class RepeatedStatementWarning extends DbLatencyWarning {
+    public final String fingerprint;
+    public final int executions;
+    public final int threshold;
+    /**
+     * the time spent on the statement in this scope so far, in milliseconds
+     */
+    public final long totalMillis;
+
+    public RepeatedStatementWarning( String fingerprint, int executions, int threshold, long totalMillis ) {
+        super( 0, totalMillis, "Repeated statement: " + fingerprint );
+        this.fingerprint = fingerprint;
+        this.executions = executions;
+        this.threshold = threshold;
+        this.totalMillis = totalMillis;
+    }
+
+    @Override
+    public boolean isBreach() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Statement executed " + executions + " times in one scope (threshold " + threshold + ", " + totalMillis
+                + "ms so far), at " + offendingStatement + ". Possible N+1 query: " + fingerprint;
+    }
+}
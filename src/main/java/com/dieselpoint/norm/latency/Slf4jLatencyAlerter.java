@@ -17,7 +17,7 @@ public class Slf4jLatencyAlerter implements LatencyAlerter {
 
     @Override
     public void alertLatencyFailure( DbLatencyWarning warning ) {
-        if (warning.maxAcceptableLatency == 0)
+        if (warning.isBreach() == false)
             instanceLogger.info( warning.toString() );
         else
             instanceLogger.warn( warning.toString() );
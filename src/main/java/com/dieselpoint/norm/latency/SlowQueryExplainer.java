@@ -0,0 +1,122 @@
+package com.dieselpoint.norm.latency;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.metrics.SqlFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Captures the execution plan of statements that breach their latency threshold, and attaches it to the
+ * {@link DbLatencyWarning} before the {@link LatencyAlerter}s see it. The plan comes from
+ * {@link com.dieselpoint.norm.sqlmakers.SqlMaker#getExplainSql(String)}, run on a separate connection on a background
+ * thread, so the slow query itself is not held up.
+ * <p>Each SQL fingerprint is explained at most once per interval. Warnings that aren't explained (because of the rate
+ * limit, because the dialect can't explain the statement, or because the explain queue is full) are passed on
+ * unchanged. Turn it on with {@code db.setExplainSlowQueries( true )}.
+ */
+public class SlowQueryExplainer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger( SlowQueryExplainer.class );
+    private static final int MAX_QUEUED = 16;
+    private static final int MAX_TRACKED_FINGERPRINTS = 10000;
+
+    private final Database db;
+    private final long minIntervalNanos;
+    private final ConcurrentHashMap<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param db the database to run the explain statements on, and to send the explained warnings to
+     * @param minIntervalMillis the minimum time between two explains of the same statement fingerprint
+     */
+    public SlowQueryExplainer( Database db, long minIntervalMillis ) {
+        this.db = db;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos( minIntervalMillis );
+        this.executor = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( MAX_QUEUED ), r -> {
+            Thread t = new Thread( r, "norm-slow-query-explainer" );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+
+    /**
+     * @return true if the warning was taken; it will be sent to {@link Database#alertLatency(DbLatencyWarning)} again
+     * once the plan is attached. False if the caller should alert on it right away.
+     */
+    public boolean explain( DbLatencyWarning warning ) {
+        if (warning.sql == null || warning.plan != null || warning.maxAcceptableLatency <= 0)
+            return false;
+        String explainSql = db.getSqlMaker().getExplainSql( warning.sql );
+        if (explainSql == null)
+            return false;
+        if (claim( SqlFingerprint.of( warning.sql ) ) == false)
+            return false;
+        try {
+            executor.execute( () -> db.alertLatency( warning.withPlan( capturePlan( explainSql, warning.args ) ) ) );
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the fingerprint hasn't been explained within the interval, in which case it's now marked as
+     * explained
+     */
+    private boolean claim( String fingerprint ) {
+        long now = System.nanoTime();
+        if (lastExplained.size() > MAX_TRACKED_FINGERPRINTS)
+            lastExplained.clear();
+        Long last = lastExplained.putIfAbsent( fingerprint, now );
+        if (last == null)
+            return true;
+        if (now - last < minIntervalNanos)
+            return false;
+        return lastExplained.replace( fingerprint, last, now );
+    }
+
+    private String capturePlan( String explainSql, Object[] args ) {
+        try (Connection con = db.getConnection(); PreparedStatement state = con.prepareStatement( explainSql )) {
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    state.setObject( i + 1, args[i] );
+                }
+            }
+            try (ResultSet rs = state.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int colCount = meta.getColumnCount();
+                StringBuilder plan = new StringBuilder();
+                if (colCount > 1) {
+                    for (int i = 1; i <= colCount; i++) {
+                        plan.append( i > 1 ? "\t" : "" ).append( meta.getColumnLabel( i ) );
+                    }
+                    plan.append( '\n' );
+                }
+                while (rs.next()) {
+                    for (int i = 1; i <= colCount; i++) {
+                        plan.append( i > 1 ? "\t" : "" ).append( rs.getString( i ) );
+                    }
+                    plan.append( '\n' );
+                }
+                return plan.toString().trim();
+            }
+        } catch (Throwable t) {
+            logger.info( "Could not explain: " + explainSql, t );
+            return "[EXPLAIN failed: " + t + "]";
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
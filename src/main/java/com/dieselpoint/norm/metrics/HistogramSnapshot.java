@@ -0,0 +1,94 @@
+package com.dieselpoint.norm.metrics;
+
+/**
+ * An immutable copy of a {@link LatencyHistogram}. All values are in
+ * nanoseconds.
+ */
+public class HistogramSnapshot {
+
+	private final long[] counts;
+	private final long count;
+	private final long sum;
+	private final long max;
+
+	HistogramSnapshot(long[] counts, long sum, long max) {
+		this.counts = counts;
+		this.sum = sum;
+		this.max = max;
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		this.count = total;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public long getMean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	/**
+	 * Returns the value at the given quantile, for example 0.99 for the 99th
+	 * percentile. The value is the midpoint of the bucket the quantile falls in,
+	 * and is never larger than the maximum recorded value.
+	 */
+	public long getValueAtQuantile(double quantile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * count);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				long lower = LatencyHistogram.lowerBound(i);
+				long upper = LatencyHistogram.upperBound(i);
+				return Math.min(lower + (upper - lower) / 2, max);
+			}
+		}
+		return max;
+	}
+
+	public long getP50() {
+		return getValueAtQuantile(0.50);
+	}
+
+	public long getP99() {
+		return getValueAtQuantile(0.99);
+	}
+
+	public long getP999() {
+		return getValueAtQuantile(0.999);
+	}
+
+	/**
+	 * Returns a histogram holding the values of this one and the other one, for
+	 * example to get the overall latency of several statements.
+	 */
+	public HistogramSnapshot merge(HistogramSnapshot other) {
+		long[] merged = new long[counts.length];
+		for (int i = 0; i < merged.length; i++) {
+			merged[i] = counts[i] + other.counts[i];
+		}
+		return new HistogramSnapshot(merged, sum + other.sum, Math.max(max, other.max));
+	}
+
+	static HistogramSnapshot empty() {
+		return new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0);
+	}
+
+}
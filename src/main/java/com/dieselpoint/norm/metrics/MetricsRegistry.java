@@ -0,0 +1,341 @@
+package com.dieselpoint.norm.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.latency.Phase;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Collects latency, row and error counts for every statement a
+ * {@link com.dieselpoint.norm.Database} executes, keyed by
+ * {@link SqlFingerprint}. Get it with Database.getMetrics().
+ * <p>
+ * The hot path is a single hash lookup on the raw SQL string plus a few atomic
+ * increments. Fingerprinting only happens the first time a given SQL string is
+ * seen. To protect against statements built with inline literals, at most
+ * {@value #MAX_FINGERPRINTS} distinct fingerprints are tracked; the rest are
+ * lumped together under {@value #OVERFLOW}.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+
+	public static final int MAX_FINGERPRINTS = 1000;
+	public static final String OVERFLOW = "[other]";
+	static final int MAX_CACHED_SQL = 10000;
+
+	private final ConcurrentHashMap<String, StatementMetrics> bySql = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, StatementMetrics> byFingerprint = new ConcurrentHashMap<>();
+
+	private volatile boolean enabled = true;
+	private volatile DataSource dataSource;
+	private ObjectName objectName;
+
+	/**
+	 * Record one successful execution of a statement.
+	 *
+	 * @param sql   the sql as sent to the database
+	 * @param nanos elapsed time
+	 * @param rows  rows returned or affected
+	 */
+	public void record(String sql, long nanos, long rows) {
+		record(sql, nanos, null, rows);
+	}
+
+	/**
+	 * Record one successful execution of a statement, along with the time spent
+	 * in each {@link Phase}.
+	 *
+	 * @param phaseNanos nanoseconds per phase, indexed by Phase.ordinal(), or null
+	 */
+	public void record(String sql, long nanos, long[] phaseNanos, long rows) {
+		if (!enabled) {
+			return;
+		}
+		StatementMetrics m = lookup(sql);
+		m.latency.record(nanos);
+		if (phaseNanos != null) {
+			for (int i = 0; i < StatementMetrics.PHASE_COUNT; i++) {
+				m.phases[i].record(phaseNanos[i]);
+			}
+		}
+		if (rows > 0) {
+			m.rows.add(rows);
+		}
+	}
+
+	/**
+	 * Record a failed execution of a statement.
+	 */
+	public void recordError(String sql) {
+		if (!enabled) {
+			return;
+		}
+		lookup(sql).errors.increment();
+	}
+
+	private StatementMetrics lookup(String sql) {
+		if (sql == null) {
+			sql = "";
+		}
+		StatementMetrics m = bySql.get(sql);
+		if (m != null) {
+			return m;
+		}
+
+		String fingerprint = SqlFingerprint.of(sql);
+		m = byFingerprint.get(fingerprint);
+		if (m == null) {
+			if (byFingerprint.size() >= MAX_FINGERPRINTS) {
+				fingerprint = OVERFLOW;
+			}
+			m = byFingerprint.computeIfAbsent(fingerprint, StatementMetrics::new);
+		}
+		if (bySql.size() < MAX_CACHED_SQL) {
+			bySql.put(sql, m);
+		}
+		return m;
+	}
+
+	/**
+	 * The pool statistics come from this DataSource if it's a HikariDataSource.
+	 * Database sets this automatically.
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	private HikariPoolMXBean getPool() {
+		DataSource ds = dataSource;
+		if (ds instanceof HikariDataSource) {
+			return ((HikariDataSource) ds).getHikariPoolMXBean();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a copy of the current metrics, with statements sorted by total time
+	 * spent, largest first.
+	 */
+	public MetricsSnapshot snapshot() {
+		List<StatementSnapshot> statements = new ArrayList<>(byFingerprint.size());
+		for (StatementMetrics m : byFingerprint.values()) {
+			statements.add(m.snapshot());
+		}
+		statements.sort(Comparator.comparingLong((StatementSnapshot s) -> s.latency.getSum()).reversed());
+
+		HikariPoolMXBean pool = getPool();
+		if (pool == null) {
+			return new MetricsSnapshot(statements, -1, -1, -1, -1);
+		}
+		return new MetricsSnapshot(statements, pool.getActiveConnections(), pool.getIdleConnections(),
+				pool.getTotalConnections(), pool.getThreadsAwaitingConnection());
+	}
+
+	/**
+	 * Zero all counters. Executions that are recorded while the reset is in
+	 * progress may be partially kept.
+	 */
+	@Override
+	public void reset() {
+		for (StatementMetrics m : byFingerprint.values()) {
+			m.reset();
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public int getStatementCount() {
+		return byFingerprint.size();
+	}
+
+	@Override
+	public long getExecutionCount() {
+		long total = 0;
+		for (StatementMetrics m : byFingerprint.values()) {
+			total += m.latency.snapshot().getCount();
+		}
+		return total;
+	}
+
+	@Override
+	public long getErrorCount() {
+		long total = 0;
+		for (StatementMetrics m : byFingerprint.values()) {
+			total += m.errors.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public long getRowCount() {
+		long total = 0;
+		for (StatementMetrics m : byFingerprint.values()) {
+			total += m.rows.sum();
+		}
+		return total;
+	}
+
+	@Override
+	public int getActiveConnections() {
+		HikariPoolMXBean pool = getPool();
+		return pool == null ? -1 : pool.getActiveConnections();
+	}
+
+	@Override
+	public int getIdleConnections() {
+		HikariPoolMXBean pool = getPool();
+		return pool == null ? -1 : pool.getIdleConnections();
+	}
+
+	@Override
+	public int getTotalConnections() {
+		HikariPoolMXBean pool = getPool();
+		return pool == null ? -1 : pool.getTotalConnections();
+	}
+
+	@Override
+	public int getThreadsAwaitingConnection() {
+		HikariPoolMXBean pool = getPool();
+		return pool == null ? -1 : pool.getThreadsAwaitingConnection();
+	}
+
+	@Override
+	public String[] getStatementSummaries() {
+		List<StatementSnapshot> statements = snapshot().statements;
+		String[] out = new String[statements.size()];
+		for (int i = 0; i < out.length; i++) {
+			out[i] = statements.get(i).toString();
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the metrics in the Prometheus text exposition format, suitable for
+	 * serving from a /metrics endpoint.
+	 */
+	@Override
+	public String dumpPrometheus() {
+		MetricsSnapshot snap = snapshot();
+		StringBuilder buf = new StringBuilder();
+
+		buf.append("# HELP norm_statement_duration_seconds Statement latency by SQL fingerprint.\n");
+		buf.append("# TYPE norm_statement_duration_seconds summary\n");
+		for (StatementSnapshot s : snap.statements) {
+			String label = "sql=\"" + escape(s.fingerprint) + "\"";
+			appendQuantile(buf, label, "0.5", s.latency.getP50());
+			appendQuantile(buf, label, "0.99", s.latency.getP99());
+			appendQuantile(buf, label, "0.999", s.latency.getP999());
+			buf.append("norm_statement_duration_seconds_sum{").append(label).append("} ")
+					.append(seconds(s.latency.getSum())).append('\n');
+			buf.append("norm_statement_duration_seconds_count{").append(label).append("} ")
+					.append(s.latency.getCount()).append('\n');
+		}
+
+		buf.append("# HELP norm_statement_phase_seconds Statement latency by SQL fingerprint and phase.\n");
+		buf.append("# TYPE norm_statement_phase_seconds summary\n");
+		for (StatementSnapshot s : snap.statements) {
+			for (Phase phase : Phase.values()) {
+				HistogramSnapshot h = s.getPhase(phase);
+				if (h.getCount() == 0) {
+					continue;
+				}
+				String label = "sql=\"" + escape(s.fingerprint) + "\",phase=\"" + phase.name().toLowerCase() + "\"";
+				buf.append("norm_statement_phase_seconds{").append(label).append(",quantile=\"0.99\"} ")
+						.append(seconds(h.getP99())).append('\n');
+				buf.append("norm_statement_phase_seconds_sum{").append(label).append("} ")
+						.append(seconds(h.getSum())).append('\n');
+				buf.append("norm_statement_phase_seconds_count{").append(label).append("} ").append(h.getCount())
+						.append('\n');
+			}
+		}
+
+		buf.append("# HELP norm_statement_rows_total Rows returned or affected by SQL fingerprint.\n");
+		buf.append("# TYPE norm_statement_rows_total counter\n");
+		for (StatementSnapshot s : snap.statements) {
+			buf.append("norm_statement_rows_total{sql=\"").append(escape(s.fingerprint)).append("\"} ")
+					.append(s.rows).append('\n');
+		}
+
+		buf.append("# HELP norm_statement_errors_total Failed executions by SQL fingerprint.\n");
+		buf.append("# TYPE norm_statement_errors_total counter\n");
+		for (StatementSnapshot s : snap.statements) {
+			buf.append("norm_statement_errors_total{sql=\"").append(escape(s.fingerprint)).append("\"} ")
+					.append(s.errors).append('\n');
+		}
+
+		if (snap.totalConnections >= 0) {
+			buf.append("# HELP norm_pool_connections Connections in the pool by state.\n");
+			buf.append("# TYPE norm_pool_connections gauge\n");
+			buf.append("norm_pool_connections{state=\"active\"} ").append(snap.activeConnections).append('\n');
+			buf.append("norm_pool_connections{state=\"idle\"} ").append(snap.idleConnections).append('\n');
+			buf.append("norm_pool_connections{state=\"total\"} ").append(snap.totalConnections).append('\n');
+			buf.append("# HELP norm_pool_threads_awaiting_connection Threads blocked waiting for a connection.\n");
+			buf.append("# TYPE norm_pool_threads_awaiting_connection gauge\n");
+			buf.append("norm_pool_threads_awaiting_connection ").append(snap.threadsAwaitingConnection)
+					.append('\n');
+		}
+
+		return buf.toString();
+	}
+
+	private static void appendQuantile(StringBuilder buf, String label, String quantile, long nanos) {
+		buf.append("norm_statement_duration_seconds{").append(label).append(",quantile=\"").append(quantile)
+				.append("\"} ").append(seconds(nanos)).append('\n');
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * Register this registry with the platform MBean server, for example under
+	 * "com.dieselpoint.norm:type=Metrics,name=mydb".
+	 */
+	public synchronized void registerMBean(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(name);
+			server.registerMBean(this, on);
+			objectName = on;
+		} catch (JMException e) {
+			throw new DbException(e);
+		}
+	}
+
+	public synchronized void unregisterMBean() {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			// already gone
+		}
+		objectName = null;
+	}
+
+}
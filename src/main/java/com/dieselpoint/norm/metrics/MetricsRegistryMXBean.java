@@ -0,0 +1,38 @@
+package com.dieselpoint.norm.metrics;
+
+/**
+ * JMX view of a {@link MetricsRegistry}. Register it with
+ * {@link MetricsRegistry#registerMBean(String)}.
+ */
+public interface MetricsRegistryMXBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	public int getStatementCount();
+
+	public long getExecutionCount();
+
+	public long getErrorCount();
+
+	public long getRowCount();
+
+	public int getActiveConnections();
+
+	public int getIdleConnections();
+
+	public int getTotalConnections();
+
+	public int getThreadsAwaitingConnection();
+
+	/**
+	 * One line per statement fingerprint, with counts and latency percentiles.
+	 */
+	public String[] getStatementSummaries();
+
+	public String dumpPrometheus();
+
+	public void reset();
+
+}
@@ -0,0 +1,63 @@
+package com.dieselpoint.norm.metrics;
+
+import java.util.List;
+
+import com.dieselpoint.norm.latency.Phase;
+
+/**
+ * Point-in-time copy of a {@link MetricsRegistry}. Pool values are -1 if the
+ * Database is not using a Hikari pool, or the pool has not started yet.
+ */
+public class MetricsSnapshot {
+
+	public final List<StatementSnapshot> statements;
+	public final int activeConnections;
+	public final int idleConnections;
+	public final int totalConnections;
+	public final int threadsAwaitingConnection;
+
+	MetricsSnapshot(List<StatementSnapshot> statements, int activeConnections, int idleConnections,
+			int totalConnections, int threadsAwaitingConnection) {
+		this.statements = statements;
+		this.activeConnections = activeConnections;
+		this.idleConnections = idleConnections;
+		this.totalConnections = totalConnections;
+		this.threadsAwaitingConnection = threadsAwaitingConnection;
+	}
+
+	/**
+	 * Returns the metrics for the statement with the given fingerprint, or null.
+	 */
+	public StatementSnapshot get(String fingerprint) {
+		for (StatementSnapshot s : statements) {
+			if (s.fingerprint.equals(fingerprint)) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the latency of all statements together.
+	 */
+	public HistogramSnapshot getLatency() {
+		HistogramSnapshot total = HistogramSnapshot.empty();
+		for (StatementSnapshot s : statements) {
+			total = total.merge(s.latency);
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the time spent in one phase by all statements together, for example
+	 * the overall connection wait.
+	 */
+	public HistogramSnapshot getPhase(Phase phase) {
+		HistogramSnapshot total = HistogramSnapshot.empty();
+		for (StatementSnapshot s : statements) {
+			total = total.merge(s.getPhase(phase));
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.dieselpoint.norm.metrics;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to a fingerprint that identifies the "shape" of the
+ * statement, so that executions that differ only by their literal values are
+ * grouped together. String and numeric literals become ?, runs of whitespace
+ * collapse to a single space, keywords are lowercased, and IN-lists and
+ * multi-row VALUES lists collapse to a single element.
+ * <p>
+ * select * from people where id in (1, 2, 3) and name = 'Bob'<br>
+ * becomes<br>
+ * select * from people where id in (?) and name = ?
+ */
+public class SqlFingerprint {
+
+	// possessive quantifiers, or long lists overflow the stack
+	private static final Pattern IN_LIST = Pattern.compile("\\bin ?\\( ?\\?(?: ?, ?\\?)*+ ?\\)");
+	private static final Pattern VALUES_LIST = Pattern
+			.compile("(\\bvalues ?\\( ?(?:\\? ?, ?)*+\\? ?\\))(?: ?, ?\\( ?(?:\\? ?, ?)*+\\? ?\\))++");
+
+	public static String of(String sql) {
+		if (sql == null) {
+			return "";
+		}
+
+		int len = sql.length();
+		StringBuilder buf = new StringBuilder(len);
+		boolean pendingSpace = false;
+
+		for (int i = 0; i < len; i++) {
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				pendingSpace = buf.length() > 0;
+				continue;
+			}
+			if (pendingSpace) {
+				buf.append(' ');
+				pendingSpace = false;
+			}
+
+			if (c == '\'') {
+				// string literal, '' is an escaped quote
+				i++;
+				while (i < len) {
+					if (sql.charAt(i) == '\'') {
+						if (i + 1 < len && sql.charAt(i + 1) == '\'') {
+							i++;
+						} else {
+							break;
+						}
+					}
+					i++;
+				}
+				buf.append('?');
+
+			} else if (c == '"' || c == '`') {
+				// quoted identifier, keep as-is
+				int end = sql.indexOf(c, i + 1);
+				if (end < 0) {
+					end = len - 1;
+				}
+				buf.append(sql, i, end + 1);
+				i = end;
+
+			} else if (isDigit(c) && !isIdentifierChar(buf)) {
+				// numeric literal, including decimals and exponents
+				while (i + 1 < len) {
+					char next = sql.charAt(i + 1);
+					if (isDigit(next) || next == '.' || next == 'e' || next == 'E') {
+						i++;
+					} else {
+						break;
+					}
+				}
+				buf.append('?');
+
+			} else {
+				buf.append(Character.toLowerCase(c));
+			}
+		}
+
+		String out = buf.toString();
+		if (out.indexOf(" in") >= 0) {
+			out = IN_LIST.matcher(out).replaceAll("in (?)");
+		}
+		if (out.indexOf("values") >= 0) {
+			out = VALUES_LIST.matcher(out).replaceAll("$1");
+		}
+		return out;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Returns true if the last char written is part of an identifier, like the
+	 * "1" in "table1".
+	 */
+	private static boolean isIdentifierChar(StringBuilder buf) {
+		if (buf.length() == 0) {
+			return false;
+		}
+		char c = buf.charAt(buf.length() - 1);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+}
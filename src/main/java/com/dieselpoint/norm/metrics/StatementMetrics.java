@@ -0,0 +1,44 @@
+package com.dieselpoint.norm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.dieselpoint.norm.latency.Phase;
+
+/**
+ * The live counters for a single SQL fingerprint.
+ */
+class StatementMetrics {
+
+	static final int PHASE_COUNT = Phase.values().length;
+
+	final String fingerprint;
+	final LatencyHistogram latency = new LatencyHistogram();
+	final LatencyHistogram[] phases = new LatencyHistogram[PHASE_COUNT];
+	final LongAdder rows = new LongAdder();
+	final LongAdder errors = new LongAdder();
+
+	StatementMetrics(String fingerprint) {
+		this.fingerprint = fingerprint;
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+
+	StatementSnapshot snapshot() {
+		HistogramSnapshot[] phaseSnapshots = new HistogramSnapshot[PHASE_COUNT];
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			phaseSnapshots[i] = phases[i].snapshot();
+		}
+		return new StatementSnapshot(fingerprint, latency.snapshot(), phaseSnapshots, rows.sum(), errors.sum());
+	}
+
+	void reset() {
+		latency.reset();
+		for (LatencyHistogram phase : phases) {
+			phase.reset();
+		}
+		rows.reset();
+		errors.reset();
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.dieselpoint.norm.metrics;
+
+import com.dieselpoint.norm.latency.Phase;
+
+/**
+ * Point-in-time metrics for all executions of one SQL fingerprint.
+ */
+public class StatementSnapshot {
+
+	public final String fingerprint;
+	public final HistogramSnapshot latency;
+	public final long rows;
+	public final long errors;
+
+	private final HistogramSnapshot[] phases;
+
+	StatementSnapshot(String fingerprint, HistogramSnapshot latency, HistogramSnapshot[] phases, long rows,
+			long errors) {
+		this.fingerprint = fingerprint;
+		this.latency = latency;
+		this.phases = phases;
+		this.rows = rows;
+		this.errors = errors;
+	}
+
+	public long getExecutions() {
+		return latency.getCount();
+	}
+
+	/**
+	 * Returns the latency of one phase of execution, like the time spent waiting
+	 * for a connection.
+	 */
+	public HistogramSnapshot getPhase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("count=").append(latency.getCount());
+		buf.append(" errors=").append(errors);
+		buf.append(" rows=").append(rows);
+		buf.append(" p50=").append(latency.getP50() / 1000).append("us");
+		buf.append(" p99=").append(latency.getP99() / 1000).append("us");
+		buf.append(" max=").append(latency.getMax() / 1000).append("us");
+		for (Phase phase : Phase.values()) {
+			buf.append(' ').append(phase.name().toLowerCase()).append("_p99=")
+					.append(getPhase(phase).getP99() / 1000).append("us");
+		}
+		buf.append(": ").append(fingerprint);
+		return buf.toString();
+	}
+
+}
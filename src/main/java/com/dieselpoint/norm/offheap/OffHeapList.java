@@ -0,0 +1,112 @@
+package com.dieselpoint.norm.offheap;
+
+import java.io.Closeable;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+import com.dieselpoint.norm.converter.SimpleArray;
+
+/**
+ * A read-only list of the rows of a query, kept outside the heap and turned
+ * into objects only when they're asked for: every get() makes a new object
+ * from the stored values. See RowStore for the layout. Close the list to free
+ * the memory and delete the temp file, if there is one; after that, get()
+ * throws.
+ * <p>
+ * get() is safe to call from several threads at once, but not while the list
+ * is being closed.
+ */
+public class OffHeapList<T> extends AbstractList<T> implements RandomAccess, Closeable {
+
+	/**
+	 * The default for how much memory in direct buffers a list may take before
+	 * it spills to a temp file.
+	 */
+	public static final long DEFAULT_MAX_DIRECT_BYTES = 64L * 1024 * 1024;
+
+	private final RowStore store;
+	private final Function<Object[], T> materializer;
+
+	private OffHeapList(RowStore store, Function<Object[], T> materializer) {
+		this.store = store;
+		this.materializer = materializer;
+	}
+
+	/**
+	 * Read every row of the ResultSet into a new list. The materializer turns a
+	 * row's column values, in column order, into the object get() returns.
+	 * LOBs are read into byte[] and String, and arrays into a SimpleArray with
+	 * the same base type, since they don't outlive the ResultSet.
+	 */
+	public static <T> OffHeapList<T> load(ResultSet rs, long maxDirectBytes, Function<Object[], T> materializer)
+			throws SQLException {
+		int colCount = rs.getMetaData().getColumnCount();
+		RowStore store = new RowStore(colCount, maxDirectBytes);
+		try {
+			Object[] values = new Object[colCount];
+			while (rs.next()) {
+				for (int i = 0; i < colCount; i++) {
+					values[i] = detach(rs.getObject(i + 1));
+				}
+				store.append(values);
+			}
+		} catch (SQLException | RuntimeException e) {
+			store.close();
+			throw e;
+		}
+		return new OffHeapList<>(store, materializer);
+	}
+
+	private static Object detach(Object value) throws SQLException {
+		if (value instanceof Clob) {
+			Clob clob = (Clob) value;
+			return clob.getSubString(1, (int) clob.length());
+		}
+		if (value instanceof Blob) {
+			Blob blob = (Blob) value;
+			return blob.getBytes(1, (int) blob.length());
+		}
+		if (value instanceof Array) {
+			Array array = (Array) value;
+			return new SimpleArray(array.getBaseType(), array.getBaseTypeName(), (Object[]) array.getArray());
+		}
+		return value;
+	}
+
+	@Override
+	public T get(int index) {
+		return materializer.apply(store.read(index));
+	}
+
+	@Override
+	public int size() {
+		return store.size();
+	}
+
+	/**
+	 * True if the rows took more than the limit on direct memory and some are
+	 * in a temp file.
+	 */
+	public boolean isSpilled() {
+		return store.isSpilled();
+	}
+
+	/**
+	 * Bytes taken by the rows, in memory and in the temp file together.
+	 */
+	public long getCapacityBytes() {
+		return store.getCapacityBytes();
+	}
+
+	@Override
+	public void close() {
+		store.close();
+	}
+
+}
@@ -0,0 +1,408 @@
+package com.dieselpoint.norm.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.converter.SimpleArray;
+
+/**
+ * Rows of values in a compact binary layout outside the heap, appended once
+ * and then read back by index. A row is, for each column, a tag byte for the
+ * value's class followed by the value: fixed width for numbers and times, an
+ * int32 length and the bytes for strings, binary and decimals. An array is its
+ * base type, its type name and length, and then its elements, each tagged like
+ * a column value. Values of any other Serializable class are stored
+ * serialized.
+ * <p>
+ * Rows go into chunks that double in size up to MAX_CHUNK. Chunks are direct
+ * buffers until they would take more than maxDirectBytes, and after that they
+ * are mapped from a temp file, so the OS pages them in and out as they're
+ * read. A row never spans chunks. The only per-row cost on the heap is its
+ * offset, 8 bytes.
+ * <p>
+ * Reads may run on several threads at once; appends and close may not.
+ */
+class RowStore implements Closeable {
+
+	static final int FIRST_CHUNK = 64 * 1024;
+	static final int MAX_CHUNK = 8 * 1024 * 1024;
+
+	private static final byte NULL = 0;
+	private static final byte INT = 1;
+	private static final byte LONG = 2;
+	private static final byte SHORT = 3;
+	private static final byte BYTE = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte TRUE = 7;
+	private static final byte FALSE = 8;
+	private static final byte STRING = 9;
+	private static final byte BINARY = 10;
+	private static final byte DECIMAL = 11;
+	private static final byte TIMESTAMP = 12;
+	private static final byte SQL_DATE = 13;
+	private static final byte SQL_TIME = 14;
+	private static final byte LOCAL_DATE = 15;
+	private static final byte LOCAL_DATE_TIME = 16;
+	private static final byte OFFSET_DATE_TIME = 17;
+	private static final byte UUID_VALUE = 18;
+	private static final byte SERIALIZED = 19;
+	private static final byte ARRAY = 20;
+
+	private final int columnCount;
+	private final long maxDirectBytes;
+
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private ByteBuffer current;
+	private long directBytes;
+
+	private Path spillFile;
+	private FileChannel spill;
+	private long spillBytes;
+
+	/** chunk index in the high 32 bits, position in the chunk in the low 32 */
+	private long[] offsets = new long[1024];
+	private int size;
+
+	private ByteBuffer scratch = ByteBuffer.allocate(1024);
+	private volatile boolean closed;
+
+	RowStore(int columnCount, long maxDirectBytes) {
+		this.columnCount = columnCount;
+		this.maxDirectBytes = maxDirectBytes;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isSpilled() {
+		return spill != null;
+	}
+
+	/**
+	 * Bytes held in direct buffers and in the temp file, including the unused
+	 * end of the last chunk.
+	 */
+	long getCapacityBytes() {
+		return directBytes + spillBytes;
+	}
+
+	void append(Object[] values) {
+		scratch.clear();
+		for (Object value : values) {
+			write(value);
+		}
+		scratch.flip();
+
+		int length = scratch.remaining();
+		if (current == null || current.remaining() < length) {
+			newChunk(length);
+		}
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		offsets[size++] = ((long) (chunks.size() - 1) << 32) | current.position();
+		current.put(scratch);
+	}
+
+	Object[] read(int index) {
+		if (closed) {
+			throw new DbException("The rows have been closed");
+		}
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		long offset = offsets[index];
+		ByteBuffer in = chunks.get((int) (offset >>> 32)).duplicate();
+		in.position((int) offset);
+
+		Object[] values = new Object[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			values[i] = read(in);
+		}
+		return values;
+	}
+
+	private void newChunk(int minSize) {
+		int capacity = current == null ? FIRST_CHUNK : Math.min(current.capacity() * 2, MAX_CHUNK);
+		capacity = Math.max(capacity, minSize);
+
+		if (directBytes + capacity <= maxDirectBytes) {
+			current = ByteBuffer.allocateDirect(capacity);
+			directBytes += capacity;
+		} else {
+			try {
+				if (spill == null) {
+					spillFile = Files.createTempFile("norm-rows", ".tmp");
+					spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+							StandardOpenOption.DELETE_ON_CLOSE);
+				}
+				// mapping past the end of the file grows it
+				current = spill.map(FileChannel.MapMode.READ_WRITE, spillBytes, capacity);
+				spillBytes += capacity;
+			} catch (IOException e) {
+				throw new DbException(e);
+			}
+		}
+		chunks.add(current);
+	}
+
+	private void write(Object value) {
+		if (value == null) {
+			ensure(1).put(NULL);
+		} else if (value instanceof Integer) {
+			ensure(5).put(INT).putInt((Integer) value);
+		} else if (value instanceof Long) {
+			ensure(9).put(LONG).putLong((Long) value);
+		} else if (value instanceof Short) {
+			ensure(3).put(SHORT).putShort((Short) value);
+		} else if (value instanceof Byte) {
+			ensure(2).put(BYTE).put((Byte) value);
+		} else if (value instanceof Double) {
+			ensure(9).put(DOUBLE).putDouble((Double) value);
+		} else if (value instanceof Float) {
+			ensure(5).put(FLOAT).putFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			ensure(1).put((Boolean) value ? TRUE : FALSE);
+		} else if (value instanceof String) {
+			writeBytes(STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+		} else if (value instanceof byte[]) {
+			writeBytes(BINARY, (byte[]) value);
+		} else if (value instanceof BigDecimal) {
+			BigDecimal decimal = (BigDecimal) value;
+			writeBytes(DECIMAL, decimal.unscaledValue().toByteArray());
+			ensure(4).putInt(decimal.scale());
+		} else if (value instanceof Timestamp) {
+			Timestamp ts = (Timestamp) value;
+			ensure(13).put(TIMESTAMP).putLong(ts.getTime()).putInt(ts.getNanos());
+		} else if (value instanceof java.sql.Date) {
+			ensure(9).put(SQL_DATE).putLong(((java.sql.Date) value).getTime());
+		} else if (value instanceof Time) {
+			ensure(9).put(SQL_TIME).putLong(((Time) value).getTime());
+		} else if (value instanceof LocalDate) {
+			ensure(9).put(LOCAL_DATE).putLong(((LocalDate) value).toEpochDay());
+		} else if (value instanceof LocalDateTime) {
+			LocalDateTime ldt = (LocalDateTime) value;
+			ensure(13).put(LOCAL_DATE_TIME).putLong(ldt.toEpochSecond(ZoneOffset.UTC)).putInt(ldt.getNano());
+		} else if (value instanceof OffsetDateTime) {
+			OffsetDateTime odt = (OffsetDateTime) value;
+			ensure(17).put(OFFSET_DATE_TIME).putLong(odt.toEpochSecond()).putInt(odt.getNano())
+					.putInt(odt.getOffset().getTotalSeconds());
+		} else if (value instanceof UUID) {
+			UUID uuid = (UUID) value;
+			ensure(17).put(UUID_VALUE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+		} else if (value instanceof SimpleArray) {
+			writeArray((SimpleArray) value);
+		} else if (value instanceof Serializable) {
+			writeBytes(SERIALIZED, serialize(value));
+		} else {
+			throw new DbException("Can't store a value of " + value.getClass().getName() + " off the heap");
+		}
+	}
+
+	private Object read(ByteBuffer in) {
+		byte tag = in.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case INT:
+			return in.getInt();
+		case LONG:
+			return in.getLong();
+		case SHORT:
+			return in.getShort();
+		case BYTE:
+			return in.get();
+		case DOUBLE:
+			return in.getDouble();
+		case FLOAT:
+			return in.getFloat();
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case STRING:
+			return new String(readBytes(in), StandardCharsets.UTF_8);
+		case BINARY:
+			return readBytes(in);
+		case DECIMAL:
+			BigInteger unscaled = new BigInteger(readBytes(in));
+			return new BigDecimal(unscaled, in.getInt());
+		case TIMESTAMP:
+			Timestamp ts = new Timestamp(in.getLong());
+			ts.setNanos(in.getInt());
+			return ts;
+		case SQL_DATE:
+			return new java.sql.Date(in.getLong());
+		case SQL_TIME:
+			return new Time(in.getLong());
+		case LOCAL_DATE:
+			return LocalDate.ofEpochDay(in.getLong());
+		case LOCAL_DATE_TIME:
+			return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+		case OFFSET_DATE_TIME:
+			long seconds = in.getLong();
+			int nanos = in.getInt();
+			ZoneOffset offset = ZoneOffset.ofTotalSeconds(in.getInt());
+			return LocalDateTime.ofEpochSecond(seconds, nanos, offset).atOffset(offset);
+		case UUID_VALUE:
+			return new UUID(in.getLong(), in.getLong());
+		case SERIALIZED:
+			return deserialize(readBytes(in));
+		case ARRAY:
+			return readArray(in);
+		default:
+			throw new DbException("Corrupt row data, tag " + tag);
+		}
+	}
+
+	private void writeArray(SimpleArray array) {
+		Object[] elements = array.toObjectArray();
+		try {
+			ensure(5).put(ARRAY).putInt(array.getBaseType());
+			write(array.getBaseTypeName());
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+		ensure(4).putInt(elements.length);
+		for (Object element : elements) {
+			write(element);
+		}
+	}
+
+	private SimpleArray readArray(ByteBuffer in) {
+		int baseType = in.getInt();
+		String baseTypeName = (String) read(in);
+		Object[] elements = new Object[in.getInt()];
+		for (int i = 0; i < elements.length; i++) {
+			elements[i] = read(in);
+		}
+		return new SimpleArray(baseType, baseTypeName, elements);
+	}
+
+	private void writeBytes(byte tag, byte[] bytes) {
+		ensure(5 + bytes.length).put(tag).putInt(bytes.length).put(bytes);
+	}
+
+	private static byte[] readBytes(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return bytes;
+	}
+
+	private ByteBuffer ensure(int bytes) {
+		if (scratch.remaining() < bytes) {
+			ByteBuffer bigger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+			scratch.flip();
+			bigger.put(scratch);
+			scratch = bigger;
+		}
+		return scratch;
+	}
+
+	private static byte[] serialize(Object value) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		} catch (NotSerializableException e) {
+			throw new DbException("Can't store a value of " + value.getClass().getName() + " off the heap: " + e);
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Free the buffers and delete the temp file now rather than when the
+	 * garbage collector gets to them.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (ByteBuffer chunk : chunks) {
+			release(chunk);
+		}
+		chunks.clear();
+		current = null;
+		offsets = null;
+		if (spill != null) {
+			try {
+				spill.close();
+				Files.deleteIfExists(spillFile);
+			} catch (IOException e) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// buffers are left to the garbage collector
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private static void release(ByteBuffer buffer) {
+		if (INVOKE_CLEANER == null) {
+			return;
+		}
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the garbage collector
+		}
+	}
+
+}
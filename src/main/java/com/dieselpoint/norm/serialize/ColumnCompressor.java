@@ -0,0 +1,113 @@
+package com.dieselpoint.norm.serialize;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.dieselpoint.norm.DbException;
+
+/**
+ * Compresses the values of one column. A compressed value is the 4-byte
+ * header 0x00 'N' 'Z' 0x01, the length of the original value as an int32,
+ * then the deflated bytes. Anything without the header is an uncompressed
+ * value and is read as it is, so rows written before the column was
+ * compressed, and values under the threshold, need no conversion. A value
+ * that happens to start with the header is always compressed, so it can't be
+ * mistaken for one that was. So is a value that doesn't get smaller.
+ * <p>
+ * Thread-safe.
+ */
+public class ColumnCompressor {
+
+	public static final int DEFAULT_THRESHOLD = 1024;
+
+	private static final byte[] HEADER = { 0x00, 'N', 'Z', 0x01 };
+	private static final int HEADER_LENGTH = HEADER.length + 4;
+
+	private final int threshold;
+	private final int level;
+
+	private final LongAdder values = new LongAdder();
+	private final LongAdder compressedValues = new LongAdder();
+	private final LongAdder rawBytes = new LongAdder();
+	private final LongAdder storedBytes = new LongAdder();
+
+	public ColumnCompressor(int threshold, int level) {
+		this.threshold = threshold;
+		this.level = level;
+	}
+
+	public byte[] compress(byte[] raw) {
+		byte[] out = raw;
+		if (raw.length >= threshold || isCompressed(raw)) {
+			byte[] deflated = deflate(raw);
+			if (deflated.length < raw.length || isCompressed(raw)) {
+				out = deflated;
+				compressedValues.increment();
+			}
+		}
+		values.increment();
+		rawBytes.add(raw.length);
+		storedBytes.add(out.length);
+		return out;
+	}
+
+	public byte[] decompress(byte[] stored) {
+		if (!isCompressed(stored)) {
+			return stored;
+		}
+		ByteBuffer in = ByteBuffer.wrap(stored);
+		in.position(HEADER.length);
+		byte[] out = new byte[in.getInt()];
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH);
+			int length = inflater.inflate(out);
+			if (length != out.length || !inflater.finished()) {
+				throw new DbException("Compressed value is corrupt: expected " + out.length + " bytes, got " + length);
+			}
+			return out;
+		} catch (DataFormatException e) {
+			throw new DbException("Compressed value is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	public static boolean isCompressed(byte[] value) {
+		return value.length >= HEADER_LENGTH && Arrays.equals(value, 0, HEADER.length, HEADER, 0, HEADER.length);
+	}
+
+	private byte[] deflate(byte[] raw) {
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			byte[] out = new byte[HEADER_LENGTH + raw.length / 2 + 64];
+			int length = HEADER_LENGTH;
+			while (!deflater.finished()) {
+				if (length == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+				}
+				length += deflater.deflate(out, length, out.length - length);
+			}
+			ByteBuffer.wrap(out).put(HEADER).putInt(raw.length);
+			return Arrays.copyOf(out, length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Returns the counts so far of the values this column has encoded for
+	 * writing, and their sizes before and after.
+	 */
+	public CompressionStats getStats() {
+		return new CompressionStats(values.sum(), compressedValues.sum(), rawBytes.sum(), storedBytes.sum());
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.dieselpoint.norm.serialize;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.zip.Deflater;
+
+/**
+ * Compress the column's values with Deflater before they're written, and
+ * decompress them when they're read. Works on String and byte[] properties
+ * and on properties with a @DbSerializer. The column must be binary. See
+ * {@link ColumnCompressor} for the format.
+ */
+@Target({ElementType.METHOD,ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Compressed {
+
+	/**
+	 * Values of fewer bytes than this are stored as they are.
+	 */
+	int threshold() default ColumnCompressor.DEFAULT_THRESHOLD;
+
+	/**
+	 * The Deflater level, 0 to 9.
+	 */
+	int level() default Deflater.DEFAULT_COMPRESSION;
+
+}
@@ -0,0 +1,36 @@
+package com.dieselpoint.norm.serialize;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time counts for one compressed column. Values are counted each time
+ * they're encoded for a write, so a row written twice counts twice.
+ */
+public class CompressionStats {
+
+	public final long values;
+	public final long compressedValues;
+	public final long rawBytes;
+	public final long storedBytes;
+
+	CompressionStats(long values, long compressedValues, long rawBytes, long storedBytes) {
+		this.values = values;
+		this.compressedValues = compressedValues;
+		this.rawBytes = rawBytes;
+		this.storedBytes = storedBytes;
+	}
+
+	/**
+	 * Returns how many times smaller the values are as stored, or 1 if nothing
+	 * has been written.
+	 */
+	public double getRatio() {
+		return storedBytes == 0 ? 1 : (double) rawBytes / storedBytes;
+	}
+
+	public String toString() {
+		return "values=" + values + " compressed=" + compressedValues + " raw=" + rawBytes + " stored=" + storedBytes
+				+ " ratio=" + String.format(Locale.ROOT, "%.2f", getRatio());
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.dieselpoint.norm.serialize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serializes a class to and from bytes, for large values that shouldn't be
+ * built as a String and bound as text. The bytes are bound as binary, and read
+ * back from whatever the driver returns for the column: a byte[], Blob,
+ * ByteBuffer or InputStream. Implementations must have a zero-arg constructor
+ * and must be thread-safe.
+ */
+public interface DbBinarySerializable {
+
+	public void serialize(Object in, OutputStream out) throws IOException;
+	public Object deserialize(InputStream in, Class<?> targetClass) throws IOException;
+
+}
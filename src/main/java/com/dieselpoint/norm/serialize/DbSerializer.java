@@ -6,9 +6,18 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * The value is a DbSerializable or a DbBinarySerializable.
+ */
 @Target({ElementType.METHOD,ElementType.FIELD})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface DbSerializer {
-	Class<? extends DbSerializable> value();
+	Class<?> value();
+
+	/**
+	 * Compress the serialized values, as if the property were also annotated
+	 * with {@link Compressed} with its defaults.
+	 */
+	boolean compressed() default false;
 }
@@ -0,0 +1,50 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.bulk.H2CsvLoader;
+
+public class H2Maker extends StandardSqlMaker {
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+
+		// merge into table (a,b,c) key (a) values (?,?,?)
+
+		if (!hasSuppliedKeys(pojoInfo)) {
+			return;
+		}
+
+		pojoInfo.upsertSql = "merge into %s (" + Util.join(pojoInfo.insertColumnNames) + ") key ("
+				+ Util.join(pojoInfo.primaryKeyNames) + ") values (" + Util.getQuestionMarks(pojoInfo.insertSqlArgCount)
+				+ ")";
+		pojoInfo.upsertSqlArgCount = pojoInfo.insertSqlArgCount;
+	}
+
+	/**
+	 * H2's version of "returning": select from the rows the statement wrote.
+	 */
+	@Override
+	public String getReturningSql(String sql, String[] columnNames) {
+		if (columnNames.length == 0) {
+			return null;
+		}
+		return "select " + Util.join(columnNames) + " from final table (" + sql + ")";
+	}
+
+	@Override
+	public boolean supportsMultiRowInsert() {
+		return true;
+	}
+
+	@Override
+	public BulkLoader getBulkLoader() {
+		return new H2CsvLoader();
+	}
+
+}
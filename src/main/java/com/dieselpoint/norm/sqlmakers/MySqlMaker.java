@@ -1,58 +1,119 @@
 package com.dieselpoint.norm.sqlmakers;
 
-import com.dieselpoint.norm.Query;
-
-import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.bulk.MySqlLoadDataLoader;
 
 public class MySqlMaker extends StandardSqlMaker {
 
-	@Override
-	public String getUpsertSql(Query query, Object row) {
-		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
-		return String.format(pojoInfo.upsertSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
-	}
+	private static final Pattern VERSION = Pattern.compile("(\\d+)\\.(\\d+)\\.(\\d+)");
 
-	@Override
-	public Object[] getUpsertArgs(Query query, Object row) {
+	private final boolean rowAlias;
 
-		// same args as insert, but we need to duplicate the values
-		Object [] args = super.getInsertArgs(query, row);
+	/**
+	 * Upserts use "col=VALUES(col)", which works on every version of MySql and
+	 * MariaDB.
+	 */
+	public MySqlMaker() {
+		this.rowAlias = false;
+	}
 
-		int count = args.length;
+	/**
+	 * Upserts use the row alias form, "as new ... col=new.col", on MySql 8.0.19
+	 * and later, where VALUES() is deprecated, and "col=VALUES(col)" before that
+	 * and on MariaDB.
+	 * 
+	 * @param serverVersion as returned by
+	 *                      DatabaseMetaData.getDatabaseProductVersion(), for
+	 *                      example "8.0.35" or "10.6.12-MariaDB"
+	 */
+	public MySqlMaker(String serverVersion) {
+		this.rowAlias = supportsRowAlias(serverVersion);
+	}
 
-		Object [] upsertArgs = new Object[count * 2];
-		System.arraycopy(args, 0, upsertArgs, 0, count);
-		System.arraycopy(args, 0, upsertArgs, count, count);
+	@Override
+	public BulkLoader getBulkLoader() {
+		return new MySqlLoadDataLoader(this);
+	}
 
-		return upsertArgs;
+	/**
+	 * Connector/J streams a result set one row at a time only for this value,
+	 * unless the connection has useCursorFetch=true.
+	 */
+	@Override
+	public int getStreamingFetchSize() {
+		return Integer.MIN_VALUE;
 	}
 
+	static boolean supportsRowAlias(String serverVersion) {
+		if (serverVersion == null || serverVersion.contains("MariaDB")) {
+			return false;
+		}
+		Matcher m = VERSION.matcher(serverVersion);
+		if (!m.find()) {
+			return false;
+		}
+		int major = Integer.parseInt(m.group(1));
+		int minor = Integer.parseInt(m.group(2));
+		int patch = Integer.parseInt(m.group(3));
+		if (major != 8) {
+			return major > 8;
+		}
+		return minor > 0 || patch >= 19;
+	}
+
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
 
 	@Override
 	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
 
-		// INSERT INTO table (a,b,c) VALUES (1,2,3) ON DUPLICATE KEY UPDATE c=c+1;
+		// insert into table (a,b,c) values (?,?,?) on duplicate key update b=values(b),c=values(c)
+		// or, with a row alias: ... values (?,?,?) as new on duplicate key update b=new.b,c=new.c
 
-		// mostly the same as the makeInsertSql code
-		// it uses the same column names and argcount
+		// the args are the same as for insert, each value is sent once
 
 		StringBuilder buf = new StringBuilder();
 		buf.append(pojoInfo.insertSql);
+		if (rowAlias) {
+			buf.append(" as new");
+		}
 		buf.append(" on duplicate key update ");
 
 		boolean first = true;
 		for (String colName: pojoInfo.insertColumnNames) {
+			if (pojoInfo.primaryKeyNames.contains(colName)) {
+				// it matched, so the key is already the same
+				continue;
+			}
 			if (first) {
 				first = false;
 			} else {
 				buf.append(',');
 			}
 			buf.append(colName);
-			buf.append("=?");
+			if (rowAlias) {
+				buf.append("=new.").append(colName);
+			} else {
+				buf.append("=values(").append(colName).append(')');
+			}
+		}
+
+		if (first) {
+			// nothing but keys. MySql needs something to update, so make it a no-op
+			if (pojoInfo.primaryKeyNames.isEmpty()) {
+				return;
+			}
+			String key = pojoInfo.primaryKeyNames.get(0);
+			buf.append(key).append('=').append(key);
 		}
 
 		pojoInfo.upsertSql = buf.toString();
+		pojoInfo.upsertSqlArgCount = pojoInfo.insertSqlArgCount;
 	}
 
 	@Override
@@ -1,9 +1,75 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
 import javax.persistence.Column;
+import javax.persistence.EnumType;
+
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.Util;
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.bulk.PostgresCopyLoader;
+import com.dieselpoint.norm.converter.SimpleArray;
 
 public class PostgresMaker extends StandardSqlMaker {
 
+	// the Postgres types of arrays that hold property values, by property type
+	private static final Map<Class<?>, String> ARRAY_TYPES = new HashMap<>();
+	static {
+		ARRAY_TYPES.put(String.class, "text");
+		ARRAY_TYPES.put(int.class, "int4");
+		ARRAY_TYPES.put(Integer.class, "int4");
+		ARRAY_TYPES.put(long.class, "int8");
+		ARRAY_TYPES.put(Long.class, "int8");
+		ARRAY_TYPES.put(short.class, "int2");
+		ARRAY_TYPES.put(Short.class, "int2");
+		ARRAY_TYPES.put(double.class, "float8");
+		ARRAY_TYPES.put(Double.class, "float8");
+		ARRAY_TYPES.put(float.class, "float4");
+		ARRAY_TYPES.put(Float.class, "float4");
+		ARRAY_TYPES.put(boolean.class, "bool");
+		ARRAY_TYPES.put(Boolean.class, "bool");
+		ARRAY_TYPES.put(BigDecimal.class, "numeric");
+		ARRAY_TYPES.put(UUID.class, "uuid");
+		ARRAY_TYPES.put(java.util.Date.class, "timestamp");
+		ARRAY_TYPES.put(Timestamp.class, "timestamp");
+		ARRAY_TYPES.put(LocalDateTime.class, "timestamp");
+		ARRAY_TYPES.put(java.sql.Date.class, "date");
+		ARRAY_TYPES.put(LocalDate.class, "date");
+	}
+
+	private boolean arrayBatches;
+
+	/**
+	 * Set whether insertAll(), upsertAll() and updateAll() send each batch as one
+	 * statement that binds an array per column and unnest()s them, instead of a
+	 * JDBC batch of one statement per row. The array form takes as many
+	 * parameters as the table has columns, however many rows there are, so Postgres
+	 * parses and plans it once per batch. Off by default. Classes with a column
+	 * type that has no array mapping, such as one with an AttributeConverter,
+	 * always use JDBC batches, and so do upsertAll() and updateAll() of rows that
+	 * repeat a key.
+	 * <p>
+	 * String fields are sent as text[], so turn this on only if they all go to
+	 * text or varchar columns. A String bound alone is untyped under
+	 * stringtype=unspecified and Postgres casts it to the column's type, but the
+	 * elements of a text[] stay text, so inserting them into a jsonb, enum or
+	 * uuid column fails.
+	 */
+	public void setArrayBatches(boolean arrayBatches) {
+		this.arrayBatches = arrayBatches;
+	}
+
 	@Override
 	public String getCreateTableSql(Class<?> clazz) {
 		
@@ -76,5 +142,218 @@ public class PostgresMaker extends StandardSqlMaker {
 		return buf.toString();
 	}
 
+	@Override
+	public boolean supportsUpsert() {
+		return true;
+	}
+
+	@Override
+	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
+
+		// insert into table (a,b,c) values (?,?,?) on conflict (a) do update set b=excluded.b,c=excluded.c
+
+		String onConflict = getOnConflictClause(pojoInfo);
+		if (onConflict == null) {
+			return;
+		}
+
+		pojoInfo.upsertSql = pojoInfo.insertSql + onConflict;
+		pojoInfo.upsertSqlArgCount = pojoInfo.insertSqlArgCount;
+	}
+
+	/**
+	 * Returns the clause that turns an insert of pojoInfo.insertColumnNames into
+	 * an upsert, " on conflict (a) do update set b=excluded.b,c=excluded.c", or
+	 * null if the keys aren't among the inserted columns.
+	 */
+	protected String getOnConflictClause(StandardPojoInfo pojoInfo) {
+		if (!hasSuppliedKeys(pojoInfo)) {
+			return null;
+		}
+
+		StringBuilder buf = new StringBuilder();
+		buf.append(" on conflict (");
+		buf.append(Util.join(pojoInfo.primaryKeyNames));
+		buf.append(")");
+
+		boolean first = true;
+		for (String colName : pojoInfo.insertColumnNames) {
+			if (pojoInfo.primaryKeyNames.contains(colName)) {
+				continue;
+			}
+			buf.append(first ? " do update set " : ",");
+			first = false;
+			buf.append(colName).append("=excluded.").append(colName);
+		}
+		if (first) {
+			// nothing but keys, so there's nothing to update
+			buf.append(" do nothing");
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public String getArrayInsertSql(Query query, Object row, boolean upsert) {
+
+		// insert into table (a,b) select * from unnest(?::int8[],?::text[])
+
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		String unnest = getUnnest(pojoInfo, pojoInfo.insertColumnNames);
+		if (unnest == null) {
+			return null;
+		}
+
+		String onConflict = "";
+		if (upsert) {
+			onConflict = getOnConflictClause(pojoInfo);
+			if (onConflict == null) {
+				return null;
+			}
+		}
+
+		String table = Objects.requireNonNullElse(query.getTable(), pojoInfo.table);
+		return "insert into " + table + " (" + Util.join(pojoInfo.insertColumnNames) + ") select * from " + unnest
+				+ onConflict;
+	}
+
+	@Override
+	public String getArrayUpdateSql(Query query, Object row) {
+
+		// update table set a=u.a,b=u.b from unnest(?::int4[],?::text[],?::int8[]) as u(a,b,id) where table.id=u.id
+
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.primaryKeyNames.isEmpty() || pojoInfo.updateColumnNames.length == 0) {
+			return null;
+		}
+		String[] cols = getArrayColumnNames(pojoInfo, true);
+		String unnest = getUnnest(pojoInfo, cols);
+		if (unnest == null) {
+			return null;
+		}
+
+		String table = Objects.requireNonNullElse(query.getTable(), pojoInfo.table);
+		StringBuilder buf = new StringBuilder();
+		buf.append("update ").append(table).append(" set ");
+		for (int i = 0; i < pojoInfo.updateColumnNames.length; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(pojoInfo.updateColumnNames[i]).append("=u.").append(pojoInfo.updateColumnNames[i]);
+		}
+		buf.append(" from ").append(unnest).append(" as u(").append(Util.join(cols)).append(") where ");
+		for (int i = 0; i < pojoInfo.primaryKeyNames.size(); i++) {
+			if (i > 0) {
+				buf.append(" and ");
+			}
+			String key = pojoInfo.primaryKeyNames.get(i);
+			buf.append(table).append('.').append(key).append("=u.").append(key);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns "unnest(?::int8[],?::text[])" for the columns, or null if arrays are
+	 * off or a column has no array type.
+	 */
+	private String getUnnest(StandardPojoInfo pojoInfo, String[] cols) {
+		if (!arrayBatches || cols.length == 0) {
+			return null;
+		}
+		StringBuilder buf = new StringBuilder("unnest(");
+		for (int i = 0; i < cols.length; i++) {
+			String type = getArrayElementType(pojoInfo.getProperty(cols[i]));
+			if (type == null) {
+				return null;
+			}
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(getArrayParameter(type));
+		}
+		return buf.append(')').toString();
+	}
+
+	/**
+	 * Returns a parameter cast to an array of the type.
+	 */
+	protected String getArrayParameter(String elementType) {
+		return "?::" + elementType + "[]";
+	}
+
+	@Override
+	protected String getArrayElementType(Property prop) {
+		if (prop == null || prop.converter != null) {
+			// a converter's database type isn't known until it has converted a value
+			return null;
+		}
+		if (prop.compressor != null || prop.binarySerializer != null) {
+			return "bytea";
+		}
+		if (prop.serializer != null) {
+			return "text";
+		}
+		if (prop.isEnumField) {
+			return prop.enumType == EnumType.ORDINAL ? "int4" : "text";
+		}
+		return ARRAY_TYPES.get(prop.dataType);
+	}
+
+	/**
+	 * pgjdbc binds int[], long[], double[] and String[] itself, as int4[],
+	 * int8[], float8[] and text[], without boxing the elements, so those go to
+	 * it as they are.
+	 */
+	@Override
+	public Object toSqlArray(Connection con, SimpleArray array) throws SQLException {
+		Object elements = array.getArray();
+		if (!(elements instanceof Object[]) || elements instanceof String[]) {
+			return elements;
+		}
+		if (array.getBaseTypeName() == null) {
+			return array;
+		}
+		return con.createArrayOf(array.getBaseTypeName().toLowerCase(Locale.ROOT), (Object[]) elements);
+	}
+
+	@Override
+	public String getNextSequenceValueSql(String sequenceName) {
+		return "select nextval('" + sequenceName + "')";
+	}
+
+	@Override
+	public String getReturningSql(String sql, String[] columnNames) {
+		if (columnNames.length == 0) {
+			return null;
+		}
+		return sql + " returning " + Util.join(columnNames);
+	}
+
+	@Override
+	public boolean supportsMultiRowInsert() {
+		return true;
+	}
+
+	/**
+	 * The protocol sends the parameter count as a 16 bit number. Newer drivers
+	 * read it as unsigned, but older ones stop at 32767.
+	 */
+	@Override
+	public int getMaxParameters() {
+		return 32767;
+	}
+
+	@Override
+	public BulkLoader getBulkLoader() {
+		return new PostgresCopyLoader(this);
+	}
+
+	@Override
+	public String getExplainSql(String sql) {
+		if (!isExplainable(sql)) {
+			return null;
+		}
+		return "explain (format json) " + sql;
+	}
+
 
 }
@@ -7,6 +7,8 @@ import javax.persistence.AttributeConverter;
 import javax.persistence.Column;
 import javax.persistence.EnumType;
 
+import com.dieselpoint.norm.serialize.ColumnCompressor;
+import com.dieselpoint.norm.serialize.DbBinarySerializable;
 import com.dieselpoint.norm.serialize.DbSerializable;
 
 @SuppressWarnings("rawtypes")
@@ -19,9 +21,14 @@ public class Property {
 	public boolean isGenerated;
 	public boolean isPrimaryKey;
 	public boolean isEnumField;
+	public boolean isRelation;
+	// set if an IdGenerator assigns the value before insert
+	public String idGenerator;
 	public Class<Enum> enumClass;
 	public EnumType enumType;
 	public Column columnAnnotation;
 	public DbSerializable serializer;
+	public DbBinarySerializable binarySerializer;
+	public ColumnCompressor compressor;
 	public AttributeConverter converter;
 }
@@ -1,6 +1,12 @@
 package com.dieselpoint.norm.sqlmakers;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.bulk.BulkLoader;
+import com.dieselpoint.norm.bulk.JdbcBatchLoader;
+import com.dieselpoint.norm.converter.SimpleArray;
 
 public interface SqlMaker {
 
@@ -29,4 +35,63 @@ public interface SqlMaker {
 
 	public Object convertValue(Object value, String columnTypeName);
 
+	/**
+	 * Returns the statement that asks the database for the execution plan of the
+	 * given sql, or null if plans are not supported for it. The plan statement
+	 * takes the same parameters as the original, and must not execute it.
+	 */
+	public default String getExplainSql(String sql) {
+		return null;
+	}
+
+	/**
+	 * Returns the sql with a clause added that makes an insert or update return
+	 * the given columns of the rows it wrote as an ordinary result set, or null
+	 * if the database can't do that. Null means generated keys are read with
+	 * Statement.RETURN_GENERATED_KEYS instead.
+	 */
+	public default String getReturningSql(String sql, String[] columnNames) {
+		return null;
+	}
+
+	/**
+	 * Returns a select of the next value of a sequence. This is the SQL standard
+	 * form, which H2, MariaDB and SQL Server take.
+	 */
+	public default String getNextSequenceValueSql(String sequenceName) {
+		return "select next value for " + sequenceName;
+	}
+
+	/**
+	 * Returns the loader Query.bulkLoad() writes rows with. The default sends
+	 * JDBC batches; makers for databases with a native bulk path return a loader
+	 * that uses it.
+	 */
+	public default BulkLoader getBulkLoader() {
+		return new JdbcBatchLoader(this);
+	}
+
+	/**
+	 * Returns the fetch size that makes the driver stream a result set instead of
+	 * reading all of it into memory first. Query.exportTo() uses it.
+	 */
+	public default int getStreamingFetchSize() {
+		return 1000;
+	}
+
+	/**
+	 * Returns what to bind for a SimpleArray parameter, such as the ones the
+	 * array converters write. The default makes the driver's own array with
+	 * createArrayOf(), which needs the elements boxed; makers for drivers that
+	 * take Java arrays of primitives directly pass them through. An array of a
+	 * driver's own type code has no type name to create one with, so it goes to
+	 * the driver as it is.
+	 */
+	public default Object toSqlArray(Connection con, SimpleArray array) throws SQLException {
+		if (array.getBaseTypeName() == null) {
+			return array;
+		}
+		return con.createArrayOf(array.getBaseTypeName(), array.toObjectArray());
+	}
+
 }
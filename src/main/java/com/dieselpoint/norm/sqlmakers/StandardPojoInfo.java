@@ -4,16 +4,27 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Column;
@@ -22,11 +33,18 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
 import com.dieselpoint.norm.ColumnOrder;
 import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.idgen.ClientGenerated;
+import com.dieselpoint.norm.serialize.ColumnCompressor;
+import com.dieselpoint.norm.serialize.Compressed;
+import com.dieselpoint.norm.serialize.CompressionStats;
+import com.dieselpoint.norm.serialize.DbBinarySerializable;
+import com.dieselpoint.norm.serialize.DbSerializable;
 import com.dieselpoint.norm.serialize.DbSerializer;
 
 /**
@@ -37,15 +55,27 @@ public class StandardPojoInfo implements PojoInfo {
 
 	/*
 	 * annotations recognized: @ Id, @ GeneratedValue @ Transient @ Table @ Column @
-	 * DbSerializer @ Enumerated
+	 * DbSerializer @ Enumerated @ OneToMany
 	 */
 
 	// these are public to make subclassing easier
 	public Map<String, Property> propertyMap = new LinkedHashMap<>();
+
+	/*
+	 * @OneToMany collections. They aren't columns, so they stay out of
+	 * propertyMap, but getValue() and putValue() can reach them.
+	 */
+	public Map<String, Property> relationMap = new LinkedHashMap<>();
 	public String table;
 	public List<String> primaryKeyNames = new ArrayList<>();
 	public String[] generatedColumnNames = new String[0];
 
+	/*
+	 * Properties whose ids are assigned by an IdGenerator before insert. To the
+	 * database they're ordinary columns.
+	 */
+	public List<Property> assignedIdProperties = new ArrayList<>();
+
 	public String insertSql;
 	public int insertSqlArgCount;
 	public String[] insertColumnNames;
@@ -58,6 +88,12 @@ public class StandardPojoInfo implements PojoInfo {
 	public String[] updateColumnNames;
 	public int updateSqlArgCount;
 
+	/*
+	 * Updates of only some columns, for change tracking. Keyed by the indexes
+	 * into updateColumnNames that they set.
+	 */
+	public Map<BitSet, String> partialUpdateSql = new ConcurrentHashMap<>();
+
 	public String selectColumns;
 
 	public StandardPojoInfo(Class<?> clazz) {
@@ -69,6 +105,13 @@ public class StandardPojoInfo implements PojoInfo {
 			} else {
 				List<Property> props = populateProperties(clazz);
 
+				for (Property prop : props) {
+					if (prop.isRelation) {
+						relationMap.put(prop.name, prop);
+					}
+				}
+				props.removeIf(prop -> prop.isRelation);
+
 				ColumnOrder colOrder = clazz.getAnnotation(ColumnOrder.class);
 				if (colOrder != null) {
 					// reorder the properties
@@ -105,6 +148,12 @@ public class StandardPojoInfo implements PojoInfo {
 				table = clazz.getSimpleName();
 			}
 
+			for (Property prop : propertyMap.values()) {
+				if (prop.idGenerator != null) {
+					assignedIdProperties.add(prop);
+				}
+			}
+
 		} catch (Throwable t) {
 			throw new DbException(t);
 		}
@@ -198,8 +247,22 @@ public class StandardPojoInfo implements PojoInfo {
 			primaryKeyNames.add(prop.name);
 		}
 
-		if (ae.getAnnotation(GeneratedValue.class) != null) {
-			prop.isGenerated = true;
+		GeneratedValue generated = ae.getAnnotation(GeneratedValue.class);
+		if (generated != null) {
+			if (ae.getAnnotation(ClientGenerated.class) != null) {
+				String generator = generated.generator().trim();
+				if (generator.isEmpty()) {
+					throw new DbException("@ClientGenerated on " + prop.name
+							+ " needs the name of an id generator in @GeneratedValue(generator = \"name\")");
+				}
+				prop.idGenerator = generator;
+			} else {
+				prop.isGenerated = true;
+			}
+		}
+
+		if (ae.getAnnotation(OneToMany.class) != null) {
+			prop.isRelation = true;
 		}
 
 		if (prop.dataType.isEnum()) {
@@ -216,7 +279,15 @@ public class StandardPojoInfo implements PojoInfo {
 
 		DbSerializer sc = ae.getAnnotation(DbSerializer.class);
 		if (sc != null) {
-			prop.serializer = sc.value().newInstance();
+			Object serializer = sc.value().newInstance();
+			if (serializer instanceof DbBinarySerializable) {
+				prop.binarySerializer = (DbBinarySerializable) serializer;
+			} else if (serializer instanceof DbSerializable) {
+				prop.serializer = (DbSerializable) serializer;
+			} else {
+				throw new DbException("@DbSerializer on " + prop.name
+						+ " needs a DbSerializable or a DbBinarySerializable, not " + sc.value().getName());
+			}
 		}
 
 		Convert c = ae.getAnnotation(Convert.class);
@@ -224,13 +295,24 @@ public class StandardPojoInfo implements PojoInfo {
 			prop.converter = (AttributeConverter) c.converter().newInstance();
 		}
 
+		Compressed compressed = ae.getAnnotation(Compressed.class);
+		if (compressed != null) {
+			prop.compressor = new ColumnCompressor(compressed.threshold(), compressed.level());
+		} else if (sc != null && sc.compressed()) {
+			prop.compressor = new ColumnCompressor(ColumnCompressor.DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+		}
+		if (prop.compressor != null && prop.serializer == null && prop.binarySerializer == null
+				&& prop.dataType != String.class && prop.dataType != byte[].class) {
+			throw new DbException("Only String, byte[] and @DbSerializer properties can be compressed: " + prop.name);
+		}
+
 	}
 
 	public Object getValue(Object pojo, String name) {
 
 		try {
 
-			Property prop = propertyMap.get(name);
+			Property prop = findProperty(name);
 			if (prop == null) {
 				throw new DbException("No such field: " + name);
 			}
@@ -248,6 +330,11 @@ public class StandardPojoInfo implements PojoInfo {
 				if (prop.serializer != null) {
 					value = prop.serializer.serialize(value);
 
+				} else if (prop.binarySerializer != null) {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					prop.binarySerializer.serialize(value, out);
+					value = out.toByteArray();
+
 				} else if (prop.converter != null) {
 					value = prop.converter.convertToDatabaseColumn(value);
 
@@ -270,13 +357,102 @@ public class StandardPojoInfo implements PojoInfo {
 		}
 	}
 
+	/**
+	 * Returns the value to send to the database: getValue(), compressed if the
+	 * column is. Only call it for values that are bound, as it counts toward the
+	 * column's compression stats. getValue() is the form to compare.
+	 */
+	public Object getBindValue(Object pojo, String name) {
+		Object value = getValue(pojo, name);
+		if (value == null) {
+			return null;
+		}
+		Property prop = findProperty(name);
+		if (prop.compressor == null) {
+			return value;
+		}
+		byte[] raw = value instanceof String ? ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+		return prop.compressor.compress(raw);
+	}
+
+	/**
+	 * Deserialize the value of a binary column, in whichever form the driver
+	 * returned it.
+	 */
+	private static Object deserialize(Property prop, Object value) {
+		try (InputStream in = toInputStream(prop, value)) {
+			return prop.binarySerializer.deserialize(in, prop.dataType);
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Decompress the value of a compressed column, and return it in the form
+	 * the rest of putValue() expects: a String for String properties and text
+	 * serializers, otherwise a byte[]. A String from the database is a row
+	 * written before the column was compressed, and is returned as it is.
+	 */
+	private static Object decompress(Property prop, Object value) {
+		if (value instanceof String) {
+			return value;
+		}
+		byte[] bytes;
+		try (InputStream in = toInputStream(prop, value)) {
+			bytes = prop.compressor.decompress(in.readAllBytes());
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+		if (prop.serializer != null || prop.dataType == String.class) {
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		return bytes;
+	}
+
+	private static InputStream toInputStream(Property prop, Object value) {
+		if (value instanceof byte[]) {
+			return new ByteArrayInputStream((byte[]) value);
+		}
+		if (value instanceof Blob) {
+			try {
+				return ((Blob) value).getBinaryStream();
+			} catch (SQLException e) {
+				throw new DbException(e);
+			}
+		}
+		if (value instanceof ByteBuffer) {
+			ByteBuffer buf = ((ByteBuffer) value).duplicate();
+			byte[] bytes = new byte[buf.remaining()];
+			buf.get(bytes);
+			return new ByteArrayInputStream(bytes);
+		}
+		if (value instanceof InputStream) {
+			return (InputStream) value;
+		}
+		throw new DbException("Can't read a " + value.getClass().getName() + " into " + prop.name
+				+ ", which needs binary values");
+	}
+
+	/**
+	 * Returns the compression stats of each compressed column, by column name.
+	 */
+	public Map<String, CompressionStats> getCompressionStats() {
+		Map<String, CompressionStats> out = new LinkedHashMap<>();
+		for (Property prop : propertyMap.values()) {
+			if (prop.compressor != null) {
+				out.put(prop.name, prop.compressor.getStats());
+			}
+		}
+		return out;
+	}
+
 	public void putValue(Object pojo, String name, Object value) {
 		putValue(pojo, name, value, false);
 	}
 
 	public void putValue(Object pojo, String name, Object value, boolean ignoreIfMissing) {
 
-		Property prop = propertyMap.get(name);
+		Property prop = findProperty(name);
 		if (prop == null) {
 			if (ignoreIfMissing) {
 				return;
@@ -285,9 +461,16 @@ public class StandardPojoInfo implements PojoInfo {
 		}
 
 		if (value != null) {
+			if (prop.compressor != null) {
+				value = decompress(prop, value);
+			}
+
 			if (prop.serializer != null) {
 				value = prop.serializer.deserialize((String) value, prop.dataType);
 
+			} else if (prop.binarySerializer != null) {
+				value = deserialize(prop, value);
+
 			} else if (prop.converter != null) {
 				value = prop.converter.convertToEntityAttribute(value);
 
@@ -330,6 +513,14 @@ public class StandardPojoInfo implements PojoInfo {
 
 	}
 
+	private Property findProperty(String name) {
+		Property prop = propertyMap.get(name);
+		if (prop == null) {
+			prop = relationMap.get(name);
+		}
+		return prop;
+	}
+
 	/**
 	 * Convert a string to an enum const of the appropriate class.
 	 */
@@ -1,7 +1,16 @@
 package com.dieselpoint.norm.sqlmakers;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -17,20 +26,32 @@ import com.dieselpoint.norm.Util;
  */
 public class StandardSqlMaker implements SqlMaker {
 
-	private static ConcurrentHashMap<Class<?>, StandardPojoInfo> map = new ConcurrentHashMap<>();
+	// per instance, because subclasses put their own flavor of sql in the
+	// StandardPojoInfo
+	private final ConcurrentHashMap<Class<?>, StandardPojoInfo> map = new ConcurrentHashMap<>();
 
-	public synchronized StandardPojoInfo getPojoInfo(Class<?> rowClass) {
-		StandardPojoInfo pi = map.get(rowClass);
-		if (pi == null) {
-			pi = new StandardPojoInfo(rowClass);
-			map.put(rowClass, pi);
+	// a class with many columns can in theory produce a very large number of
+	// partial updates; past this many, new ones are built each time
+	private static final int MAX_PARTIAL_UPDATES = 256;
 
-			makeInsertSql(pi);
-			makeUpsertSql(pi);
-			makeUpdateSql(pi);
-			makeSelectColumns(pi);
+	public StandardPojoInfo getPojoInfo(Class<?> rowClass) {
+		// called several times per statement from every thread, so no lock once
+		// the class has been seen
+		StandardPojoInfo pi = map.get(rowClass);
+		if (pi != null) {
+			return pi;
 		}
-		return pi;
+
+		pi = new StandardPojoInfo(rowClass);
+		makeInsertSql(pi);
+		makeUpsertSql(pi);
+		makeUpdateSql(pi);
+		makeSelectColumns(pi);
+
+		// publish only once it's complete. If another thread got there first, use
+		// theirs, so every caller sees the same instance.
+		StandardPojoInfo existing = map.putIfAbsent(rowClass, pi);
+		return existing != null ? existing : pi;
 	}
 
 	@Override
@@ -39,12 +60,149 @@ public class StandardSqlMaker implements SqlMaker {
 		return String.format(pojoInfo.insertSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
 	}
 
+	/**
+	 * Returns an insert of rowCount rows in one statement, "insert into t (a,b)
+	 * values (?,?),(?,?)". The args are those of each row in turn.
+	 */
+	public String getInsertSql(Query query, Object row, int rowCount) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		String values = "(" + Util.getQuestionMarks(pojoInfo.insertSqlArgCount) + ")";
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("insert into ").append(Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
+		buf.append(" (").append(Util.join(pojoInfo.insertColumnNames)).append(") values ");
+		for (int i = 0; i < rowCount; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(values);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns true if the database takes the multi-row insert of
+	 * getInsertSql(Query, Object, int). Batches of rows without generated keys are
+	 * then sent that way.
+	 */
+	public boolean supportsMultiRowInsert() {
+		return false;
+	}
+
+	/**
+	 * Returns true if makeUpsertSql() writes an upsert for rows whose keys it can
+	 * match on. Without one, getUpsertSql() says there's no upsert for this
+	 * database rather than that the row's keys are wrong.
+	 */
+	public boolean supportsUpsert() {
+		return false;
+	}
+
+	/**
+	 * The most parameters one statement may have. Multi-row inserts are split to
+	 * stay under it. This is low enough for every common database; subclasses
+	 * that know better can raise it.
+	 */
+	public int getMaxParameters() {
+		return 2000;
+	}
+
+	/**
+	 * Returns an insert, or upsert, of any number of rows that takes one array
+	 * parameter per column, holding the values of that column for all the rows.
+	 * Bind it with getArrayArgs(). Returns null if the database can't take rows
+	 * this way, or can't for this class, as here.
+	 */
+	public String getArrayInsertSql(Query query, Object row, boolean upsert) {
+		return null;
+	}
+
+	/**
+	 * Returns an update of any number of rows that takes one array parameter per
+	 * column, or null. See getArrayInsertSql().
+	 */
+	public String getArrayUpdateSql(Query query, Object row) {
+		return null;
+	}
+
+	/**
+	 * Returns the array parameters for getArrayInsertSql(), or for
+	 * getArrayUpdateSql() if update is true: one per column of insertColumnNames,
+	 * or of updateColumnNames and then primaryKeyNames.
+	 */
+	public Object[] getArrayArgs(Connection con, List<?> rows, boolean update) throws SQLException {
+		StandardPojoInfo pojoInfo = getPojoInfo(rows.get(0).getClass());
+		String[] cols = getArrayColumnNames(pojoInfo, update);
+
+		Object[] args = new Object[cols.length];
+		for (int i = 0; i < cols.length; i++) {
+			Object[] values = new Object[rows.size()];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = toArrayElement(pojoInfo.getBindValue(rows.get(j), cols[i]));
+			}
+			args[i] = con.createArrayOf(getArrayElementType(pojoInfo.getProperty(cols[i])), values);
+		}
+		return args;
+	}
+
+	/**
+	 * True if two of the rows have the same primary key. Array upserts and
+	 * updates can't take those: Postgres refuses to upsert one row twice in a
+	 * statement, and an update from unnest() applies one of the matches, not
+	 * the last. A JDBC batch applies the rows in order.
+	 */
+	public boolean hasRepeatedKeys(Collection<?> rows) {
+		StandardPojoInfo pojoInfo = getPojoInfo(rows.iterator().next().getClass());
+		Set<List<Object>> keys = new HashSet<>();
+		for (Object row : rows) {
+			List<Object> key = new ArrayList<>(pojoInfo.primaryKeyNames.size());
+			for (String keyName : pojoInfo.primaryKeyNames) {
+				key.add(pojoInfo.getBindValue(row, keyName));
+			}
+			if (!keys.add(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected String[] getArrayColumnNames(StandardPojoInfo pojoInfo, boolean update) {
+		if (!update) {
+			return pojoInfo.insertColumnNames;
+		}
+		String[] cols = Arrays.copyOf(pojoInfo.updateColumnNames,
+				pojoInfo.updateColumnNames.length + pojoInfo.primaryKeyNames.size());
+		for (int i = 0; i < pojoInfo.primaryKeyNames.size(); i++) {
+			cols[pojoInfo.updateColumnNames.length + i] = pojoInfo.primaryKeyNames.get(i);
+		}
+		return cols;
+	}
+
+	/**
+	 * Returns the database's name for the type of the array that holds the
+	 * property's values, or null if there isn't one.
+	 */
+	protected String getArrayElementType(Property prop) {
+		return null;
+	}
+
+	/**
+	 * Returns the value in a form the driver can put in an array.
+	 */
+	protected Object toArrayElement(Object value) {
+		if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+				&& !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+			return new Timestamp(((java.util.Date) value).getTime());
+		}
+		return value;
+	}
+
 	@Override
 	public Object[] getInsertArgs(Query query, Object row) {
 		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
 		Object[] args = new Object[pojoInfo.insertSqlArgCount];
 		for (int i = 0; i < pojoInfo.insertSqlArgCount; i++) {
-			args[i] = pojoInfo.getValue(row, pojoInfo.insertColumnNames[i]);
+			args[i] = pojoInfo.getBindValue(row, pojoInfo.insertColumnNames[i]);
 		}
 		return args;
 	}
@@ -66,7 +224,7 @@ public class StandardSqlMaker implements SqlMaker {
 
 		Object[] args = new Object[pojoInfo.updateSqlArgCount];
 		for (int i = 0; i < pojoInfo.updateSqlArgCount - numKeys; i++) {
-			args[i] = pojoInfo.getValue(row, pojoInfo.updateColumnNames[i]);
+			args[i] = pojoInfo.getBindValue(row, pojoInfo.updateColumnNames[i]);
 		}
 		// add the value for the where clause to the end
 		for (int i = 0; i < numKeys; i++) {
@@ -76,6 +234,67 @@ public class StandardSqlMaker implements SqlMaker {
 		return args;
 	}
 
+	/**
+	 * Returns an update of only some columns. The bits in columns are indexes
+	 * into pojoInfo.updateColumnNames. The sql is built once per combination of
+	 * columns and cached.
+	 */
+	public String getUpdateSql(Query query, Object row, BitSet columns) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.primaryKeyNames.size() == 0) {
+			throw new DbException("No primary keys specified in the row. Use the @Id annotation.");
+		}
+		String sql = pojoInfo.partialUpdateSql.get(columns);
+		if (sql == null) {
+			sql = makePartialUpdateSql(pojoInfo, columns);
+			if (pojoInfo.partialUpdateSql.size() < MAX_PARTIAL_UPDATES) {
+				pojoInfo.partialUpdateSql.put((BitSet) columns.clone(), sql);
+			}
+		}
+		return String.format(sql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
+	}
+
+	/**
+	 * Returns the args for {@link #getUpdateSql(Query, Object, BitSet)}.
+	 */
+	public Object[] getUpdateArgs(Query query, Object row, BitSet columns) {
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+
+		int numKeys = pojoInfo.primaryKeyNames.size();
+		Object[] args = new Object[columns.cardinality() + numKeys];
+		int arg = 0;
+		for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+			args[arg++] = pojoInfo.getBindValue(row, pojoInfo.updateColumnNames[i]);
+		}
+		for (int i = 0; i < numKeys; i++) {
+			args[arg++] = pojoInfo.getValue(row, pojoInfo.primaryKeyNames.get(i));
+		}
+		return args;
+	}
+
+	protected String makePartialUpdateSql(StandardPojoInfo pojoInfo, BitSet columns) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("update %s set ");
+
+		boolean first = true;
+		for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+			if (!first) {
+				buf.append(',');
+			}
+			first = false;
+			buf.append(pojoInfo.updateColumnNames[i]).append("=?");
+		}
+		buf.append(" where ");
+
+		for (int i = 0; i < pojoInfo.primaryKeyNames.size(); i++) {
+			if (i > 0) {
+				buf.append(" and ");
+			}
+			buf.append(pojoInfo.primaryKeyNames.get(i)).append("=?");
+		}
+		return buf.toString();
+	}
+
 	public void makeUpdateSql(StandardPojoInfo pojoInfo) {
 
 		ArrayList<String> cols = new ArrayList<>();
@@ -134,9 +353,24 @@ public class StandardSqlMaker implements SqlMaker {
 				") values (" + Util.getQuestionMarks(pojoInfo.insertSqlArgCount) + ")";
 	}
 
+	/**
+	 * There's no standard upsert. Subclasses that have one set
+	 * pojoInfo.upsertSql and upsertSqlArgCount here.
+	 */
 	public void makeUpsertSql(StandardPojoInfo pojoInfo) {
 	}
 
+	/**
+	 * True if the row has primary keys and they are all in the insert, which an
+	 * upsert needs to match on them.
+	 */
+	protected boolean hasSuppliedKeys(StandardPojoInfo pojoInfo) {
+		if (pojoInfo.primaryKeyNames.isEmpty()) {
+			return false;
+		}
+		return Arrays.asList(pojoInfo.insertColumnNames).containsAll(pojoInfo.primaryKeyNames);
+	}
+
 	private void makeSelectColumns(StandardPojoInfo pojoInfo) {
 		if (pojoInfo.propertyMap.isEmpty()) {
 			// this applies if the rowClass is a Map
@@ -312,6 +546,40 @@ public class StandardSqlMaker implements SqlMaker {
 		return value;
 	}
 
+	/**
+	 * Plain "explain", which works for MySql and H2. Only select, insert, update,
+	 * delete, merge and with statements are explained.
+	 */
+	@Override
+	public String getExplainSql(String sql) {
+		if (!isExplainable(sql)) {
+			return null;
+		}
+		return "explain " + sql;
+	}
+
+	protected boolean isExplainable(String sql) {
+		if (sql == null) {
+			return false;
+		}
+		String start = sql.stripLeading();
+		int end = 0;
+		while (end < start.length() && Character.isLetter(start.charAt(end))) {
+			end++;
+		}
+		switch (start.substring(0, end).toLowerCase()) {
+		case "select":
+		case "insert":
+		case "update":
+		case "delete":
+		case "merge":
+		case "with":
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	@Override
 	public String getDeleteSql(Query query, Object row) {
 
@@ -351,14 +619,28 @@ public class StandardSqlMaker implements SqlMaker {
 
 	@Override
 	public String getUpsertSql(Query query, Object row) {
-		String msg = "There's no standard upsert implemention. There is one in the MySql driver, though,"
-				+ "so if you're using MySql, call Database.setSqlMaker(new MySqlMaker()); Or roll your own.";
-		throw new UnsupportedOperationException(msg);
+		StandardPojoInfo pojoInfo = getPojoInfo(row.getClass());
+		if (pojoInfo.upsertSql == null) {
+			if (!supportsUpsert()) {
+				String msg = "There's no standard upsert implemention. Call Database.setSqlMaker() with a MySqlMaker, "
+						+ "PostgresMaker or H2Maker, or roll your own.";
+				throw new UnsupportedOperationException(msg);
+			}
+			throw new DbException("Upsert needs primary keys that the row supplies. Use the @Id annotation, "
+					+ "without @GeneratedValue.");
+		}
+		return String.format(pojoInfo.upsertSql, Objects.requireNonNullElse(query.getTable(), pojoInfo.table));
 	}
 
+	/**
+	 * The same args as insert, which is what both "on conflict" and "merge" take.
+	 */
 	@Override
 	public Object[] getUpsertArgs(Query query, Object row) {
-		throw new UnsupportedOperationException();
+		if (getPojoInfo(row.getClass()).upsertSql == null) {
+			throw new UnsupportedOperationException();
+		}
+		return getInsertArgs(query, row);
 	}
 
 }
\ No newline at end of file
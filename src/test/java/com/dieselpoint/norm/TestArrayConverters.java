@@ -0,0 +1,184 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Convert;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.converter.DoubleArrayConverter;
+import com.dieselpoint.norm.converter.DoubleArrayToBytesConverter;
+import com.dieselpoint.norm.converter.DoubleArrayToStringConverter;
+import com.dieselpoint.norm.converter.IntArrayConverter;
+import com.dieselpoint.norm.converter.IntArrayToBytesConverter;
+import com.dieselpoint.norm.converter.IntArrayToStringConverter;
+import com.dieselpoint.norm.converter.LongArrayConverter;
+import com.dieselpoint.norm.converter.LongArrayToBytesConverter;
+import com.dieselpoint.norm.converter.LongArrayToStringConverter;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.converter.StringArrayConverter;
+import com.dieselpoint.norm.converter.StringArrayToBytesConverter;
+
+public class TestArrayConverters {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:arrayconvertertest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists arrays").execute();
+		db.sql("create table arrays (id int primary key, ints int array, longs bigint array, "
+				+ "doubles double precision array, strings varchar array, "
+				+ "intText varchar(1000), longText varchar(1000), doubleText varchar(1000), "
+				+ "intBytes varbinary(1000), longBytes varbinary(1000), doubleBytes varbinary(1000), "
+				+ "stringBytes varbinary(1000))").execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void roundTrips() {
+		ArrayRow row = new ArrayRow();
+		row.id = 1;
+		row.ints = new int[] { 1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		row.longs = new long[] { 0, Long.MAX_VALUE, -5 };
+		row.doubles = new double[] { 1.5, -0.25, 1e300 };
+		row.strings = new String[] { "a", "b,c", null, "ünï" };
+		row.intText = row.ints;
+		row.longText = row.longs;
+		row.doubleText = row.doubles;
+		row.intBytes = row.ints;
+		row.longBytes = row.longs;
+		row.doubleBytes = row.doubles;
+		row.stringBytes = row.strings;
+		db.insert(row);
+
+		Map<?, ?> stored = db.sql("select intText, doubleText from arrays").first(HashMap.class);
+		assertEquals("1,-2,2147483647,-2147483648", stored.get("intText"));
+		assertEquals("1.5,-0.25,1.0E300", stored.get("doubleText"));
+
+		assertSame(row, db.where("id=?", 1).first(ArrayRow.class));
+
+		row.ints = new int[] { 7 };
+		row.strings = new String[0];
+		row.intText = new int[0];
+		row.stringBytes = new String[0];
+		db.update(row);
+		assertSame(row, db.where("id=?", 1).first(ArrayRow.class));
+	}
+
+	@Test
+	public void batches() {
+		List<ArrayRow> rows = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ArrayRow row = new ArrayRow();
+			row.id = i;
+			row.ints = new int[] { i, i };
+			rows.add(row);
+		}
+		db.insertAll(rows);
+		assertArrayEquals(new int[] { 2, 2 }, db.where("id=?", 2).first(ArrayRow.class).ints);
+	}
+
+	@Test
+	public void rejectsBadText() {
+		db.sql("insert into arrays (id, intText) values (1, '1,x')").execute();
+		try {
+			db.where("id=?", 1).first(ArrayRow.class);
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void longTextLimits() {
+		db.sql("insert into arrays (id, longText) values (1, ?)", "9223372036854775807,-9223372036854775808")
+				.execute();
+		assertArrayEquals(new long[] { Long.MAX_VALUE, Long.MIN_VALUE },
+				db.where("id=?", 1).first(ArrayRow.class).longText);
+
+		// one past each end
+		for (String text : new String[] { "9223372036854775808", "-9223372036854775809", "1,99999999999999999999" }) {
+			db.sql("delete from arrays").execute();
+			db.sql("insert into arrays (id, longText) values (1, ?)", text).execute();
+			try {
+				db.where("id=?", 1).first(ArrayRow.class);
+				fail(text);
+			} catch (DbException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void vendorTypeCodes() throws SQLException {
+		assertEquals("INTEGER", new SimpleArray(Types.INTEGER, new Integer[] { 1 }).getBaseTypeName());
+
+		// a code outside java.sql.Types, as drivers define for their own types
+		SimpleArray vendor = new SimpleArray(-101, new Object[] { 1 });
+		assertNull(vendor.getBaseTypeName());
+		assertEquals(-101, vendor.getBaseType());
+	}
+
+	private static void assertSame(ArrayRow want, ArrayRow got) {
+		assertArrayEquals(want.ints, got.ints);
+		assertArrayEquals(want.longs, got.longs);
+		assertArrayEquals(want.doubles, got.doubles, 0);
+		assertArrayEquals(want.strings, got.strings);
+		assertArrayEquals(want.intText, got.intText);
+		assertArrayEquals(want.longText, got.longText);
+		assertArrayEquals(want.doubleText, got.doubleText, 0);
+		assertArrayEquals(want.intBytes, got.intBytes);
+		assertArrayEquals(want.longBytes, got.longBytes);
+		assertArrayEquals(want.doubleBytes, got.doubleBytes, 0);
+		assertArrayEquals(want.stringBytes, got.stringBytes);
+	}
+
+	@Table(name = "arrays")
+	public static class ArrayRow {
+		@Id
+		public int id;
+		@Convert(converter = IntArrayConverter.class)
+		public int[] ints;
+		@Convert(converter = LongArrayConverter.class)
+		public long[] longs;
+		@Convert(converter = DoubleArrayConverter.class)
+		public double[] doubles;
+		@Convert(converter = StringArrayConverter.class)
+		public String[] strings;
+		@Convert(converter = IntArrayToStringConverter.class)
+		public int[] intText;
+		@Convert(converter = LongArrayToStringConverter.class)
+		public long[] longText;
+		@Convert(converter = DoubleArrayToStringConverter.class)
+		public double[] doubleText;
+		@Convert(converter = IntArrayToBytesConverter.class)
+		public int[] intBytes;
+		@Convert(converter = LongArrayToBytesConverter.class)
+		public long[] longBytes;
+		@Convert(converter = DoubleArrayToBytesConverter.class)
+		public double[] doubleBytes;
+		@Convert(converter = StringArrayToBytesConverter.class)
+		public String[] stringBytes;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.metrics.StatementSnapshot;
+
+public class TestBatchLoader {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:batchloadertest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists batchrow").execute();
+		db.sql("create table batchrow (id int primary key, name varchar(50))").execute();
+		for (int i = 0; i < 50; i++) {
+			BatchRow row = new BatchRow();
+			row.id = i;
+			row.name = "row" + i;
+			db.insert(row);
+		}
+		db.getMetrics().reset();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void coalescesKeysIntoOneQuery() {
+		try (BatchLoader<Integer, BatchRow> loader = db.batchLoader(BatchRow.class, 10000, 100)) {
+			CompletableFuture<BatchRow> a = loader.load(3);
+			CompletableFuture<BatchRow> b = loader.load(7);
+			CompletableFuture<BatchRow> again = loader.load(3);
+			CompletableFuture<BatchRow> missing = loader.load(999);
+			assertSame(a, again);
+			assertTrue(!a.isDone());
+
+			loader.flush();
+
+			assertEquals("row3", a.join().name);
+			assertEquals("row7", b.join().name);
+			assertNull(missing.join());
+		}
+		assertEquals(1, selectCount());
+	}
+
+	@Test
+	public void sendsFullBatchImmediately() {
+		try (BatchLoader<Integer, BatchRow> loader = db.batchLoader(BatchRow.class, 10000, 5)) {
+			List<CompletableFuture<BatchRow>> futures = new ArrayList<>();
+			for (int i = 0; i < 5; i++) {
+				futures.add(loader.load(i));
+			}
+			for (int i = 0; i < 5; i++) {
+				assertTrue(futures.get(i).isDone());
+				assertEquals(i, futures.get(i).join().id);
+			}
+		}
+		assertEquals(1, selectCount());
+	}
+
+	@Test
+	public void sendsAfterWindow() throws Exception {
+		try (BatchLoader<Long, BatchRow> loader = db.batchLoader(BatchRow.class, 5, 100)) {
+			// a Long key still matches the int column
+			assertEquals("row12", loader.load(12L).get().name);
+		}
+	}
+
+	@Test
+	public void batchesAcrossThreads() throws Exception {
+		int threads = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try (BatchLoader<Integer, BatchRow> loader = db.batchLoader(BatchRow.class, 50, 1000)) {
+			List<Future<BatchRow>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int id = t * 5;
+				results.add(pool.submit(() -> {
+					start.await();
+					return loader.load(id).join();
+				}));
+			}
+			start.countDown();
+			for (int t = 0; t < threads; t++) {
+				assertEquals(t * 5, results.get(t).get().id);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertTrue(selectCount() < threads);
+	}
+
+	@Test
+	public void failsEveryCallerInBatch() {
+		db.sql("drop table batchrow").execute();
+		try (BatchLoader<Integer, BatchRow> loader = db.batchLoader(BatchRow.class, 10000, 100)) {
+			CompletableFuture<BatchRow> a = loader.load(1);
+			CompletableFuture<BatchRow> b = loader.load(2);
+			loader.flush();
+			assertTrue(a.isCompletedExceptionally());
+			assertTrue(b.isCompletedExceptionally());
+		}
+	}
+
+	@Test
+	public void requiresSingleId() {
+		try {
+			db.batchLoader(NoIdRow.class, 1, 10);
+			fail();
+		} catch (DbException expected) {
+		}
+	}
+
+	private long selectCount() {
+		long count = 0;
+		for (StatementSnapshot s : db.getMetrics().snapshot().statements) {
+			if (s.fingerprint.startsWith("select")) {
+				count += s.getExecutions();
+			}
+		}
+		return count;
+	}
+
+	@Table(name = "batchrow")
+	public static class BatchRow {
+		@Id
+		public int id;
+		public String name;
+	}
+
+	@Table(name = "batchrow")
+	public static class NoIdRow {
+		public int id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.Convert;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.bulk.CsvRowStream;
+import com.dieselpoint.norm.converter.IntArrayConverter;
+import com.dieselpoint.norm.converter.IntArrayToListConverter;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+public class TestBulkLoad {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:bulkloadtest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.setSqlMaker(new H2Maker());
+		db.sql("drop table if exists bulk").execute();
+		db.sql("create table bulk (id int primary key, name varchar(50), amount double, due timestamp)").execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void encodesCsv() throws Exception {
+		BulkRow row = row(1);
+		row.name = "say \"hi\", then\nleave";
+		row.due = null;
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) db.getSqlMaker().getPojoInfo(BulkRow.class);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CsvRowStream csv = new CsvRowStream(pojoInfo, Arrays.asList(row, row(2)).iterator());
+		csv.transferTo(out);
+
+		assertEquals("\"1\",\"say \"\"hi\"\", then\nleave\",\"1.5\",NULL\n" //
+				+ "\"2\",\"row2\",\"3.0\",\"" + new java.sql.Timestamp(row(2).due.getTime()) + "\"\n",
+				out.toString(StandardCharsets.UTF_8));
+		assertEquals(2, csv.getRowCount());
+	}
+
+	@Test
+	public void loadsThroughCsvRead() {
+		BulkRow odd = row(0);
+		odd.name = "a \"quoted\", multi\nline name";
+		odd.due = null;
+
+		Iterable<BulkRow> rows = () -> rows(odd, 10_000);
+		assertEquals(10_001, db.bulkLoad(rows).getRowsAffected());
+
+		assertEquals(10_001L, db.sql("select count(*) from bulk").first(Long.class).longValue());
+		BulkRow back = db.where("id=?", 0).first(BulkRow.class);
+		assertEquals(odd.name, back.name);
+		assertNull(back.due);
+		BulkRow last = db.where("id=?", 10_000).first(BulkRow.class);
+		assertEquals(row(10_000).amount, last.amount, 0);
+		assertEquals(row(10_000).due, last.due);
+	}
+
+	@Test
+	public void emptyStringsStayEmpty() {
+		db.sql("drop table if exists named").execute();
+		db.sql("create table named (id int primary key, name varchar(50) not null)").execute();
+		NamedRow empty = new NamedRow();
+		empty.id = 1;
+		empty.name = "";
+		NamedRow word = new NamedRow();
+		word.id = 2;
+		word.name = "NULL";
+
+		assertEquals(2, db.bulkLoad(Arrays.asList(empty, word)).getRowsAffected());
+		assertEquals("", db.where("id=?", 1).first(NamedRow.class).name);
+		assertEquals("NULL", db.where("id=?", 2).first(NamedRow.class).name);
+	}
+
+	@Test
+	public void fallsBackToJdbcBatches() {
+		db.setSqlMaker(new StandardSqlMaker());
+		Iterable<BulkRow> rows = () -> rows(row(0), 2_499);
+		assertEquals(2_500, db.bulkLoad(rows).getRowsAffected());
+		assertEquals(2_500L, db.sql("select count(*) from bulk").first(Long.class).longValue());
+		assertEquals("row7", db.where("id=?", 7).first(BulkRow.class).name);
+	}
+
+	@Test
+	public void loadsArraysInJdbcBatches() {
+		createArrayTable();
+		db.setSqlMaker(new StandardSqlMaker());
+
+		assertEquals(2, db.bulkLoad(Arrays.asList(arrayRow(1), arrayRow(2))).getRowsAffected());
+		ArrayRow back = db.where("id=?", 2).first(ArrayRow.class);
+		assertArrayEquals(new int[] { 2, -2 }, back.ints);
+		assertEquals(Arrays.asList(2, 20), back.intList);
+	}
+
+	@Test
+	public void csvRejectsArrays() {
+		createArrayTable();
+		try {
+			db.bulkLoad(Arrays.asList(arrayRow(1)));
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage().startsWith("Array columns"));
+		}
+		assertEquals(0L, db.sql("select count(*) from arrays").first(Long.class).longValue());
+	}
+
+	@Test
+	public void failedLoadWritesNothing() {
+		List<Object> rows = Arrays.asList(row(1), row(2), "not a row");
+		try {
+			db.bulkLoad(rows);
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+		assertEquals(0L, db.sql("select count(*) from bulk").first(Long.class).longValue());
+	}
+
+	private void createArrayTable() {
+		db.sql("drop table if exists arrays").execute();
+		db.sql("create table arrays (id int primary key, ints int array, intList int array)").execute();
+	}
+
+	private static ArrayRow arrayRow(int id) {
+		ArrayRow row = new ArrayRow();
+		row.id = id;
+		row.ints = new int[] { id, -id };
+		row.intList = Arrays.asList(id, id * 10);
+		return row;
+	}
+
+	private static BulkRow row(int id) {
+		BulkRow row = new BulkRow();
+		row.id = id;
+		row.name = "row" + id;
+		row.amount = id * 1.5;
+		row.due = new Date(1_600_000_000_000L + id * 1000L);
+		return row;
+	}
+
+	/**
+	 * The first row, then rows 1 to count, made as they're asked for.
+	 */
+	private static Iterator<BulkRow> rows(BulkRow first, int count) {
+		return new Iterator<BulkRow>() {
+			int next = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+
+			@Override
+			public BulkRow next() {
+				return next++ < 0 ? first : row(next);
+			}
+		};
+	}
+
+	@Table(name = "bulk")
+	public static class BulkRow {
+		@Id
+		public int id;
+		public String name;
+		public double amount;
+		public Date due;
+	}
+
+	@Table(name = "named")
+	public static class NamedRow {
+		@Id
+		public int id;
+		public String name;
+	}
+
+	@Table(name = "arrays")
+	public static class ArrayRow {
+		@Id
+		public int id;
+		@Convert(converter = IntArrayConverter.class)
+		public int[] ints;
+		@Convert(converter = IntArrayToListConverter.class)
+		public List<Integer> intList;
+	}
+
+}
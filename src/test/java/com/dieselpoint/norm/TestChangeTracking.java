@@ -0,0 +1,141 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.metrics.StatementSnapshot;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+public class TestChangeTracking {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:changetrackingtest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists tracked").execute();
+		db.sql("create table tracked (id int primary key, name varchar(50), qty int, due timestamp)").execute();
+		for (int i = 1; i <= 3; i++) {
+			TrackedRow row = new TrackedRow();
+			row.id = i;
+			row.name = "row" + i;
+			row.qty = i * 10;
+			row.due = new Date(1_600_000_000_000L);
+			db.insert(row);
+		}
+		db.setTrackChanges(true);
+		db.getMetrics().reset();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void updatesOnlyChangedColumns() {
+		TrackedRow row = db.where("id=?", 1).first(TrackedRow.class);
+		row.qty = 11;
+		db.update(row);
+
+		assertEquals(Map.of("update tracked set qty=? where id=?", 1L), updates());
+		TrackedRow reloaded = db.where("id=?", 1).first(TrackedRow.class);
+		assertEquals("row1", reloaded.name);
+		assertEquals(11, reloaded.qty);
+	}
+
+	@Test
+	public void skipsUpdateWhenNothingChanged() {
+		TrackedRow row = db.where("id=?", 2).first(TrackedRow.class);
+		row.name = "row2";
+		assertEquals(0, db.update(row).getRowsAffected());
+		assertTrue(updates().isEmpty());
+	}
+
+	@Test
+	public void snapshotMovesForwardAfterUpdate() {
+		TrackedRow row = db.where("id=?", 1).first(TrackedRow.class);
+		row.name = "first";
+		db.update(row);
+		row.qty = 99;
+		db.update(row);
+		db.update(row);
+
+		assertEquals(Map.of("update tracked set name=? where id=?", 1L, "update tracked set qty=? where id=?", 1L),
+				updates());
+	}
+
+	@Test
+	public void seesDatesChangedInPlace() {
+		TrackedRow row = db.where("id=?", 3).first(TrackedRow.class);
+		row.due.setTime(row.due.getTime() + 1000);
+		db.update(row);
+		assertEquals(Map.of("update tracked set due=? where id=?", 1L), updates());
+	}
+
+	@Test
+	public void untrackedRowsUpdateEveryColumn() {
+		db.setTrackChanges(false);
+		TrackedRow row = db.where("id=?", 1).first(TrackedRow.class);
+		assertFalse(db.changeTracker.isTracked(row));
+		row.qty = 12;
+		db.update(row);
+
+		db.track(row);
+		row.name = "tracked";
+		db.update(row);
+
+		db.untrack(row);
+		db.update(row);
+
+		assertEquals(Map.of("update tracked set name=?,qty=?,due=? where id=?", 2L,
+				"update tracked set name=? where id=?", 1L), updates());
+	}
+
+	@Test
+	public void cachesSqlPerColumnSet() {
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) db.getSqlMaker().getPojoInfo(TrackedRow.class);
+		pojoInfo.partialUpdateSql.clear();
+		for (TrackedRow row : db.results(TrackedRow.class)) {
+			row.qty++;
+			db.update(row);
+		}
+		assertEquals(1, pojoInfo.partialUpdateSql.size());
+	}
+
+	/**
+	 * Returns the number of executions of each update statement.
+	 */
+	private Map<String, Long> updates() {
+		Map<String, Long> out = new HashMap<>();
+		for (StatementSnapshot s : db.getMetrics().snapshot().statements) {
+			if (s.fingerprint.startsWith("update")) {
+				out.put(s.fingerprint, s.getExecutions());
+			}
+		}
+		return out;
+	}
+
+	@Table(name = "tracked")
+	public static class TrackedRow {
+		@Id
+		public int id;
+		public String name;
+		public int qty;
+		public Date due;
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.serialize.ColumnCompressor;
+import com.dieselpoint.norm.serialize.Compressed;
+import com.dieselpoint.norm.serialize.CompressionStats;
+import com.dieselpoint.norm.serialize.DbSerializable;
+import com.dieselpoint.norm.serialize.DbSerializer;
+
+public class TestCompression {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:compressiontest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists docs").execute();
+		db.sql("create table docs (id int primary key, words varbinary(100000), note blob, data varbinary(100000))")
+				.execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void roundTrips() {
+		Doc doc = new Doc();
+		doc.id = 1;
+		doc.words = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			doc.words.add("word" + (i % 10));
+		}
+		doc.note = "short";
+		doc.data = new byte[5000];
+		db.insert(doc);
+
+		Map<?, ?> stored = db.sql("select words, data from docs where id=1").first(HashMap.class);
+		assertTrue(ColumnCompressor.isCompressed((byte[]) stored.get("words")));
+		assertTrue(((byte[]) stored.get("data")).length < 100);
+
+		Doc loaded = db.where("id=?", 1).first(Doc.class);
+		assertEquals(doc.words, loaded.words);
+		assertEquals("short", loaded.note);
+		assertArrayEquals(doc.data, loaded.data);
+
+		CompressionStats words = db.getCompressionStats(Doc.class).get("words");
+		assertEquals(1, words.values);
+		assertEquals(1, words.compressedValues);
+		assertTrue(words.toString(), words.getRatio() > 20);
+
+		// under the threshold, so stored as it is
+		CompressionStats note = db.getCompressionStats(Doc.class).get("note");
+		assertEquals(0, note.compressedValues);
+		assertEquals(1.0, note.getRatio(), 0);
+	}
+
+	@Test
+	public void readsUncompressedRows() {
+		// rows written before the columns were compressed
+		db.sql("insert into docs (id, words, note, data) values (?, ?, ?, ?)", 2,
+				"a,b,c".getBytes(StandardCharsets.UTF_8), "old note".getBytes(StandardCharsets.UTF_8),
+				new byte[] { 1, 2, 3 }).execute();
+
+		Doc loaded = db.where("id=?", 2).first(Doc.class);
+		assertEquals(Arrays.asList("a", "b", "c"), loaded.words);
+		assertEquals("old note", loaded.note);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, loaded.data);
+
+		db.sql("drop table if exists old_docs").execute();
+		db.sql("create table old_docs (id int primary key, note varchar(100))").execute();
+		db.sql("insert into old_docs values (1, 'text column')").execute();
+		assertEquals("text column", db.where("id=?", 1).first(OldDoc.class).note);
+	}
+
+	@Test
+	public void trackingDoesNotCompress() {
+		db.setTrackChanges(true);
+		for (int i = 10; i < 20; i++) {
+			Doc doc = new Doc();
+			doc.id = i;
+			doc.words = Arrays.asList("a", "b");
+			doc.note = "n";
+			doc.data = new byte[2000];
+			db.insert(doc);
+		}
+		long words = db.getCompressionStats(Doc.class).get("words").values;
+		long note = db.getCompressionStats(Doc.class).get("note").values;
+		long data = db.getCompressionStats(Doc.class).get("data").values;
+
+		// loading snapshots the rows, and an update with nothing changed compares
+		// them; neither sends a value, so neither counts
+		List<Doc> docs = db.where("id>=?", 10).orderBy("id").results(Doc.class);
+		assertEquals(10, docs.size());
+		for (Doc doc : docs) {
+			assertEquals(0, db.update(doc).getRowsAffected());
+		}
+		assertEquals(words, db.getCompressionStats(Doc.class).get("words").values);
+		assertEquals(note, db.getCompressionStats(Doc.class).get("note").values);
+		assertEquals(data, db.getCompressionStats(Doc.class).get("data").values);
+
+		// only the changed column is sent
+		docs.get(0).note = "changed";
+		db.update(docs.get(0));
+		assertEquals(words, db.getCompressionStats(Doc.class).get("words").values);
+		assertEquals(note + 1, db.getCompressionStats(Doc.class).get("note").values);
+		assertEquals(data, db.getCompressionStats(Doc.class).get("data").values);
+	}
+
+	@Test
+	public void valuesThatLookCompressed() {
+		ColumnCompressor compressor = new ColumnCompressor(1024, 6);
+
+		// short, but starts with the header, so it has to be compressed to be read back right
+		byte[] tricky = { 0x00, 'N', 'Z', 0x01, 0, 0, 0, 9, 42 };
+		byte[] stored = compressor.compress(tricky);
+		assertFalse(Arrays.equals(tricky, stored));
+		assertArrayEquals(tricky, compressor.decompress(stored));
+
+		// doesn't get smaller, so stored as it is
+		byte[] noise = new byte[4096];
+		new Random(1).nextBytes(noise);
+		assertArrayEquals(noise, compressor.compress(noise));
+		assertArrayEquals(noise, compressor.decompress(noise));
+
+		assertEquals(2, compressor.getStats().values);
+		assertEquals(1, compressor.getStats().compressedValues);
+	}
+
+	@Test(expected = DbException.class)
+	public void onlyBinaryFriendlyTypes() {
+		db.getSqlMaker().getPojoInfo(BadDoc.class);
+	}
+
+	@Table(name = "docs")
+	public static class Doc {
+		@Id
+		public int id;
+		@DbSerializer(value = CommaSerializer.class, compressed = true)
+		public List<String> words;
+		@Compressed(threshold = 64)
+		public String note;
+		@Compressed
+		public byte[] data;
+	}
+
+	@Table(name = "old_docs")
+	public static class OldDoc {
+		@Id
+		public int id;
+		@Compressed
+		public String note;
+	}
+
+	public static class BadDoc {
+		@Compressed
+		public int count;
+	}
+
+	public static class CommaSerializer implements DbSerializable {
+
+		@Override
+		public String serialize(Object in) {
+			return String.join(",", ((List<?>) in).toArray(new String[0]));
+		}
+
+		@Override
+		public Object deserialize(String in, Class<?> targetClass) {
+			return new ArrayList<>(Arrays.asList(in.split(",")));
+		}
+	}
+
+}
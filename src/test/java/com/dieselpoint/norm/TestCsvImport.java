@@ -0,0 +1,135 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.csv.CsvImportOptions;
+import com.dieselpoint.norm.csv.CsvImportProgress;
+
+public class TestCsvImport {
+
+	private Database db;
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:csvimporttest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists imported").execute();
+		db.sql("create table imported (id int primary key, name varchar(50), price decimal(10,2), "
+				+ "active boolean, status varchar(10), created timestamp)").execute();
+		file = Files.createTempFile("import", ".csv");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void importsThroughPropertyTypes() throws Exception {
+		write("ID,name,price,active,status,created,ignored\r\n" //
+				+ "1,\"Smith, \"\"Bob\"\"\",9.99,true,OPEN,2020-01-02 03:04:05,x\r\n" //
+				+ "2,,0.5,0,CLOSED,2020-01-02,y\r\n" //
+				+ "\r\n" //
+				+ "3,\"\",,yes,,,z\r\n");
+
+		assertEquals(3, db.importCsv(file, ImportRow.class));
+
+		ImportRow bob = db.where("id=?", 1).first(ImportRow.class);
+		assertEquals("Smith, \"Bob\"", bob.name);
+		assertEquals(new BigDecimal("9.99"), bob.price);
+		assertTrue(bob.active);
+		assertEquals(Status.OPEN, bob.status);
+		assertEquals(Timestamp.valueOf("2020-01-02 03:04:05").getTime(), bob.created.getTime());
+
+		ImportRow two = db.where("id=?", 2).first(ImportRow.class);
+		assertNull(two.name);
+		assertFalse(two.active);
+		assertEquals(Status.CLOSED, two.status);
+		assertEquals(Timestamp.valueOf("2020-01-02 00:00:00").getTime(), two.created.getTime());
+
+		ImportRow three = db.where("id=?", 3).first(ImportRow.class);
+		assertEquals("", three.name);
+		assertNull(three.price);
+		assertNull(three.status);
+	}
+
+	@Test
+	public void manyRowsOnSeveralWriters() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 10_000; i++) {
+			csv.append(i).append("|name ").append(i).append('|').append(i % 2 == 0).append('\n');
+		}
+		write(csv.toString());
+
+		List<CsvImportProgress> reports = Collections.synchronizedList(new ArrayList<>());
+		CsvImportOptions options = new CsvImportOptions().header(false).delimiter('|')
+				.columns("id", "name", "active").batchSize(500).writerThreads(3).progress(reports::add);
+
+		assertEquals(10_000, db.importCsv(file, ImportRow.class, options));
+		assertEquals(10_000L, db.sql("select count(*) from imported").first(Long.class).longValue());
+		assertEquals(5_000L, db.sql("select count(*) from imported where active").first(Long.class).longValue());
+
+		assertEquals(20, reports.size());
+		CsvImportProgress last = reports.get(reports.size() - 1);
+		assertEquals(10_000, last.getRowsWritten());
+		assertEquals(10_000, last.getRowsParsed());
+		assertEquals(Files.size(file), last.getTotalBytes());
+	}
+
+	@Test
+	public void reportsBadValues() throws Exception {
+		write("id,price\n1,1.00\n2,cheap\n");
+		try {
+			db.importCsv(file, ImportRow.class);
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("column price of record 3"));
+		}
+	}
+
+	private void write(String csv) throws Exception {
+		Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public enum Status {
+		OPEN, CLOSED
+	}
+
+	@Table(name = "imported")
+	public static class ImportRow {
+		@Id
+		public int id;
+		public String name;
+		public BigDecimal price;
+		public boolean active;
+		@Enumerated(EnumType.STRING)
+		public Status status;
+		public Date created;
+	}
+
+}
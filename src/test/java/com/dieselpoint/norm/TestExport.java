@@ -0,0 +1,167 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.export.ColumnarEncoder;
+import com.dieselpoint.norm.export.Format;
+
+public class TestExport {
+
+	private static final Timestamp WHEN = new Timestamp(1_600_000_000_000L);
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:exporttest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists export").execute();
+		db.sql("create table export (id int primary key, name varchar(50), amount double, flag boolean, "
+				+ "created timestamp, data varbinary(10))").execute();
+		db.sql("insert into export values (1, 'say \"hi\", then\nleave', 1.5, true, ?, X'0102')", WHEN).execute();
+		db.sql("insert into export values (2, '', null, false, null, null)").execute();
+		db.sql("insert into export values (3, null, -2.0, null, ?, null)", WHEN).execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void csv() {
+		assertEquals("id,name,amount,flag,created,data\n" //
+				+ "1,\"say \"\"hi\"\", then\nleave\",1.5,true," + WHEN + ",AQI=\n" //
+				+ "2,\"\",,false,,\n" //
+				+ "3,,-2.0,," + WHEN + ",\n", export(Format.CSV));
+	}
+
+	@Test
+	public void jsonLines() {
+		assertEquals("{\"id\":1,\"name\":\"say \\\"hi\\\", then\\nleave\",\"amount\":1.5,\"flag\":true,"
+				+ "\"created\":\"" + WHEN + "\",\"data\":\"AQI=\"}\n"
+				+ "{\"id\":2,\"name\":\"\",\"amount\":null,\"flag\":false,\"created\":null,\"data\":null}\n"
+				+ "{\"id\":3,\"name\":null,\"amount\":-2.0,\"flag\":null,\"created\":\"" + WHEN
+				+ "\",\"data\":null}\n", export(Format.JSONL));
+	}
+
+	@Test
+	public void columnarAcrossBlocks() throws Exception {
+		for (int i = 4; i <= 5000; i++) {
+			db.sql("insert into export (id, name) values (?, ?)", i, "n" + i).execute();
+		}
+
+		Path file = Files.createTempFile("export", ".bin");
+		try {
+			assertEquals(5000, db.sql("select id, name, amount, created, data from export order by id")
+					.exportTo(file, Format.COLUMNAR));
+			ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+
+			byte[] magic = new byte[8];
+			in.get(magic);
+			assertArrayEquals(ColumnarEncoder.MAGIC, magic);
+			assertEquals(5, in.getInt());
+			String[] labels = { "id", "name", "amount", "created", "data" };
+			byte[] types = { ColumnarEncoder.INT32, ColumnarEncoder.STRING, ColumnarEncoder.FLOAT64,
+					ColumnarEncoder.TIMESTAMP, ColumnarEncoder.BINARY };
+			for (int i = 0; i < labels.length; i++) {
+				byte[] label = new byte[in.getShort()];
+				in.get(label);
+				assertEquals(labels[i], new String(label, StandardCharsets.UTF_8));
+				assertEquals(types[i], in.get());
+			}
+
+			List<Integer> ids = new ArrayList<>();
+			List<String> names = new ArrayList<>();
+			int blocks = 0;
+			for (int rows; (rows = in.getInt()) > 0; blocks++) {
+				for (int col = 0; col < labels.length; col++) {
+					byte[] nulls = new byte[(rows + 7) / 8];
+					in.get(nulls);
+					int length = in.getInt();
+					ByteBuffer values = in.slice().limit(length);
+					in.position(in.position() + length);
+
+					for (int row = 0; row < rows; row++) {
+						boolean isNull = (nulls[row / 8] & (1 << (row % 8))) != 0;
+						if (col == 0) {
+							ids.add(values.getInt());
+						} else if (col == 1) {
+							if (isNull) {
+								names.add(null);
+							} else {
+								byte[] str = new byte[values.getInt()];
+								values.get(str);
+								names.add(new String(str, StandardCharsets.UTF_8));
+							}
+						} else if (col == 2 && blocks == 0 && row == 0) {
+							assertEquals(1.5, values.getDouble(), 0);
+						} else if (col == 3 && blocks == 0 && row == 0) {
+							assertEquals(WHEN.getTime(), values.getLong());
+						}
+					}
+				}
+			}
+
+			assertEquals(2, blocks);
+			assertEquals(5000, ids.size());
+			assertEquals(Integer.valueOf(5000), ids.get(4999));
+			assertEquals("", names.get(1));
+			assertEquals(null, names.get(2));
+			assertEquals("n4999", names.get(4998));
+			assertTrue(!in.hasRemaining());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void columnarBlocksEndAtByteCap() throws Exception {
+		db.sql("drop table if exists wide").execute();
+		db.sql("create table wide (id int primary key, body varchar(3000))").execute();
+		String body = "x".repeat(3000);
+		for (int i = 0; i < 3000; i++) {
+			db.sql("insert into wide values (?, ?)", i, body).execute();
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(3000, db.sql("select body from wide").exportTo(Channels.newChannel(out), Format.COLUMNAR));
+		ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+		in.position(8 + 4 + 2 + "body".length() + 1);
+
+		int blocks = 0;
+		int total = 0;
+		for (int rows; (rows = in.getInt()) > 0; blocks++) {
+			total += rows;
+			in.position(in.position() + (rows + 7) / 8);
+			int length = in.getInt();
+			assertTrue(length < ColumnarEncoder.BLOCK_BYTES + 4 + body.length());
+			in.position(in.position() + length);
+		}
+		assertEquals(3000, total);
+		assertEquals(3, blocks);
+	}
+
+	private String export(Format format) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(3, db.sql("select * from export order by id").exportTo(Channels.newChannel(out), format));
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+}
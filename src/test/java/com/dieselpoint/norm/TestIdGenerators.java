@@ -0,0 +1,225 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.idgen.ClientGenerated;
+import com.dieselpoint.norm.idgen.IdGenerators;
+import com.dieselpoint.norm.idgen.SequenceHiLoGenerator;
+import com.dieselpoint.norm.idgen.TableHiLoGenerator;
+import com.dieselpoint.norm.idgen.TimeOrderedUuidGenerator;
+import com.dieselpoint.norm.metrics.StatementSnapshot;
+
+public class TestIdGenerators {
+
+	private static final String ID_TABLE = "norm_id_blocks";
+	private static final int BLOCK_SIZE = 50;
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:idgentest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists seq_row").execute();
+		db.sql("drop table if exists table_row").execute();
+		db.sql("drop table if exists uuid_row").execute();
+		db.sql("drop table if exists ident_row").execute();
+		db.sql("drop table if exists " + ID_TABLE).execute();
+		db.sql("drop sequence if exists seq_row_seq").execute();
+		db.sql("create table seq_row (id bigint primary key, name varchar(50))").execute();
+		db.sql("create table table_row (id int primary key, name varchar(50))").execute();
+		db.sql("create table uuid_row (id varchar(36) primary key, name varchar(50))").execute();
+		db.sql("create table ident_row (id int auto_increment primary key, name varchar(50))").execute();
+		db.sql("create table " + ID_TABLE + " (name varchar(255) primary key, next_hi bigint not null)").execute();
+		db.sql("create sequence seq_row_seq").execute();
+		db.getIdGenerators().register("table_row", new TableHiLoGenerator(ID_TABLE, "table_row", BLOCK_SIZE));
+		db.getMetrics().reset();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void sequenceHandsOutBlocks() {
+		db.getIdGenerators().register("seq_row_seq", new SequenceHiLoGenerator("seq_row_seq", 10));
+
+		List<SeqRow> rows = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			SeqRow row = new SeqRow();
+			row.name = "row" + i;
+			rows.add(row);
+		}
+		db.insertAll(rows);
+
+		// the first hi from the sequence is 1, so ids start at 10
+		for (int i = 0; i < rows.size(); i++) {
+			assertEquals(10 + i, rows.get(i).id);
+		}
+		assertEquals(25L, db.sql("select count(*) from seq_row").first(Long.class).longValue());
+		assertEquals(3L, executions("select next value for seq_row_seq"));
+	}
+
+	@Test
+	public void tableHandsOutBlocks() {
+		for (int i = 0; i < 60; i++) {
+			TableRow row = new TableRow();
+			row.name = "row" + i;
+			db.insert(row);
+			assertEquals(BLOCK_SIZE + i, row.id);
+		}
+		assertEquals(2L, db.sql("select next_hi from " + ID_TABLE + " where name=?", "table_row")
+				.first(Long.class).longValue());
+	}
+
+	@Test
+	public void leavesSuppliedIdsAlone() {
+		TableRow row = new TableRow();
+		row.id = 7;
+		row.name = "seven";
+		db.insert(row);
+		assertEquals(7, row.id);
+		assertEquals(0L, db.sql("select count(*) from " + ID_TABLE).first(Long.class).longValue());
+	}
+
+	@Test
+	public void uuidsAreVersion7AndOrdered() {
+		TimeOrderedUuidGenerator gen = new TimeOrderedUuidGenerator();
+		UUID last = gen.next();
+		for (int i = 0; i < 10000; i++) {
+			UUID uuid = gen.next();
+			assertEquals(7, uuid.version());
+			assertEquals(2, uuid.variant());
+			assertTrue(Long.compareUnsigned(uuid.getMostSignificantBits(), last.getMostSignificantBits()) > 0);
+			last = uuid;
+		}
+
+		UuidRow row = new UuidRow();
+		row.name = "u";
+		db.insert(row);
+		assertEquals(7, UUID.fromString(row.id).version());
+		assertEquals("u", db.where("id=?", row.id).first(UuidRow.class).name);
+	}
+
+	@Test
+	public void unknownGeneratorThrows() {
+		try {
+			db.insert(new Unregistered());
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage().contains("nosuch"));
+		}
+	}
+
+	@Test
+	public void withoutClientGeneratedTheDatabaseAssigns() {
+		// neither the strategy nor an unregistered generator name makes norm assign
+		// the id; the column is left out of the insert and read back
+		IdentityRow row = new IdentityRow();
+		row.name = "a";
+		db.insert(row);
+		assertTrue(row.id > 0);
+
+		NamedIdentityRow named = new NamedIdentityRow();
+		named.name = "b";
+		db.insert(named);
+		assertTrue(named.id > row.id);
+		assertEquals(0L, db.sql("select count(*) from " + ID_TABLE).first(Long.class).longValue());
+	}
+
+	@Test
+	public void clientGeneratedNeedsAGeneratorName() {
+		try {
+			db.insert(new Unnamed());
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage().contains("@ClientGenerated"));
+		}
+	}
+
+	private long executions(String fingerprint) {
+		Map<String, Long> out = new HashMap<>();
+		for (StatementSnapshot s : db.getMetrics().snapshot().statements) {
+			out.put(s.fingerprint, s.getExecutions());
+		}
+		return out.getOrDefault(fingerprint, 0L);
+	}
+
+	@Table(name = "seq_row")
+	public static class SeqRow {
+		@Id
+		@GeneratedValue(generator = "seq_row_seq")
+		@ClientGenerated
+		public long id;
+		public String name;
+	}
+
+	@Table(name = "table_row")
+	public static class TableRow {
+		@Id
+		@GeneratedValue(generator = "table_row")
+		@ClientGenerated
+		public int id;
+		public String name;
+	}
+
+	@Table(name = "uuid_row")
+	public static class UuidRow {
+		@Id
+		@GeneratedValue(generator = IdGenerators.UUID7)
+		@ClientGenerated
+		public String id;
+		public String name;
+	}
+
+	@Table(name = "uuid_row")
+	public static class Unregistered {
+		@Id
+		@GeneratedValue(generator = "nosuch")
+		@ClientGenerated
+		public String id;
+	}
+
+	@Table(name = "uuid_row")
+	public static class Unnamed {
+		@Id
+		@GeneratedValue
+		@ClientGenerated
+		public String id;
+	}
+
+	@Table(name = "ident_row")
+	public static class IdentityRow {
+		@Id
+		@GeneratedValue(strategy = GenerationType.SEQUENCE)
+		public int id;
+		public String name;
+	}
+
+	@Table(name = "ident_row")
+	public static class NamedIdentityRow {
+		@Id
+		@GeneratedValue(generator = "not_registered")
+		public int id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.latency.QueryScope;
+
+public class TestInclude {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:includetest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists inc_order").execute();
+		db.sql("drop table if exists inc_line").execute();
+		db.sql("drop table if exists inc_note").execute();
+		db.sql("create table inc_order (id int primary key, customer varchar(20))").execute();
+		db.sql("create table inc_line (id int primary key, orderId int, sku varchar(20))").execute();
+		db.sql("create table inc_note (id int primary key, lineId int, text varchar(20))").execute();
+
+		int lineId = 0;
+		int noteId = 0;
+		for (int o = 0; o < 1500; o++) {
+			db.sql("insert into inc_order values (?, ?)", o, "c" + (o % 3)).execute();
+			// order 0 has no lines
+			for (int l = 0; l < o % 3; l++) {
+				db.sql("insert into inc_line values (?, ?, ?)", lineId, o, "sku" + l).execute();
+				if (o < 10) {
+					db.sql("insert into inc_note values (?, ?, ?)", noteId++, lineId, "note").execute();
+				}
+				lineId++;
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void loadsChildrenInChunks() {
+		List<Order> orders;
+		try (QueryScope scope = db.openScope()) {
+			orders = db.orderBy("id").include(Line.class, "orderId", "lines").results(Order.class);
+			// 1500 parents is two chunks
+			assertEquals(2, scope.getCount("select id,orderId,sku from inc_line where orderId in (?)"));
+		}
+
+		assertEquals(1500, orders.size());
+		assertTrue(orders.get(0).lines.isEmpty());
+		assertEquals(1, orders.get(1).lines.size());
+		assertEquals(2, orders.get(1499).lines.size());
+		for (Line line : orders.get(1499).lines) {
+			assertEquals(1499, line.orderId);
+		}
+	}
+
+	@Test
+	public void loadsNestedLevels() {
+		List<Order> orders = db.where("id < ?", 10).orderBy("id")
+				.include(Line.class, "orderId", "lines")
+				.include(Note.class, "lineId", "notes")
+				.results(Order.class);
+
+		assertEquals(10, orders.size());
+		Line line = orders.get(2).lines.get(1);
+		assertEquals(1, line.notes.size());
+		assertEquals("note", line.notes.iterator().next().text);
+	}
+
+	@Test
+	public void relationIsNotAColumn() {
+		Order order = new Order();
+		order.id = 5000;
+		order.customer = "new";
+		db.insert(order);
+		assertEquals("new", db.where("id=?", 5000).first(Order.class).customer);
+	}
+
+	@Test
+	public void unknownCollectionFails() {
+		try {
+			db.where("id < ?", 10).include(Note.class, "lineId", "notes").results(Order.class);
+			fail();
+		} catch (DbException expected) {
+		}
+	}
+
+	@Table(name = "inc_order")
+	public static class Order {
+		@Id
+		public int id;
+		public String customer;
+		@OneToMany
+		public List<Line> lines;
+	}
+
+	@Table(name = "inc_line")
+	public static class Line {
+		@Id
+		public int id;
+		public int orderId;
+		public String sku;
+		@OneToMany
+		public Set<Note> notes;
+	}
+
+	@Table(name = "inc_note")
+	public static class Note {
+		@Id
+		public int id;
+		public int lineId;
+		public String text;
+	}
+
+}
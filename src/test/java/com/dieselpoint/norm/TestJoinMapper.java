@@ -0,0 +1,108 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJoinMapper {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:jointest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists join_order").execute();
+		db.sql("drop table if exists join_line").execute();
+		db.sql("create table join_order (id int primary key, customer varchar(20))").execute();
+		db.sql("create table join_line (lineId int primary key, orderId int, sku varchar(20))").execute();
+
+		db.sql("insert into join_order values (1, 'alice'), (2, 'bob'), (3, 'carol')").execute();
+		db.sql("insert into join_line values (10, 1, 'a'), (11, 1, 'b'), (12, 1, 'c'), (20, 2, 'd')").execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void mapsByPrefix() {
+		List<Order> orders = db.sql("select o.id o_id, o.customer o_customer, l.lineId l_lineId, l.sku l_sku "
+				+ "from join_order o left join join_line l on l.orderId = o.id order by o.id, l.lineId")
+				.resultsJoined(Order.class, "o_", Line.class, "l_", "lines");
+
+		assertEquals(3, orders.size());
+		assertEquals("alice", orders.get(0).customer);
+		assertEquals(3, orders.get(0).lines.size());
+		assertEquals("c", orders.get(0).lines.get(2).sku);
+		assertEquals(1, orders.get(1).lines.size());
+		// outer join with no lines
+		assertTrue(orders.get(2).lines.isEmpty());
+	}
+
+	@Test
+	public void mapsByTableName() {
+		List<Order> orders = db.sql("select o.*, l.* from join_order o join join_line l on l.orderId = o.id")
+				.resultsJoined(Order.class, null, Line.class, null, "lines");
+
+		assertEquals(2, orders.size());
+		int lines = 0;
+		for (Order order : orders) {
+			for (Line line : order.lines) {
+				assertEquals(order.id, line.orderId);
+				lines++;
+			}
+		}
+		assertEquals(4, lines);
+	}
+
+	@Test
+	public void unprefixedColumnsGoToParent() {
+		List<Order> orders = db.sql("select o.id, o.customer, l.sku l_sku "
+				+ "from join_order o join join_line l on l.orderId = o.id where o.id = ?", 1)
+				.resultsJoined(Order.class, "", Line.class, "l_", "lines");
+
+		assertEquals(1, orders.size());
+		assertEquals("alice", orders.get(0).customer);
+		assertEquals(3, orders.get(0).lines.size());
+	}
+
+	@Test
+	public void needsParentId() {
+		try {
+			db.sql("select o.customer o_customer, l.sku l_sku from join_order o join join_line l on l.orderId = o.id")
+					.resultsJoined(Order.class, "o_", Line.class, "l_", "lines");
+			fail();
+		} catch (DbException expected) {
+		}
+	}
+
+	@Table(name = "join_order")
+	public static class Order {
+		@Id
+		public int id;
+		public String customer;
+		@OneToMany
+		public List<Line> lines;
+	}
+
+	@Table(name = "join_line")
+	public static class Line {
+		@Id
+		public int lineId;
+		public int orderId;
+		public String sku;
+	}
+
+}
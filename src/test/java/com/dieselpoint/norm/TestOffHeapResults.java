@@ -0,0 +1,216 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Convert;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.converter.IntArrayConverter;
+import com.dieselpoint.norm.converter.IntArrayToListConverter;
+import com.dieselpoint.norm.latency.QueryScope;
+import com.dieselpoint.norm.offheap.OffHeapList;
+
+public class TestOffHeapResults {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:offheaptest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists report").execute();
+		db.sql("create table report (id int primary key, name varchar(50), amount decimal(12,2), "
+				+ "due timestamp, flag boolean)").execute();
+		List<ReportRow> rows = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			ReportRow row = new ReportRow();
+			row.id = i;
+			row.name = i % 7 == 0 ? null : "row " + i + " ünïcödé";
+			row.amount = BigDecimal.valueOf(i * 101L, 2);
+			row.due = new Date(1_600_000_000_000L + i * 1000L);
+			row.flag = i % 2 == 0;
+			rows.add(row);
+		}
+		db.insertAll(rows);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void sameRowsAsResults() {
+		List<ReportRow> expected = db.orderBy("id").results(ReportRow.class);
+		try (OffHeapList<ReportRow> rows = db.orderBy("id").resultsOffHeap(ReportRow.class)) {
+			assertFalse(rows.isSpilled());
+			assertEquals(expected.size(), rows.size());
+			for (int i = rows.size() - 1; i >= 0; i -= 13) {
+				assertSame(expected.get(i), rows.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void spillsToTempFile() {
+		// small enough that only the first chunk is direct memory
+		try (OffHeapList<ReportRow> rows = db.orderBy("id").resultsOffHeap(ReportRow.class, 100_000)) {
+			assertTrue(rows.isSpilled());
+			assertEquals(5000, rows.size());
+			assertEquals(4999, rows.get(4999).id);
+			assertEquals(new BigDecimal("0.00"), rows.get(0).amount);
+			assertEquals("row 2500 ünïcödé", rows.get(2500).name);
+			assertTrue(rows.get(1234).flag);
+			int sum = 0;
+			for (ReportRow row : rows) {
+				sum += row.id;
+			}
+			assertEquals(4999 * 5000 / 2, sum);
+		}
+	}
+
+	@Test
+	public void getAfterCloseThrows() {
+		OffHeapList<ReportRow> rows = db.where("id<?", 10).resultsOffHeap(ReportRow.class, 0);
+		assertEquals(10, rows.size());
+		rows.close();
+		try {
+			rows.get(0);
+			fail();
+		} catch (DbException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void closedWhenRecordingFails() {
+		db.setRepeatedStatementThreshold(1);
+		db.setFailOnRepeatedStatements(true);
+		try (QueryScope scope = db.openScope()) {
+			try (OffHeapList<ReportRow> rows = db.orderBy("id").resultsOffHeap(ReportRow.class, 100_000)) {
+				assertTrue(rows.isSpilled());
+			}
+			long before = mappedBytes();
+			try {
+				// spills, then fails in recordInScope() as the second of its kind
+				db.orderBy("id").resultsOffHeap(ReportRow.class, 100_000);
+				fail();
+			} catch (DbException e) {
+				// expected
+			}
+			// the spilled chunks were unmapped, not left for the garbage collector
+			assertEquals(before, mappedBytes());
+		}
+	}
+
+	private static long mappedBytes() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("mapped")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		throw new IllegalStateException("no mapped buffer pool");
+	}
+
+	@Test
+	public void mapsAndScalars() throws Exception {
+		db.sql("drop table if exists typed").execute();
+		db.sql("create table typed (i int, b bigint, s smallint, d double, r real, v varbinary(4), "
+				+ "dt date, t time, u uuid, tz timestamp with time zone, a int array)").execute();
+		db.sql("insert into typed values (1, 2, 3, 4.5, 5.5, X'01ff', '2020-02-29', '12:34:56', "
+				+ "'123e4567-e89b-12d3-a456-426614174000', '2020-01-01 10:00:00+02', array[1,2,3])").execute();
+		db.sql("insert into typed values (null, null, null, null, null, null, null, null, null, null, null)")
+				.execute();
+
+		@SuppressWarnings("rawtypes")
+		List<HashMap> expected = db.sql("select * from typed order by i nulls last").results(HashMap.class);
+		try (@SuppressWarnings("rawtypes")
+		OffHeapList<HashMap> rows = db.sql("select * from typed order by i nulls last")
+				.resultsOffHeap(HashMap.class)) {
+			assertEquals(2, rows.size());
+			for (int i = 0; i < 2; i++) {
+				for (Object key : expected.get(i).keySet()) {
+					Object want = expected.get(i).get(key);
+					Object got = rows.get(i).get(key);
+					if (want instanceof java.sql.Array) {
+						assertEquals(((java.sql.Array) want).getBaseType(), ((java.sql.Array) got).getBaseType());
+						assertArrayEquals(new Object[] { 1, 2, 3 }, (Object[]) ((java.sql.Array) got).getArray());
+					} else if (want instanceof byte[]) {
+						assertArrayEquals((byte[]) want, (byte[]) got);
+					} else {
+						assertEquals(key.toString(), want, got);
+					}
+				}
+			}
+		}
+
+		try (OffHeapList<Long> counts = db.sql("select count(*) from report").resultsOffHeap(Long.class)) {
+			assertEquals(Long.valueOf(5000), counts.get(0));
+		}
+	}
+
+	@Test
+	public void arrayConverters() {
+		db.sql("drop table if exists arrays").execute();
+		db.sql("create table arrays (id int primary key, ints int array, intList int array)").execute();
+		ArrayRow row = new ArrayRow();
+		row.id = 1;
+		row.ints = new int[] { 3, -4, 5 };
+		row.intList = Arrays.asList(6, null, 7);
+		db.insert(row);
+
+		try (OffHeapList<ArrayRow> rows = db.where("id=?", 1).resultsOffHeap(ArrayRow.class)) {
+			ArrayRow back = rows.get(0);
+			assertArrayEquals(row.ints, back.ints);
+			assertEquals(row.intList, back.intList);
+		}
+	}
+
+	private static void assertSame(ReportRow want, ReportRow got) {
+		assertEquals(want.id, got.id);
+		assertEquals(want.name, got.name);
+		assertEquals(want.amount, got.amount);
+		assertEquals(want.due, got.due);
+		assertEquals(want.flag, got.flag);
+	}
+
+	@Table(name = "report")
+	public static class ReportRow {
+		@Id
+		public int id;
+		public String name;
+		public BigDecimal amount;
+		public Date due;
+		public boolean flag;
+	}
+
+	@Table(name = "arrays")
+	public static class ArrayRow {
+		@Id
+		public int id;
+		@Convert(converter = IntArrayConverter.class)
+		public int[] ints;
+		@Convert(converter = IntArrayToListConverter.class)
+		public List<Integer> intList;
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.metrics.StatementSnapshot;
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+
+/**
+ * Generated keys read from the statement's own result set, with H2's "select
+ * ... from final table (insert ...)" standing in for Postgres' "returning".
+ */
+public class TestReturning {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:returningtest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.setSqlMaker(new H2Maker());
+		db.sql("drop table if exists keyedrow").execute();
+		db.sql("create table keyedrow (id int auto_increment primary key, name varchar(50))").execute();
+		db.getMetrics().reset();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void insertReadsKeyFromResultSet() {
+		KeyedRow row = new KeyedRow();
+		row.name = "bob";
+		assertEquals(1, db.insert(row).getRowsAffected());
+
+		assertTrue(row.id > 0);
+		assertEquals("bob", db.where("id=?", row.id).first(KeyedRow.class).name);
+		assertEquals(1, executions("select id from final table (insert into keyedrow"));
+	}
+
+	@Test
+	public void mapReceiver() {
+		Map<String, Object> keys = new HashMap<>();
+		db.generatedKeyReceiver(keys, "id").sql("insert into keyedrow (name) values (?)", "fred").execute();
+		assertEquals("fred", db.where("id=?", keys.get("id")).first(KeyedRow.class).name);
+	}
+
+	@Test
+	public void executeTwice() {
+		// the "returning" form is built for each execution, not kept as the query's sql
+		Map<String, Object> keys = new HashMap<>();
+		Query query = db.generatedKeyReceiver(keys, "id").sql("insert into keyedrow (name) values (?)", "fred");
+		query.execute();
+		Object firstId = keys.get("id");
+		query.execute();
+		assertNotEquals(firstId, keys.get("id"));
+		assertEquals(2, executions("select id from final table (insert into keyedrow"));
+	}
+
+	@Test
+	public void insertAllReadsKeysPerRow() {
+		List<KeyedRow> rows = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			KeyedRow row = new KeyedRow();
+			row.name = "row" + i;
+			rows.add(row);
+		}
+		assertEquals(10, new Query(db).batchSize(4).insertAll(rows).getRowsAffected());
+
+		for (KeyedRow row : rows) {
+			assertEquals(row.name, db.where("id=?", row.id).first(KeyedRow.class).name);
+		}
+		// a batch of single row inserts, recorded as one call
+		assertEquals(1, executions("insert into keyedrow"));
+	}
+
+	@Test
+	public void insertAllWithoutKeysSendsMultiRowInserts() {
+		db.sql("create table if not exists plainrow (id int primary key, name varchar(50))").execute();
+		db.sql("delete from plainrow").execute();
+
+		List<PlainRow> rows = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			PlainRow row = new PlainRow();
+			row.id = i;
+			row.name = "row" + i;
+			rows.add(row);
+		}
+		assertEquals(10, new Query(db).batchSize(4).insertAll(rows).getRowsAffected());
+
+		for (PlainRow row : rows) {
+			assertEquals(row.name, db.where("id=?", row.id).first(PlainRow.class).name);
+		}
+	}
+
+	private long executions(String prefix) {
+		long count = 0;
+		for (StatementSnapshot s : db.getMetrics().snapshot().statements) {
+			if (s.fingerprint.startsWith(prefix)) {
+				count += s.getExecutions();
+			}
+		}
+		return count;
+	}
+
+	@Table(name = "keyedrow")
+	public static class KeyedRow {
+		@Id
+		@GeneratedValue
+		public int id;
+		public String name;
+	}
+
+	@Table(name = "plainrow")
+	public static class PlainRow {
+		@Id
+		public int id;
+		public String name;
+	}
+
+}
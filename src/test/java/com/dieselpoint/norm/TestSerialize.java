@@ -1,9 +1,23 @@
 package com.dieselpoint.norm;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
+import javax.persistence.Id;
+import javax.persistence.Table;
+
 import org.junit.Test;
 
+import com.dieselpoint.norm.serialize.DbBinarySerializable;
 import com.dieselpoint.norm.serialize.DbSerializable;
 import com.dieselpoint.norm.serialize.DbSerializer;
 
@@ -14,6 +28,40 @@ public class TestSerialize {
 
 	}
 
+	@Test
+	public void binarySerializer() {
+		Database db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:serializetest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists tagged").execute();
+		db.sql("create table tagged (id int primary key, tags varbinary(1000), more blob)").execute();
+
+		TaggedRow row = new TaggedRow();
+		row.id = 1;
+		row.tags = List.of("a", "b\u00e9", "");
+		row.more = List.of("x");
+		db.insert(row);
+
+		TaggedRow empty = new TaggedRow();
+		empty.id = 2;
+		db.insert(empty);
+
+		// stored as the serializer's bytes, not as text
+		byte[] stored = (byte[]) db.sql("select tags from tagged where id=1").first(HashMap.class).get("tags");
+		assertEquals(3, stored[3]);
+
+		// varbinary comes back as byte[], blob as a Blob
+		TaggedRow loaded = db.where("id=?", 1).first(TaggedRow.class);
+		assertEquals(row.tags, loaded.tags);
+		assertEquals(row.more, loaded.more);
+
+		loaded.tags = List.of("c");
+		db.update(loaded);
+		assertEquals(List.of("c"), db.where("id=?", 1).first(TaggedRow.class).tags);
+
+		assertNull(db.where("id=?", 2).first(TaggedRow.class).tags);
+		db.close();
+	}
+
 	class MyPojo {
 		@DbSerializer(MySerializer.class)
 		public List<String> myList;
@@ -33,4 +81,39 @@ public class TestSerialize {
 		}
 	}
 
+	@Table(name = "tagged")
+	public static class TaggedRow {
+		@Id
+		public int id;
+		@DbSerializer(StringListSerializer.class)
+		public List<String> tags;
+		@DbSerializer(StringListSerializer.class)
+		public List<String> more;
+	}
+
+	public static class StringListSerializer implements DbBinarySerializable {
+
+		@Override
+		public void serialize(Object in, OutputStream out) throws IOException {
+			DataOutputStream data = new DataOutputStream(out);
+			List<?> list = (List<?>) in;
+			data.writeInt(list.size());
+			for (Object s : list) {
+				data.writeUTF((String) s);
+			}
+			data.flush();
+		}
+
+		@Override
+		public Object deserialize(InputStream in, Class<?> targetClass) throws IOException {
+			DataInputStream data = new DataInputStream(in);
+			int size = data.readInt();
+			List<String> out = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				out.add(data.readUTF());
+			}
+			return out;
+		}
+	}
+
 }
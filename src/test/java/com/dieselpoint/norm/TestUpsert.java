@@ -0,0 +1,134 @@
+package com.dieselpoint.norm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.sqlmakers.H2Maker;
+import com.dieselpoint.norm.sqlmakers.StandardSqlMaker;
+
+public class TestUpsert {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:upserttest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.setSqlMaker(new H2Maker());
+		db.sql("drop table if exists upsertrow").execute();
+		db.sql("create table upsertrow (id int primary key, name varchar(50), qty int)").execute();
+		db.sql("drop table if exists generatedrow").execute();
+		db.sql("create table generatedrow (id int auto_increment primary key, name varchar(50))").execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void upsertInsertsThenUpdates() {
+		db.upsert(row(1, "bob", 5));
+		db.upsert(row(1, "fred", 6));
+
+		List<UpsertRow> rows = db.results(UpsertRow.class);
+		assertEquals(1, rows.size());
+		assertEquals("fred", rows.get(0).name);
+		assertEquals(6, rows.get(0).qty);
+	}
+
+	@Test
+	public void upsertAllInBatches() {
+		db.insert(row(2, "old", 0));
+
+		List<UpsertRow> rows = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			rows.add(row(i, "row" + i, i));
+		}
+		db.table("upsertrow").batchSize(10).upsertAll(rows);
+
+		assertEquals(25L, (long) db.table("upsertrow").count());
+		assertEquals("row2", db.where("id=?", 2).first(UpsertRow.class).name);
+	}
+
+	@Test
+	public void insertAllReadsGeneratedKeys() {
+		List<GeneratedRow> rows = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			GeneratedRow row = new GeneratedRow();
+			row.name = "row" + i;
+			rows.add(row);
+		}
+		assertEquals(5, new Query(db).batchSize(2).insertAll(rows).getRowsAffected());
+
+		for (GeneratedRow row : rows) {
+			assertEquals(row.name, db.where("id=?", row.id).first(GeneratedRow.class).name);
+		}
+	}
+
+	@Test
+	public void insertAllIsAllOrNothing() {
+		List<UpsertRow> rows = new ArrayList<>();
+		rows.add(row(1, "a", 1));
+		rows.add(row(2, "b", 2));
+		rows.add(row(1, "duplicate", 3));
+		try {
+			db.insertAll(rows);
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getSql().startsWith("insert into upsertrow"));
+		}
+		assertEquals(0L, (long) db.table("upsertrow").count());
+	}
+
+	@Test(expected = DbException.class)
+	public void upsertNeedsSuppliedKeys() {
+		GeneratedRow row = new GeneratedRow();
+		row.name = "x";
+		db.upsert(row);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void makerWithoutUpsertSaysSo() {
+		db.setSqlMaker(new StandardSqlMaker() {
+		});
+		db.upsert(row(1, "bob", 5));
+	}
+
+	private static UpsertRow row(int id, String name, int qty) {
+		UpsertRow row = new UpsertRow();
+		row.id = id;
+		row.name = name;
+		row.qty = qty;
+		return row;
+	}
+
+	@Table(name = "upsertrow")
+	public static class UpsertRow {
+		@Id
+		public int id;
+		public String name;
+		public int qty;
+	}
+
+	@Table(name = "generatedrow")
+	public static class GeneratedRow {
+		@Id
+		@GeneratedValue
+		public int id;
+		public String name;
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.dieselpoint.norm.allocation;
+
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+
+/**
+ * Fails when an operation allocates more bytes than its budget in
+ * allocation-budgets.properties. Runs against the synthetic driver, so the
+ * driver allocates next to nothing per row and the bytes counted are norm's.
+ * <p>
+ * Each scenario is warmed up until the JIT has settled, then run many times
+ * while the current thread's allocated bytes are counted. Per-row figures are
+ * the difference between a 1001-row and a 1-row select, divided by 1000, so
+ * per-statement costs cancel out.
+ * <p>
+ * If a change allocates more on purpose, raise the budget in the same commit.
+ * Run with -Dnorm.allocation.report=true to print the measured values.
+ */
+public class AllocationBudgetTest {
+
+	private static final int WARMUP = 20000;
+	private static final int MEASURE = 5000;
+	private static final int ROWS = 1001;
+
+	private static final String COLUMNS = "columns=id:bigint,name:varchar,amount:double";
+
+	private static com.sun.management.ThreadMXBean threads;
+	private static Properties budgets = new Properties();
+	private static Map<String, Long> measured = new TreeMap<>();
+
+	private static Database oneRow;
+	private static Database manyRows;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("Needs com.sun.management.ThreadMXBean", bean instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue("Thread allocation counting not supported", threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		try (InputStream in = AllocationBudgetTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+			budgets.load(in);
+		}
+
+		oneRow = new Database();
+		oneRow.setJdbcUrl("jdbc:synthetic:rows=1;" + COLUMNS);
+		manyRows = new Database();
+		manyRows.setJdbcUrl("jdbc:synthetic:rows=" + ROWS + ";" + COLUMNS);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (Boolean.getBoolean("norm.allocation.report")) {
+			measured.forEach((name, bytes) -> System.out.println(name + "=" + bytes));
+		}
+		if (oneRow != null) {
+			oneRow.close();
+			manyRows.close();
+		}
+	}
+
+	@Test
+	public void select() {
+		long perStatement = measure(() -> oneRow.where("id=?", 1).results(Row.class));
+		long many = measure(() -> manyRows.where("id>?", 1).results(Row.class));
+		check("select.perStatement", perStatement);
+		check("select.perRow", (many - perStatement) / (ROWS - 1));
+	}
+
+	@Test
+	public void selectMap() {
+		long perStatement = measure(() -> oneRow.sql("select id,name,amount from row where id=?", 1)
+				.results(HashMap.class));
+		long many = measure(() -> manyRows.sql("select id,name,amount from row where id>?", 1)
+				.results(HashMap.class));
+		check("selectMap.perStatement", perStatement);
+		check("selectMap.perRow", (many - perStatement) / (ROWS - 1));
+	}
+
+	@Test
+	public void insert() {
+		Row row = newRow();
+		check("insert.perStatement", measure(() -> oneRow.insert(row)));
+	}
+
+	@Test
+	public void update() {
+		Row row = newRow();
+		check("update.perStatement", measure(() -> oneRow.update(row)));
+	}
+
+	private static Row newRow() {
+		Row row = new Row();
+		row.id = 1;
+		row.name = "bob";
+		row.amount = 2.5;
+		return row;
+	}
+
+	/**
+	 * Returns the bytes allocated per call, after warming up.
+	 */
+	private static long measure(Runnable op) {
+		for (int i = 0; i < WARMUP; i++) {
+			op.run();
+		}
+		long thread = Thread.currentThread().getId();
+		long start = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < MEASURE; i++) {
+			op.run();
+		}
+		return (threads.getThreadAllocatedBytes(thread) - start) / MEASURE;
+	}
+
+	private static void check(String name, long bytes) {
+		measured.put(name, bytes);
+		String budget = budgets.getProperty(name);
+		if (budget == null) {
+			fail("No allocation budget for " + name + " (measured " + bytes + " bytes)");
+		}
+		long max = Long.parseLong(budget.trim());
+		if (bytes > max) {
+			fail(name + " allocated " + bytes + " bytes, the budget is " + max
+					+ ". If that's intended, raise it in allocation-budgets.properties.");
+		}
+	}
+
+	@Table(name = "row")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+		public double amount;
+	}
+
+}
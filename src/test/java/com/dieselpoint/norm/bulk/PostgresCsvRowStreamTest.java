@@ -0,0 +1,57 @@
+package com.dieselpoint.norm.bulk;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.Convert;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.converter.IntArrayConverter;
+import com.dieselpoint.norm.converter.SimpleArray;
+import com.dieselpoint.norm.sqlmakers.PostgresMaker;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+
+public class PostgresCsvRowStreamTest {
+
+	@Test
+	public void writesArrayLiterals() throws Exception {
+		ArrayRow row = new ArrayRow();
+		row.id = 1;
+		row.ints = new int[] { 1, -2 };
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) new PostgresMaker().getPojoInfo(ArrayRow.class);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PostgresCopyLoader.PostgresCsvRowStream(pojoInfo, Collections.singletonList(row).iterator())
+				.transferTo(out);
+
+		assertEquals("\"1\",\"{\"\"1\"\",\"\"-2\"\"}\"\n", out.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void quotesArrayElements() {
+		StandardPojoInfo pojoInfo = (StandardPojoInfo) new PostgresMaker().getPojoInfo(ArrayRow.class);
+		PostgresCopyLoader.PostgresCsvRowStream csv = new PostgresCopyLoader.PostgresCsvRowStream(pojoInfo,
+				Collections.emptyIterator());
+		SimpleArray array = new SimpleArray(Types.VARCHAR,
+				Arrays.asList("a,b", null, "say \"hi\"", "back\\slash", "NULL").toArray());
+
+		assertEquals("{\"a,b\",NULL,\"say \\\"hi\\\"\",\"back\\\\slash\",\"NULL\"}", csv.format(array));
+	}
+
+	@Table(name = "arrays")
+	public static class ArrayRow {
+		@Id
+		public int id;
+		@Convert(converter = IntArrayConverter.class)
+		public int[] ints;
+	}
+
+}
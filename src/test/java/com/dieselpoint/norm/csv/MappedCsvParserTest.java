@@ -0,0 +1,98 @@
+package com.dieselpoint.norm.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.DbException;
+
+public class MappedCsvParserTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("parser", ".csv");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void quotesLineEndsAndBlankLines() throws Exception {
+		String csv = "﻿a,b,c\r\n" //
+				+ "1,\"x,\"\"y\"\"\nz\",\r\n" //
+				+ "\n" //
+				+ "-42,\"\",héllo\n" //
+				+ "7,last,";
+		List<List<String>> records = parse(csv, 1 << 20);
+		assertEquals("[[a, b, c], [1, x,\"y\"\nz, ], [-42, , héllo], [7, last, ]]", records.toString());
+	}
+
+	@Test
+	public void recordsAcrossWindows() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		List<List<String>> expected = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String name = i % 3 == 0 ? "\"q\"\"" + i + "\"" : "n" + i;
+			csv.append(i).append(',').append(name).append('\n');
+			expected.add(List.of(Integer.toString(i), i % 3 == 0 ? "q\"" + i : "n" + i));
+		}
+		// windows far smaller than the file, so records keep crossing their ends
+		assertEquals(expected, parse(csv.toString(), 16));
+	}
+
+	@Test
+	public void parsesLongsInPlace() throws Exception {
+		Files.write(file, "123,-9,+5,007, 12 ,9223372036854775807".getBytes(StandardCharsets.UTF_8));
+		try (MappedCsvParser parser = new MappedCsvParser(file, ',', '"')) {
+			assertTrue(parser.next());
+			assertEquals(123, parser.getLong(0));
+			assertEquals(-9, parser.getLong(1));
+			assertEquals(5, parser.getLong(2));
+			assertEquals(7, parser.getLong(3));
+			assertEquals(12, parser.getLong(4));
+			assertEquals(Long.MAX_VALUE, parser.getLong(5));
+			assertFalse(parser.next());
+		}
+	}
+
+	@Test
+	public void recordLongerThanWindow() throws Exception {
+		try {
+			parse("1,this record is too long\n", 8);
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage().contains("longer than 8 bytes"));
+		}
+	}
+
+	private List<List<String>> parse(String csv, int window) throws Exception {
+		Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+		List<List<String>> records = new ArrayList<>();
+		try (MappedCsvParser parser = new MappedCsvParser(file, ',', '"', window)) {
+			while (parser.next()) {
+				List<String> fields = new ArrayList<>();
+				for (int i = 0; i < parser.getFieldCount(); i++) {
+					fields.add(parser.getString(i));
+				}
+				records.add(fields);
+			}
+		}
+		return records;
+	}
+
+}
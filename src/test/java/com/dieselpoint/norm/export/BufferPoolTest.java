@@ -0,0 +1,84 @@
+package com.dieselpoint.norm.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+
+public class BufferPoolTest {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:bufferpooltest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("drop table if exists pooled").execute();
+		db.sql("create table pooled (id int primary key, name varchar(50))").execute();
+		db.sql("insert into pooled values (1, 'a'), (2, 'b')").execute();
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void reusesReleasedBuffers() {
+		ByteBuffer buf = BufferPool.acquire(1024);
+		buf.putInt(7);
+		BufferPool.release(buf);
+
+		ByteBuffer again = BufferPool.acquire(1024);
+		assertSame(buf, again);
+		assertEquals(0, again.position());
+		BufferPool.release(again);
+	}
+
+	@Test
+	public void keepsNoMoreThanTheCap() {
+		int size = (int) (BufferPool.MAX_POOLED_BYTES / 4);
+		ByteBuffer[] bufs = new ByteBuffer[6];
+		for (int i = 0; i < bufs.length; i++) {
+			bufs[i] = BufferPool.acquire(size);
+		}
+		for (ByteBuffer buf : bufs) {
+			BufferPool.release(buf);
+		}
+		assertTrue(BufferPool.getPooledBytes() <= BufferPool.MAX_POOLED_BYTES);
+	}
+
+	@Test
+	public void exportsGiveTheirBuffersBack() throws Exception {
+		export(Format.COLUMNAR);
+		long pooled = BufferPool.getPooledBytes();
+
+		// the same buffers again, so nothing new is allocated and nothing more is kept
+		for (int i = 0; i < 10; i++) {
+			export(Format.COLUMNAR);
+			export(Format.CSV);
+		}
+		assertEquals(pooled, BufferPool.getPooledBytes());
+	}
+
+	private void export(Format format) throws Exception {
+		try (Connection con = db.getConnection();
+				Statement state = con.createStatement();
+				ResultSet rs = state.executeQuery("select * from pooled")) {
+			Exporter.export(rs, Channels.newChannel(new ByteArrayOutputStream()), format);
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.dieselpoint.norm.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AsyncLatencyDispatcherTest {
+
+	@Test
+	public void dispatchesOnBackgroundThread() throws Exception {
+		List<String> threads = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(100);
+		try (AsyncLatencyDispatcher dispatcher = new AsyncLatencyDispatcher(128, w -> {
+			threads.add(Thread.currentThread().getName());
+			done.countDown();
+		})) {
+			for (int i = 0; i < 100; i++) {
+				assertTrue(dispatcher.offer(warning()));
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		}
+		assertEquals(100, threads.size());
+		assertEquals("norm-latency-alerts", threads.get(0));
+	}
+
+	@Test
+	public void dropsWhenFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		try (AsyncLatencyDispatcher dispatcher = new AsyncLatencyDispatcher(4, w -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		})) {
+			// the first warning is taken by the drain thread, which then blocks
+			dispatcher.offer(warning());
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+
+			for (int i = 0; i < 4; i++) {
+				assertTrue(dispatcher.offer(warning()));
+			}
+			assertFalse(dispatcher.offer(warning()));
+			assertEquals(1, dispatcher.getDroppedCount());
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void wakesForEachWarningAfterIdle() throws Exception {
+		// one warning at a time, so the drainer parks between them and each offer has to wake it
+		Semaphore dispatched = new Semaphore(0);
+		try (AsyncLatencyDispatcher dispatcher = new AsyncLatencyDispatcher(4, w -> dispatched.release())) {
+			for (int i = 0; i < 1000; i++) {
+				assertTrue(dispatcher.offer(warning()));
+				assertTrue(dispatched.tryAcquire(5, TimeUnit.SECONDS));
+			}
+		}
+	}
+
+	@Test
+	public void callSiteIsOutsideNorm() {
+		// this test lives in a norm package, so the caller found is the junit/reflection frame
+		DbLatencyWarning w = warning();
+		assertFalse(w.offendingStatement.startsWith("com.dieselpoint.norm."));
+	}
+
+	private static DbLatencyWarning warning() {
+		return new DbLatencyWarning(10, 20, "select 1", new Object[0]);
+	}
+
+}
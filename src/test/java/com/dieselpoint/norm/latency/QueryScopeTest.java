@@ -0,0 +1,115 @@
+package com.dieselpoint.norm.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Table;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Transaction;
+
+public class QueryScopeTest {
+
+	private Database db;
+	private List<DbLatencyWarning> alerts = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:scopetest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("create table if not exists scopechild (id int, parent_id int)").execute();
+		db.addLatencyAlerter(alerts::add);
+		db.setRepeatedStatementThreshold(3);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void warnsOnceWhenThresholdExceeded() {
+		try (QueryScope scope = db.openScope()) {
+			for (int parentId = 0; parentId < 10; parentId++) {
+				db.where("parent_id=?", parentId).results(Child.class);
+			}
+			assertEquals(10, scope.getCount("select id,parent_id from scopechild where parent_id=?"));
+			assertEquals(1, scope.getWarnings().size());
+		}
+		assertNull(db.getCurrentScope());
+
+		assertEquals(1, alerts.size());
+		RepeatedStatementWarning warning = (RepeatedStatementWarning) alerts.get(0);
+		assertEquals(4, warning.executions);
+		assertTrue(warning.isBreach());
+		// the latency fields hold time, not counts
+		assertEquals(0, warning.maxAcceptableLatency);
+		assertEquals(warning.totalMillis, warning.actualLatency);
+		assertTrue(warning.toString(), warning.toString().contains("parent_id=?"));
+	}
+
+	@Test
+	public void differentStatementsAreCountedSeparately() {
+		try (QueryScope scope = db.openScope()) {
+			for (int i = 0; i < 3; i++) {
+				db.where("parent_id=?", i).results(Child.class);
+				db.where("id=?", i).results(Child.class);
+			}
+			scope.assertNoRepeatedStatements();
+		}
+		assertEquals(0, alerts.size());
+	}
+
+	@Test
+	public void nestedScopesRestoreTheOuterOne() {
+		try (QueryScope outer = db.openScope()) {
+			try (QueryScope inner = db.openScope()) {
+				assertSame(inner, db.getCurrentScope());
+			}
+			assertSame(outer, db.getCurrentScope());
+		}
+	}
+
+	@Test
+	public void testModeFailsTheQuery() {
+		db.setFailOnRepeatedStatements(true);
+		try (QueryScope scope = db.openScope()) {
+			for (int parentId = 0; parentId < 10; parentId++) {
+				db.where("parent_id=?", parentId).results(Child.class);
+			}
+			fail();
+		} catch (DbException e) {
+			assertTrue(e.getMessage().contains("N+1"));
+		}
+	}
+
+	@Test
+	public void transactionScope() {
+		Transaction trans = db.startTransaction();
+		QueryScope scope = trans.openScope();
+		for (int parentId = 0; parentId < 5; parentId++) {
+			db.transaction(trans).where("parent_id=?", parentId).results(Child.class);
+		}
+		trans.commit();
+		assertEquals(1, scope.getWarnings().size());
+		assertEquals(1, alerts.size());
+	}
+
+	@Table(name = "scopechild")
+	public static class Child {
+		public int id;
+		public int parent_id;
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.dieselpoint.norm.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+
+public class SlowQueryExplainerTest {
+
+	private Database db;
+	private BlockingQueue<DbLatencyWarning> alerts = new LinkedBlockingQueue<>();
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl("jdbc:h2:mem:explaintest;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		db.sql("create table if not exists explained (id int primary key, name varchar(20))").execute();
+		db.addLatencyAlerter(alerts::add);
+		db.setExplainSlowQueries(true);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void planIsAttached() throws Exception {
+		db.alertLatency(new DbLatencyWarning(10, 20, "select * from explained where name=?", new Object[] { "bob" }));
+
+		DbLatencyWarning warning = alerts.poll(5, TimeUnit.SECONDS);
+		assertTrue(warning.plan, warning.plan.toLowerCase().contains("explained"));
+		assertTrue(warning.toString().contains("Plan:"));
+	}
+
+	@Test
+	public void rateLimitedPerFingerprint() throws Exception {
+		db.alertLatency(new DbLatencyWarning(10, 20, "select * from explained where id=1", null));
+		db.alertLatency(new DbLatencyWarning(10, 20, "select * from explained where id=2", null));
+
+		DbLatencyWarning first = alerts.poll(5, TimeUnit.SECONDS);
+		DbLatencyWarning second = alerts.poll(5, TimeUnit.SECONDS);
+		// the second one isn't explained and so arrives first
+		assertNull(first.plan);
+		assertTrue(second.plan != null);
+		assertEquals(0, alerts.size());
+	}
+
+	@Test
+	public void ddlIsNotExplained() throws Exception {
+		db.alertLatency(new DbLatencyWarning(10, 20, "create table foo (id int)", null));
+		assertNull(alerts.poll(5, TimeUnit.SECONDS).plan);
+	}
+
+}
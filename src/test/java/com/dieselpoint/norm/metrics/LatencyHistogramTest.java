@@ -0,0 +1,88 @@
+package com.dieselpoint.norm.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.latency.Phase;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsCoverTheirValues() {
+		long[] values = { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE / 2 };
+		for (long v : values) {
+			int index = LatencyHistogram.indexOf(v);
+			assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+			assertTrue(v + " lower", LatencyHistogram.lowerBound(index) <= v);
+			assertTrue(v + " upper", LatencyHistogram.upperBound(index) >= v);
+		}
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1000L);
+		}
+		HistogramSnapshot snap = h.snapshot();
+		assertEquals(1000, snap.getCount());
+		assertEquals(1000000L, snap.getMax());
+		assertWithin(500000, snap.getP50());
+		assertWithin(990000, snap.getP99());
+		assertEquals(1000000L, snap.getValueAtQuantile(1.0));
+
+		h.reset();
+		assertEquals(0, h.snapshot().getCount());
+	}
+
+	@Test
+	public void registryGroupsByFingerprint() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.record("select * from t where id=1", 1000, 1);
+		registry.record("select * from t where id=2", 3000, 1);
+		registry.recordError("select * from t where id=3");
+
+		MetricsSnapshot snap = registry.snapshot();
+		assertEquals(1, snap.statements.size());
+		StatementSnapshot s = snap.get("select * from t where id=?");
+		assertEquals(2, s.getExecutions());
+		assertEquals(2, s.rows);
+		assertEquals(1, s.errors);
+		assertEquals(-1, snap.totalConnections);
+		assertTrue(registry.dumpPrometheus()
+				.contains("norm_statement_duration_seconds_count{sql=\"select * from t where id=?\"} 2"));
+	}
+
+	@Test
+	public void registryRecordsPhases() {
+		MetricsRegistry registry = new MetricsRegistry();
+		long[] phases = { 400_000_000L, 1_000_000L, 9_000_000L, 2_000_000L };
+		registry.record("select 1", 412_000_000L, phases, 1);
+
+		StatementSnapshot s = registry.snapshot().get("select ?");
+		assertWithin(400_000_000L, s.getPhase(Phase.CONNECT).getMax());
+		assertWithin(9_000_000L, s.getPhase(Phase.EXECUTE).getMax());
+		assertTrue(registry.dumpPrometheus().contains("phase=\"connect\""));
+	}
+
+	@Test
+	public void snapshotsMergeAcrossStatements() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.record("select 1", 2_000_000L, new long[] { 1_000_000L, 0, 1_000_000L, 0 }, 1);
+		registry.record("select * from t", 8_000_000L, new long[] { 5_000_000L, 0, 3_000_000L, 0 }, 1);
+
+		MetricsSnapshot snap = registry.snapshot();
+		assertEquals(2, snap.getLatency().getCount());
+		assertEquals(10_000_000L, snap.getLatency().getSum());
+		assertEquals(6_000_000L, snap.getPhase(Phase.CONNECT).getSum());
+		assertWithin(5_000_000L, snap.getPhase(Phase.CONNECT).getP99());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual,
+				Math.abs(expected - actual) <= expected / 8);
+	}
+
+}
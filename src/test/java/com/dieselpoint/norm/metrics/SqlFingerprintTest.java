@@ -0,0 +1,54 @@
+package com.dieselpoint.norm.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.dieselpoint.norm.Util;
+
+public class SqlFingerprintTest {
+
+	@Test
+	public void literalsCollapse() {
+		assertEquals("select * from people where name = ? and age > ?",
+				SqlFingerprint.of("SELECT *  FROM people\n WHERE name = 'O''Brien' AND age > 21.5"));
+	}
+
+	@Test
+	public void identifiersWithDigitsAreKept() {
+		assertEquals("select col1 from table2 where id=?", SqlFingerprint.of("select col1 from table2 where id=7"));
+	}
+
+	@Test
+	public void quotedIdentifiersAreKept() {
+		assertEquals("select \"MixedCase\" from t where x=?",
+				SqlFingerprint.of("select \"MixedCase\" from t where x='a'"));
+	}
+
+	@Test
+	public void inListsCollapse() {
+		String expected = "select * from child where parent_id in (?)";
+		assertEquals(expected, SqlFingerprint.of("select * from child where parent_id in (?,?,?)"));
+		assertEquals(expected, SqlFingerprint.of("select * from child where parent_id IN ( 1, 2, 3 )"));
+		assertEquals(expected, SqlFingerprint.of("select * from child where parent_id in (4)"));
+	}
+
+	@Test
+	public void multiRowValuesCollapse() {
+		assertEquals("insert into t (a,b) values (?,?)",
+				SqlFingerprint.of("insert into t (a,b) values (?,?),(?,?), (?,?)"));
+	}
+
+	@Test
+	public void longListsCollapse() {
+		String in = "select * from child where parent_id in (" + Util.getQuestionMarks(10000) + ")";
+		assertEquals("select * from child where parent_id in (?)", SqlFingerprint.of(in));
+
+		StringBuilder values = new StringBuilder("insert into t (a,b) values (?,?)");
+		for (int i = 0; i < 10000; i++) {
+			values.append(",(?,?)");
+		}
+		assertEquals("insert into t (a,b) values (?,?)", SqlFingerprint.of(values.toString()));
+	}
+
+}
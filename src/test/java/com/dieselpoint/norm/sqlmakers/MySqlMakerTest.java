@@ -2,8 +2,11 @@ package com.dieselpoint.norm.sqlmakers;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,9 +21,8 @@ public class MySqlMakerTest {
     @Before
     public void setup() {
         sut = new MySqlMaker();
-        db = mock(Database.class);
-
-        when(db.getSqlMaker()).thenReturn(sut);
+        db = new Database();
+        db.setSqlMaker(sut);
     }
 
     @Test
@@ -33,7 +35,7 @@ public class MySqlMakerTest {
 
         String updateSql = sut.getUpsertSql(query, testTable);
 
-        assertEquals(updateSql, "insert into testTable (name) values (?) on duplicate key update name=?");
+        assertEquals("insert into testTable (name) values (?) on duplicate key update name=values(name)", updateSql);
     }
 
     @Test
@@ -46,8 +48,8 @@ public class MySqlMakerTest {
 
         Object[] upsertArgs = sut.getUpsertArgs(query, testTable);
 
-        assertEquals(upsertArgs.length, 2);
-        assertArrayEquals(upsertArgs, new Object[] { "test", "test" });
+        assertEquals(1, upsertArgs.length);
+        assertArrayEquals(new Object[] { "test" }, upsertArgs);
     }
 
     @Test
@@ -59,6 +61,60 @@ public class MySqlMakerTest {
         StandardPojoInfo pojoInfo = sut.getPojoInfo(StandardSqlMakerTest.TestTable.class);
         sut.makeUpsertSql(pojoInfo);
 
-        assertEquals(pojoInfo.upsertSql, "insert into testTable (name) values (?) on duplicate key update name=?");
+        // the table name is filled in by getUpsertSql()
+        assertEquals("insert into %s (name) values (?) on duplicate key update name=values(name)",
+                pojoInfo.upsertSql);
+    }
+
+    @Test
+    public void upsertLeavesKeysOut() {
+        KeyedRow row = new KeyedRow();
+        row.id = 1;
+        row.name = "bob";
+        row.qty = 3;
+
+        assertEquals("insert into keyed (id,name,qty) values (?,?,?) on duplicate key update "
+                + "name=values(name),qty=values(qty)", sut.getUpsertSql(new Query(db), row));
+        assertArrayEquals(new Object[] { 1, "bob", 3 }, sut.getUpsertArgs(new Query(db), row));
+
+        MySqlMaker aliased = new MySqlMaker("8.0.35");
+        db.setSqlMaker(aliased);
+        assertEquals("insert into keyed (id,name,qty) values (?,?,?) as new on duplicate key update "
+                + "name=new.name,qty=new.qty", aliased.getUpsertSql(new Query(db), row));
+    }
+
+    @Test
+    public void upsertOfKeysOnlyIsANoOpOnDuplicate() {
+        assertEquals("insert into keysonly (a,b) values (?,?) on duplicate key update a=a",
+                sut.getUpsertSql(new Query(db), new KeysOnly()));
+    }
+
+    @Test
+    public void rowAliasFromServerVersion() {
+        assertTrue(MySqlMaker.supportsRowAlias("8.0.19"));
+        assertTrue(MySqlMaker.supportsRowAlias("8.0.35-0ubuntu0.22.04.1"));
+        assertTrue(MySqlMaker.supportsRowAlias("8.4.0"));
+        assertTrue(MySqlMaker.supportsRowAlias("9.0.1"));
+        assertFalse(MySqlMaker.supportsRowAlias("8.0.18"));
+        assertFalse(MySqlMaker.supportsRowAlias("5.7.44-log"));
+        assertFalse(MySqlMaker.supportsRowAlias("10.6.12-MariaDB"));
+        assertFalse(MySqlMaker.supportsRowAlias("5.5.5-10.11.2-MariaDB-1:10.11.2+maria~ubu2204"));
+        assertFalse(MySqlMaker.supportsRowAlias(null));
+    }
+
+    @Table(name = "keyed")
+    public static class KeyedRow {
+        @Id
+        public int id;
+        public String name;
+        public int qty;
+    }
+
+    @Table(name = "keysonly")
+    public static class KeysOnly {
+        @Id
+        public int a;
+        @Id
+        public int b;
     }
-}
\ No newline at end of file
+}
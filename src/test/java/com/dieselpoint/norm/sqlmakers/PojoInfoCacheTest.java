@@ -0,0 +1,57 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.Test;
+
+public class PojoInfoCacheTest {
+
+	@Test
+	public void racingFirstLookupsGetOneCompleteInstance() throws Exception {
+		int threads = 16;
+		StandardSqlMaker maker = new StandardSqlMaker();
+		CyclicBarrier start = new CyclicBarrier(threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<StandardPojoInfo>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(() -> {
+					start.await();
+					return maker.getPojoInfo(RacedRow.class);
+				}));
+			}
+			StandardPojoInfo first = results.get(0).get();
+			for (Future<StandardPojoInfo> result : results) {
+				StandardPojoInfo pojoInfo = result.get();
+				assertSame(first, pojoInfo);
+				// never handed out half built
+				assertNotNull(pojoInfo.insertSql);
+				assertNotNull(pojoInfo.updateSql);
+				assertNotNull(pojoInfo.selectColumns);
+			}
+			assertEquals("insert into %s (id,name) values (?,?)", first.insertSql);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Table(name = "raced")
+	public static class RacedRow {
+		@Id
+		public int id;
+		public String name;
+	}
+
+}
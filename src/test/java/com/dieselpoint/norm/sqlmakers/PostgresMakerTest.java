@@ -0,0 +1,210 @@
+package com.dieselpoint.norm.sqlmakers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Convert;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Query;
+import com.dieselpoint.norm.converter.SimpleIntArray;
+import com.dieselpoint.norm.converter.SimpleStringArray;
+import com.dieselpoint.norm.metrics.StatementSnapshot;
+
+public class PostgresMakerTest {
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setSqlMaker(new PostgresMaker());
+	}
+
+	@Test
+	public void upsertUpdatesNonKeyColumnsOnConflict() {
+		KeyedRow row = new KeyedRow();
+		row.id = 1;
+		row.name = "bob";
+		row.qty = 2;
+
+		assertEquals("insert into keyed (id,name,qty) values (?,?,?) on conflict (id) "
+				+ "do update set name=excluded.name,qty=excluded.qty", db.getSqlMaker().getUpsertSql(new Query(db), row));
+		assertArrayEquals(new Object[] { 1, "bob", 2 }, db.getSqlMaker().getUpsertArgs(new Query(db), row));
+	}
+
+	@Test
+	public void upsertOfKeysOnlyDoesNothingOnConflict() {
+		KeysOnly row = new KeysOnly();
+		assertEquals("insert into keysonly (a,b) values (?,?) on conflict (a,b) do nothing",
+				db.getSqlMaker().getUpsertSql(new Query(db), row));
+	}
+
+	@Test
+	public void primitiveArraysGoToTheDriverUnboxed() throws SQLException {
+		int[] ints = { 1, 2, 3 };
+		String[] strings = { "a", null };
+		// no connection needed, since nothing is converted
+		assertSame(ints, db.getSqlMaker().toSqlArray(null, new SimpleIntArray(ints)));
+		assertSame(strings, db.getSqlMaker().toSqlArray(null, new SimpleStringArray(strings)));
+	}
+
+	@Test
+	public void insertReturnsGeneratedKeys() {
+		assertEquals("insert into keyed (name) values (?) returning id",
+				db.getSqlMaker().getReturningSql("insert into keyed (name) values (?)", new String[] { "id" }));
+		assertNull(db.getSqlMaker().getReturningSql("insert into keyed (name) values (?)", new String[0]));
+	}
+
+	@Test
+	public void multiRowInsert() {
+		PostgresMaker maker = (PostgresMaker) db.getSqlMaker();
+		assertEquals("insert into keyed (id,name,qty) values (?,?,?),(?,?,?)",
+				maker.getInsertSql(new Query(db), new KeyedRow(), 2));
+	}
+
+	@Test
+	public void arrayInsertUpsertAndUpdate() {
+		PostgresMaker maker = (PostgresMaker) db.getSqlMaker();
+		KeyedRow row = new KeyedRow();
+		assertNull(maker.getArrayInsertSql(new Query(db), row, false));
+
+		maker.setArrayBatches(true);
+
+		assertEquals("insert into keyed (id,name,qty) select * from unnest(?::int4[],?::text[],?::int4[])",
+				maker.getArrayInsertSql(new Query(db), row, false));
+		assertEquals("insert into keyed (id,name,qty) select * from unnest(?::int4[],?::text[],?::int4[]) "
+				+ "on conflict (id) do update set name=excluded.name,qty=excluded.qty",
+				maker.getArrayInsertSql(new Query(db), row, true));
+		assertEquals("update keyed set name=u.name,qty=u.qty from unnest(?::text[],?::int4[],?::int4[]) "
+				+ "as u(name,qty,id) where keyed.id=u.id", maker.getArrayUpdateSql(new Query(db), row));
+
+		maker.setArrayBatches(false);
+		assertNull(maker.getArrayInsertSql(new Query(db), row, false));
+		assertNull(maker.getArrayUpdateSql(new Query(db), row));
+	}
+
+	@Test
+	public void noArraysForUnmappedTypes() {
+		PostgresMaker maker = (PostgresMaker) db.getSqlMaker();
+		maker.setArrayBatches(true);
+		assertNull(maker.getArrayInsertSql(new Query(db), new ConvertedRow(), false));
+		assertNull(maker.getArrayUpdateSql(new Query(db), new KeysOnly()));
+	}
+
+	/**
+	 * Runs the array statements through Query on H2, which has unnest() but spells
+	 * the casts the standard way.
+	 */
+	@Test
+	public void arrayBatchesWriteEveryRow() {
+		Database h2 = new Database();
+		h2.setJdbcUrl("jdbc:h2:mem:pgarraytest;MODE=PostgreSQL;database_to_upper=false;DB_CLOSE_DELAY=-1");
+		PostgresMaker maker = new PostgresMaker() {
+			@Override
+			protected String getArrayParameter(String elementType) {
+				return "cast(? as " + elementType + " array)";
+			}
+		};
+		maker.setArrayBatches(true);
+		h2.setSqlMaker(maker);
+		try {
+			h2.sql("drop table if exists keyed").execute();
+			h2.sql("create table keyed (id int primary key, name varchar(50), qty int)").execute();
+
+			List<KeyedRow> rows = new ArrayList<>();
+			for (int i = 0; i < 2500; i++) {
+				KeyedRow row = new KeyedRow();
+				row.id = i;
+				row.name = i % 10 == 0 ? null : "row" + i;
+				row.qty = i;
+				rows.add(row);
+			}
+			assertEquals(2500, h2.insertAll(rows).getRowsAffected());
+
+			for (KeyedRow row : rows) {
+				row.qty = -row.qty;
+			}
+			assertEquals(2500, h2.updateAll(rows).getRowsAffected());
+
+			// metrics count each insertAll() and updateAll() once, however many batches
+			assertEquals(1L, executions(h2, "insert into keyed (id,name,qty) select * from unnest("));
+			assertEquals(1L, executions(h2, "update keyed set name=u.name"));
+			assertEquals(-7, h2.where("id=?", 7).first(KeyedRow.class).qty);
+			assertNull(h2.where("id=?", 10).first(KeyedRow.class).name);
+			assertEquals(2500L, h2.sql("select count(*) from keyed where qty <= 0").first(Long.class).longValue());
+
+			// a repeated key goes as a JDBC batch, which applies the rows in order
+			KeyedRow first = rows.get(3);
+			KeyedRow second = new KeyedRow();
+			second.id = first.id;
+			second.name = "second";
+			second.qty = 33;
+			assertEquals(2, h2.updateAll(Arrays.asList(first, second)).getRowsAffected());
+			assertEquals(1L, executions(h2, "update keyed set name=u.name"));
+			assertEquals("second", h2.where("id=?", 3).first(KeyedRow.class).name);
+		} finally {
+			h2.close();
+		}
+	}
+
+	private static long executions(Database db, String prefix) {
+		long count = 0;
+		for (StatementSnapshot s : db.getMetrics().snapshot().statements) {
+			if (s.fingerprint.startsWith(prefix)) {
+				count += s.getExecutions();
+			}
+		}
+		return count;
+	}
+
+	@Table(name = "converted")
+	public static class ConvertedRow {
+		@Id
+		public int id;
+		@Convert(converter = UpperCase.class)
+		public String name;
+	}
+
+	public static class UpperCase implements AttributeConverter<String, String> {
+		@Override
+		public String convertToDatabaseColumn(String attribute) {
+			return attribute.toUpperCase();
+		}
+
+		@Override
+		public String convertToEntityAttribute(String dbData) {
+			return dbData;
+		}
+	}
+
+	@Table(name = "keyed")
+	public static class KeyedRow {
+		@Id
+		public int id;
+		public String name;
+		public int qty;
+	}
+
+	@Table(name = "keysonly")
+	public static class KeysOnly {
+		@Id
+		public int a;
+		@Id
+		public int b;
+	}
+
+}
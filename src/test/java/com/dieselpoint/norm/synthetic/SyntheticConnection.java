@@ -0,0 +1,194 @@
+package com.dieselpoint.norm.synthetic;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * A Connection that never talks to anything. Statements return the rows
+ * described by a {@link SyntheticSchema}, updates are no-ops that report
+ * schema.updateCount rows affected, and everything else (commit, isValid, the
+ * calls a connection pool makes) succeeds and returns a default value.
+ * <p>
+ * Connection, Statement and PreparedStatement are dynamic proxies, which costs
+ * an Object[] per call. That's per statement or per parameter, not per row:
+ * rows come from a real ResultSet.
+ */
+public class SyntheticConnection implements InvocationHandler {
+
+	private final SyntheticSchema schema;
+	private boolean closed;
+	private boolean autoCommit = true;
+
+	private SyntheticConnection(SyntheticSchema schema) {
+		this.schema = schema;
+	}
+
+	public static Connection create(SyntheticSchema schema) {
+		return (Connection) Proxy.newProxyInstance(SyntheticConnection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new SyntheticConnection(schema));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "prepareStatement":
+		case "prepareCall":
+		case "createStatement":
+			checkOpen();
+			return newStatement(schema);
+		case "close":
+			closed = true;
+			return null;
+		case "isClosed":
+			return closed;
+		case "isValid":
+			return !closed;
+		case "getAutoCommit":
+			return autoCommit;
+		case "setAutoCommit":
+			autoCommit = (Boolean) args[0];
+			return null;
+		case "getTransactionIsolation":
+			return Connection.TRANSACTION_READ_COMMITTED;
+		case "getMetaData":
+			return defaultProxy(DatabaseMetaData.class);
+		case "unwrap":
+			return proxy;
+		case "isWrapperFor":
+			return ((Class<?>) args[0]).isInstance(proxy);
+		default:
+			return objectMethod(proxy, method, args);
+		}
+	}
+
+	private void checkOpen() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection is closed");
+		}
+	}
+
+	private static PreparedStatement newStatement(SyntheticSchema schema) {
+		return (PreparedStatement) Proxy.newProxyInstance(SyntheticConnection.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new StatementHandler(schema));
+	}
+
+	private static class StatementHandler implements InvocationHandler {
+
+		private final SyntheticSchema schema;
+		private ResultSet resultSet;
+		private int updateCount = -1;
+		private int batched;
+		private boolean closed;
+
+		StatementHandler(SyntheticSchema schema) {
+			this.schema = schema;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("set") && method.getReturnType() == void.class && args != null
+					&& args.length >= 2) {
+				// parameter binding, the values go nowhere
+				return null;
+			}
+			switch (name) {
+			case "executeQuery":
+				resultSet = schema.newResultSet();
+				return resultSet;
+			case "executeUpdate":
+			case "executeLargeUpdate":
+				updateCount = schema.updateCount;
+				return name.equals("executeUpdate") ? (Object) updateCount : (Object) (long) updateCount;
+			case "execute":
+				resultSet = schema.newResultSet();
+				return true;
+			case "getResultSet":
+				return resultSet;
+			case "getUpdateCount":
+				return updateCount;
+			case "addBatch":
+				batched++;
+				return null;
+			case "executeBatch": {
+				int[] counts = new int[batched];
+				Arrays.fill(counts, schema.updateCount);
+				batched = 0;
+				return counts;
+			}
+			case "getGeneratedKeys":
+				return schema.newGeneratedKeys();
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return closed;
+			case "unwrap":
+				return proxy;
+			case "isWrapperFor":
+				return ((Class<?>) args[0]).isInstance(proxy);
+			default:
+				return objectMethod(proxy, method, args);
+			}
+		}
+	}
+
+	/**
+	 * A proxy whose methods all return defaults: false, 0 or null.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T defaultProxy(Class<T> iface) {
+		return (T) Proxy.newProxyInstance(SyntheticConnection.class.getClassLoader(), new Class<?>[] { iface },
+				(proxy, method, args) -> objectMethod(proxy, method, args));
+	}
+
+	private static Object objectMethod(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "equals":
+			return proxy == args[0];
+		case "toString":
+			return "Synthetic" + method.getDeclaringClass().getSimpleName() + "@"
+					+ Integer.toHexString(System.identityHashCode(proxy));
+		default:
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) {
+			return null;
+		}
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		if (type == double.class) {
+			return 0d;
+		}
+		if (type == float.class) {
+			return 0f;
+		}
+		if (type == char.class) {
+			return (char) 0;
+		}
+		if (type == byte.class) {
+			return (byte) 0;
+		}
+		if (type == short.class) {
+			return (short) 0;
+		}
+		return 0;
+	}
+
+}
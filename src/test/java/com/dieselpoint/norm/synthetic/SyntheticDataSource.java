@@ -0,0 +1,74 @@
+package com.dieselpoint.norm.synthetic;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * An unpooled DataSource over {@link SyntheticDriver}, for measuring without
+ * the connection pool in the way. Return it from an overridden
+ * Database.getDataSource().
+ */
+public class SyntheticDataSource implements DataSource {
+
+	private final SyntheticSchema schema;
+	private PrintWriter logWriter;
+	private int loginTimeout;
+
+	public SyntheticDataSource(String url) throws SQLException {
+		this.schema = SyntheticDriver.getSchema(url);
+	}
+
+	@Override
+	public Connection getConnection() {
+		return SyntheticConnection.create(schema);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) {
+		return getConnection();
+	}
+
+	@Override
+	public PrintWriter getLogWriter() {
+		return logWriter;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) {
+		this.logWriter = out;
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) {
+		this.loginTimeout = seconds;
+	}
+
+	@Override
+	public int getLoginTimeout() {
+		return loginTimeout;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("Not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) {
+		return iface.isInstance(this);
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.dieselpoint.norm.synthetic;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver with no database behind it, for measuring what norm itself
+ * costs per row and per statement. Point a Database at it like any other
+ * driver:
+ *
+ * <pre>
+ * db.setJdbcUrl("jdbc:synthetic:rows=1000;columns=id:bigint,name:varchar,amount:double");
+ * </pre>
+ *
+ * Every query returns those rows, and every update succeeds without doing
+ * anything. See {@link SyntheticSchema} for the url settings. The driver
+ * registers itself through META-INF/services, so it's found whenever the test
+ * classes are on the classpath.
+ */
+public class SyntheticDriver implements Driver {
+
+	public static final String PREFIX = "jdbc:synthetic:";
+
+	private static final ConcurrentHashMap<String, SyntheticSchema> schemas = new ConcurrentHashMap<>();
+
+	static {
+		try {
+			DriverManager.registerDriver(new SyntheticDriver());
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Parsed schemas are cached by url, so the generated values are shared by
+	 * every connection to the same url.
+	 */
+	public static SyntheticSchema getSchema(String url) throws SQLException {
+		SyntheticSchema schema = schemas.get(url);
+		if (schema == null) {
+			schema = new SyntheticSchema(url.substring(PREFIX.length()));
+			SyntheticSchema existing = schemas.putIfAbsent(url, schema);
+			if (existing != null) {
+				schema = existing;
+			}
+		}
+		return schema;
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		return SyntheticConnection.create(getSchema(url));
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.dieselpoint.norm.synthetic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.dieselpoint.norm.Database;
+import com.dieselpoint.norm.Transaction;
+
+public class SyntheticDriverTest {
+
+	private static final String URL = "jdbc:synthetic:rows=2000;columns=id:bigint,name:varchar,amount:double";
+
+	private Database db;
+
+	@Before
+	public void setUp() {
+		db = new Database();
+		db.setJdbcUrl(URL);
+	}
+
+	@After
+	public void tearDown() {
+		db.close();
+	}
+
+	@Test
+	public void streamsRowsIntoPojos() {
+		List<Row> rows = db.where("id > ?", 0).results(Row.class);
+		assertEquals(2000, rows.size());
+		assertEquals(5, rows.get(5).id);
+		assertEquals("name-5", rows.get(5).name);
+		assertEquals(7.5, rows.get(5).amount, 0);
+		// values cycle after the distinct ones run out
+		assertEquals(rows.get(3).name, rows.get(SyntheticSchema.DISTINCT_ROWS + 3).name);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void streamsRowsIntoMaps() {
+		List<HashMap> rows = db.sql("select anything").results(HashMap.class);
+		assertEquals(2000, rows.size());
+		assertEquals(3, rows.get(0).size());
+	}
+
+	@Test
+	public void updatesAreNoOps() {
+		Row row = new Row();
+		row.id = 1;
+		row.name = "x";
+		assertEquals(1, db.insert(row).getRowsAffected());
+		assertEquals(1, db.update(row).getRowsAffected());
+
+		Transaction trans = db.startTransaction();
+		db.transaction(trans).delete(row);
+		trans.commit();
+	}
+
+	@Test
+	public void worksWithoutPool() throws SQLException {
+		SyntheticDataSource synthetic = new SyntheticDataSource("jdbc:synthetic:rows=3");
+		Database unpooled = new Database() {
+			@Override
+			protected DataSource getDataSource() {
+				return synthetic;
+			}
+		};
+		assertEquals(3, unpooled.sql("select x").results(Row.class).size());
+	}
+
+	@Table(name = "synthetic")
+	public static class Row {
+		@Id
+		public long id;
+		public String name;
+		public double amount;
+	}
+
+}
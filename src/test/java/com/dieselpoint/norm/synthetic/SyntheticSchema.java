@@ -0,0 +1,171 @@
+package com.dieselpoint.norm.synthetic;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+
+/**
+ * The shape of the data a synthetic connection returns, parsed from the part of
+ * the url after "jdbc:synthetic:". For example:
+ *
+ * <pre>
+ * jdbc:synthetic:rows=1000;columns=id:bigint,name:varchar,amount:double;updateCount=1
+ * </pre>
+ *
+ * Every query returns the same rows regardless of its sql. Column values are
+ * generated once, up to {@value #DISTINCT_ROWS} distinct rows, and then cycled,
+ * so reading a row allocates nothing in the driver and whatever a benchmark or
+ * allocation test measures is the framework's cost.
+ */
+public class SyntheticSchema {
+
+	public static final int DISTINCT_ROWS = 1024;
+
+	public final int rows;
+	public final int updateCount;
+	public final List<String> columnNames = new ArrayList<>();
+	public final List<String> columnTypes = new ArrayList<>();
+
+	private final Object[][] values;
+
+	public SyntheticSchema(String spec) throws SQLException {
+		int rows = 100;
+		int updateCount = 1;
+		String columns = "id:bigint,name:varchar";
+
+		for (String part : spec.split(";")) {
+			part = part.trim();
+			if (part.isEmpty()) {
+				continue;
+			}
+			int eq = part.indexOf('=');
+			if (eq < 0) {
+				throw new SQLException("Bad synthetic url part: " + part);
+			}
+			String key = part.substring(0, eq).trim();
+			String value = part.substring(eq + 1).trim();
+			switch (key) {
+			case "rows":
+				rows = Integer.parseInt(value);
+				break;
+			case "updateCount":
+				updateCount = Integer.parseInt(value);
+				break;
+			case "columns":
+				columns = value;
+				break;
+			default:
+				throw new SQLException("Unknown synthetic url setting: " + key);
+			}
+		}
+		this.rows = rows;
+		this.updateCount = updateCount;
+
+		for (String col : columns.split(",")) {
+			String[] nameType = col.trim().split(":");
+			columnNames.add(nameType[0]);
+			columnTypes.add(nameType.length > 1 ? nameType[1].toLowerCase() : "varchar");
+		}
+
+		int distinct = Math.max(1, Math.min(rows, DISTINCT_ROWS));
+		values = new Object[distinct][];
+		for (int r = 0; r < distinct; r++) {
+			Object[] row = new Object[columnNames.size()];
+			for (int c = 0; c < row.length; c++) {
+				row[c] = generate(columnNames.get(c), columnTypes.get(c), r);
+			}
+			values[r] = row;
+		}
+	}
+
+	private static Object generate(String name, String type, int row) throws SQLException {
+		switch (type) {
+		case "bigint":
+			return (long) row;
+		case "int":
+		case "integer":
+			return row;
+		case "double":
+			return row * 1.5;
+		case "decimal":
+			return BigDecimal.valueOf(row, 2);
+		case "boolean":
+			return row % 2 == 0;
+		case "timestamp":
+			return new Timestamp(1_600_000_000_000L + row * 1000L);
+		case "varchar":
+			return name + "-" + row;
+		default:
+			throw new SQLException("Unsupported synthetic column type: " + type);
+		}
+	}
+
+	private static int sqlType(String type) {
+		switch (type) {
+		case "bigint":
+			return Types.BIGINT;
+		case "int":
+		case "integer":
+			return Types.INTEGER;
+		case "double":
+			return Types.DOUBLE;
+		case "decimal":
+			return Types.DECIMAL;
+		case "boolean":
+			return Types.BOOLEAN;
+		case "timestamp":
+			return Types.TIMESTAMP;
+		default:
+			return Types.VARCHAR;
+		}
+	}
+
+	/**
+	 * A fresh result set that streams the rows.
+	 */
+	public ResultSet newResultSet() {
+		SimpleResultSet rs = new SimpleResultSet(new SimpleRowSource() {
+			private int next;
+
+			@Override
+			public Object[] readRow() {
+				if (next >= rows) {
+					return null;
+				}
+				return values[next++ % values.length];
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void reset() {
+				next = 0;
+			}
+		});
+		for (int c = 0; c < columnNames.size(); c++) {
+			String type = columnTypes.get(c);
+			rs.addColumn(columnNames.get(c), sqlType(type), type.toUpperCase(), 0, 0);
+		}
+		return rs;
+	}
+
+	/**
+	 * The result set for getGeneratedKeys(): one row, one column.
+	 */
+	public ResultSet newGeneratedKeys() {
+		SimpleResultSet rs = new SimpleResultSet();
+		rs.addColumn("GENERATED_KEY", Types.BIGINT, 0, 0);
+		rs.addRow(1L);
+		return rs;
+	}
+
+}